@@ -0,0 +1,320 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+/**
+ * View of an instance with the virtual attributes of an
+ * AugmentedInstancesHeader. The values of the viewed instance are read
+ * through, never copied, and only the virtual values can be set. A view can
+ * be pointed at another instance of the same header, so classifying a stream
+ * through it allocates nothing per instance.
+ *
+ * Learners that keep the instances they are trained on should be given a
+ * copy, which materializes the view into a dense instance.
+ */
+public class AugmentedInstance implements Instance {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The header of the view.
+     */
+    protected AugmentedInstancesHeader header;
+
+    /**
+     * The viewed instance.
+     */
+    protected Instance instance;
+
+    /**
+     * The prepended values, then the appended values, then the class value if
+     * the class is replaced.
+     */
+    protected double[] virtualValues;
+
+    /**
+     * Instantiates a new view.
+     *
+     * @param header the header of the view
+     */
+    public AugmentedInstance(AugmentedInstancesHeader header) {
+        this.header = header;
+        this.virtualValues = new double[header.numPrependedAttributes()
+                + header.numAppendedAttributes()
+                + (header.isClassReplaced() ? 1 : 0)];
+    }
+
+    /**
+     * Instantiates a new view of an instance.
+     *
+     * @param header the header of the view
+     * @param instance the viewed instance
+     */
+    public AugmentedInstance(AugmentedInstancesHeader header, Instance instance) {
+        this(header);
+        this.instance = instance;
+    }
+
+    /**
+     * Points the view at another instance. The virtual values are kept.
+     *
+     * @param instance the viewed instance
+     */
+    public void setInstance(Instance instance) {
+        this.instance = instance;
+    }
+
+    public Instance getInstance() {
+        return this.instance;
+    }
+
+    private int virtualValueIndex(int instAttIndex) {
+        int numPrepended = this.header.numPrependedAttributes();
+        if (instAttIndex < numPrepended) {
+            return instAttIndex;
+        }
+        int baseNumAttributes = this.header.getBaseHeader().numAttributes();
+        if (instAttIndex - numPrepended < baseNumAttributes) {
+            // only reached for the replaced class attribute
+            return this.virtualValues.length - 1;
+        }
+        return instAttIndex - baseNumAttributes;
+    }
+
+    @Override
+    public double weight() {
+        return this.instance.weight();
+    }
+
+    @Override
+    public void setWeight(double weight) {
+        throw new UnsupportedOperationException("The weight of a view is the weight of the viewed instance.");
+    }
+
+    @Override
+    public Attribute attribute(int instAttIndex) {
+        return this.header.attribute(instAttIndex);
+    }
+
+    @Override
+    public int indexOfAttribute(Attribute attribute) {
+        return this.header.indexOf(attribute);
+    }
+
+    @Override
+    public void deleteAttributeAt(int i) {
+        throw new UnsupportedOperationException("The attributes of a view are defined by its header.");
+    }
+
+    @Override
+    public void insertAttributeAt(int i) {
+        throw new UnsupportedOperationException("The attributes of a view are defined by its header.");
+    }
+
+    @Override
+    public int numAttributes() {
+        return this.header.numAttributes();
+    }
+
+    @Override
+    public void addSparseValues(int[] indexValues, double[] attributeValues, int numberAttributes) {
+        throw new UnsupportedOperationException("The values of the viewed instance cannot be set.");
+    }
+
+    @Override
+    public int numValues() {
+        return numAttributes();
+    }
+
+    @Override
+    public String stringValue(int i) {
+        throw new UnsupportedOperationException("Not yet implemented");
+    }
+
+    @Override
+    public double value(int instAttIndex) {
+        int baseIndex = this.header.baseAttributeIndex(instAttIndex);
+        if (baseIndex >= 0) {
+            return this.instance.value(baseIndex);
+        }
+        return this.virtualValues[virtualValueIndex(instAttIndex)];
+    }
+
+    @Override
+    public double value(Attribute attribute) {
+        return value(this.header.indexOf(attribute));
+    }
+
+    @Override
+    public void setMissing(int instAttIndex) {
+        setValue(instAttIndex, Double.NaN);
+    }
+
+    @Override
+    public void setMissing(Attribute attribute) {
+        setMissing(this.header.indexOf(attribute));
+    }
+
+    /**
+     * Sets the value of a virtual attribute.
+     *
+     * @param instAttIndex the attribute index
+     * @param value the value
+     */
+    @Override
+    public void setValue(int instAttIndex, double value) {
+        if (this.header.baseAttributeIndex(instAttIndex) >= 0) {
+            throw new UnsupportedOperationException("The values of the viewed instance cannot be set.");
+        }
+        this.virtualValues[virtualValueIndex(instAttIndex)] = value;
+    }
+
+    @Override
+    public void setValue(Attribute attribute, double value) {
+        setValue(this.header.indexOf(attribute), value);
+    }
+
+    @Override
+    public boolean isMissing(int instAttIndex) {
+        return Double.isNaN(value(instAttIndex));
+    }
+
+    @Override
+    public boolean isMissing(Attribute attribute) {
+        return isMissing(this.header.indexOf(attribute));
+    }
+
+    @Override
+    public int index(int arrayIndex) {
+        return arrayIndex;
+    }
+
+    @Override
+    public double valueSparse(int i) {
+        return value(i);
+    }
+
+    @Override
+    public boolean isMissingSparse(int p1) {
+        return isMissing(p1);
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        double[] values = new double[numAttributes()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value(i);
+        }
+        return values;
+    }
+
+    @Override
+    public Attribute classAttribute() {
+        return this.header.classAttribute();
+    }
+
+    @Override
+    public int classIndex() {
+        return this.header.classIndex();
+    }
+
+    @Override
+    public boolean classIsMissing() {
+        return isMissing(classIndex());
+    }
+
+    @Override
+    public double classValue() {
+        return value(classIndex());
+    }
+
+    @Override
+    public int numClasses() {
+        return this.header.numClasses();
+    }
+
+    @Override
+    public void setClassValue(double d) {
+        setValue(classIndex(), d);
+    }
+
+    /**
+     * Materializes the view.
+     *
+     * @return a dense instance with the values of the view
+     */
+    @Override
+    public Instance copy() {
+        Instance inst = new DenseInstance(weight(), toDoubleArray());
+        inst.setDataset(this.header);
+        return inst;
+    }
+
+    @Override
+    public void setDataset(Instances dataset) {
+        throw new UnsupportedOperationException("The header of a view cannot be changed.");
+    }
+
+    @Override
+    public Instances dataset() {
+        return this.header;
+    }
+
+    @Override
+    public int numInputAttributes() {
+        return this.header.numInputAttributes();
+    }
+
+    @Override
+    public int numOutputAttributes() {
+        return numberOutputTargets();
+    }
+
+    @Override
+    public int numberOutputTargets() {
+        return this.header.numOutputAttributes();
+    }
+
+    @Override
+    public double classValue(int attributeIndex) {
+        return valueOutputAttribute(attributeIndex);
+    }
+
+    @Override
+    public void setClassValue(int indexClass, double valueAttribute) {
+        setValue(this.header.getInstanceInformation().outputAttributeIndex(indexClass), valueAttribute);
+    }
+
+    @Override
+    public Attribute outputAttribute(int attributeIndex) {
+        return this.header.outputAttribute(attributeIndex);
+    }
+
+    @Override
+    public Attribute inputAttribute(int attributeIndex) {
+        return this.header.inputAttribute(attributeIndex);
+    }
+
+    @Override
+    public double valueInputAttribute(int attributeIndex) {
+        return value(this.header.getInstanceInformation().inputAttributeIndex(attributeIndex));
+    }
+
+    @Override
+    public double valueOutputAttribute(int attributeIndex) {
+        return value(this.header.getInstanceInformation().outputAttributeIndex(attributeIndex));
+    }
+}
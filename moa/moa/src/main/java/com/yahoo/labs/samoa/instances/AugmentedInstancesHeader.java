@@ -0,0 +1,122 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Header of the instances seen through an AugmentedInstance: the attributes
+ * of a single label header with virtual attributes prepended and appended,
+ * and optionally with its class attribute replaced by a virtual one.
+ */
+public class AugmentedInstancesHeader extends InstancesHeader {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The header of the viewed instances.
+     */
+    protected InstancesHeader baseHeader;
+
+    protected int numPrependedAttributes;
+
+    protected int numAppendedAttributes;
+
+    protected boolean isClassReplaced;
+
+    /**
+     * Instantiates a new augmented header.
+     *
+     * @param baseHeader the header of the viewed instances
+     * @param prependedAttributes the virtual attributes before the viewed ones
+     * @param appendedAttributes the virtual attributes after the viewed ones
+     * @param classAttribute the virtual class attribute, or null to keep the
+     * class attribute of the viewed instances
+     */
+    public AugmentedInstancesHeader(InstancesHeader baseHeader,
+            List<Attribute> prependedAttributes,
+            List<Attribute> appendedAttributes,
+            Attribute classAttribute) {
+        super(augmentedInstances(baseHeader, prependedAttributes,
+                appendedAttributes, classAttribute));
+        this.baseHeader = baseHeader;
+        this.numPrependedAttributes = prependedAttributes.size();
+        this.numAppendedAttributes = appendedAttributes.size();
+        this.isClassReplaced = classAttribute != null;
+    }
+
+    private static Instances augmentedInstances(InstancesHeader baseHeader,
+            List<Attribute> prependedAttributes,
+            List<Attribute> appendedAttributes,
+            Attribute classAttribute) {
+        int baseClassIndex = baseHeader.classIndex();
+        if (baseClassIndex == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Multi-label headers cannot be augmented.");
+        }
+        List<Attribute> attributes = new ArrayList<Attribute>(prependedAttributes);
+        for (int i = 0; i < baseHeader.numAttributes(); i++) {
+            if (i == baseClassIndex && classAttribute != null) {
+                attributes.add(classAttribute);
+            } else {
+                attributes.add(baseHeader.attribute(i));
+            }
+        }
+        attributes.addAll(appendedAttributes);
+
+        Instances instances = new Instances(baseHeader.getRelationName(), attributes, 0);
+        instances.setClassIndex(prependedAttributes.size() + baseClassIndex);
+        return instances;
+    }
+
+    public InstancesHeader getBaseHeader() {
+        return this.baseHeader;
+    }
+
+    public int numPrependedAttributes() {
+        return this.numPrependedAttributes;
+    }
+
+    public int numAppendedAttributes() {
+        return this.numAppendedAttributes;
+    }
+
+    /**
+     * Whether the class value is virtual rather than read from the viewed
+     * instance.
+     */
+    public boolean isClassReplaced() {
+        return this.isClassReplaced;
+    }
+
+    /**
+     * Index of an attribute in the viewed instances.
+     *
+     * @param attIndex the attribute index in this header
+     * @return the attribute index in the base header, or -1 if the attribute
+     * is virtual
+     */
+    public int baseAttributeIndex(int attIndex) {
+        int baseIndex = attIndex - this.numPrependedAttributes;
+        if (baseIndex < 0 || baseIndex >= this.baseHeader.numAttributes()) {
+            return -1;
+        }
+        if (this.isClassReplaced && baseIndex == this.baseHeader.classIndex()) {
+            return -1;
+        }
+        return baseIndex;
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Loads an Arff file with sparse or dense format like {@link ArffLoader}, but parses the data section on the bytes
+ * read from a file channel instead of through a {@link java.io.StreamTokenizer}.
+ *
+ * The rows are read into a reused byte buffer and parsed in place: numbers are converted without creating a
+ * String, and nominal labels are resolved through a perfect hash over their bytes, one per attribute. Only the
+ * header is parsed by {@link ArffLoader}. Labels are decoded as UTF-8.
+ */
+public class ByteArffLoader extends ArffLoader implements Closeable {
+
+    protected static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+    private static final int TOKEN_NONE = 0;
+    private static final int TOKEN_WORD = 1;
+    private static final int TOKEN_QUOTED = 2;
+    private static final int TOKEN_OPEN_BRACE = '{';
+    private static final int TOKEN_CLOSE_BRACE = '}';
+
+    // powers of ten that are exact doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    protected ByteInput input;
+
+    // label index of each nominal attribute, null for numeric attributes
+    protected NominalIndex[] nominalIndices;
+
+    protected int lineNumber;
+
+    // bounds of the last token read, within input.buffer
+    private int tokenStart;
+    private int tokenEnd;
+    private boolean tokenEscaped;
+
+    // values of the sparse row being read
+    private int[] sparseIndices = new int[16];
+    private double[] sparseValues = new double[16];
+
+    /**
+     * Instantiates a new byte arff loader, reading the header.
+     *
+     * @param channel the channel of the file, closed by {@link #close()}
+     * @param classAttribute the class attribute, as for {@link ArffLoader#ArffLoader(Reader, int, int)}
+     * @throws IOException if the header could not be read
+     */
+    public ByteArffLoader(FileChannel channel, int classAttribute) throws IOException {
+        this(new ByteInput(channel), classAttribute);
+    }
+
+    private ByteArffLoader(ByteInput input, int classAttribute) throws IOException {
+        super(input.readHeader(), 0, classAttribute);
+        this.input = input;
+        this.nominalIndices = new NominalIndex[this.instanceInformation.numAttributes()];
+        for (int i = 0; i < this.nominalIndices.length; i++) {
+            Attribute attribute = this.instanceInformation.attribute(i);
+            if (attribute.isNominal()) {
+                this.nominalIndices[i] = new NominalIndex(attribute);
+            }
+        }
+    }
+
+    /**
+     * Fraction of the file read so far.
+     *
+     * @return the fraction in [0, 1]
+     */
+    public double getProgressFraction() {
+        return this.input.getProgressFraction();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.channel.close();
+    }
+
+    /**
+     * Reads instance. It detects if it is dense or sparse.
+     *
+     * @return the instance, or null at the end of the file
+     */
+    @Override
+    public Instance readInstance() {
+        try {
+            while (true) {
+                int lineEnd = this.input.nextLine();
+                if (lineEnd < 0) {
+                    return null;
+                }
+                this.lineNumber++;
+                int token = nextToken(lineEnd);
+                Instance instance = null;
+                if (token == TOKEN_OPEN_BRACE) {
+                    instance = readInstanceSparse(lineEnd);
+                } else if (token != TOKEN_NONE) {
+                    instance = readInstanceDense(token, lineEnd);
+                }
+                this.input.position = Math.min(lineEnd + 1, this.input.limit);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("ByteArffLoader failed to read instance from file.", ex);
+        }
+    }
+
+    private Instance readInstanceDense(int firstToken, int lineEnd) {
+        int numAttributes = this.instanceInformation.numAttributes();
+        double[] values = new double[numAttributes];
+        int numAttribute = 0;
+        for (int token = firstToken; token != TOKEN_NONE; token = nextToken(lineEnd)) {
+            if (token == TOKEN_OPEN_BRACE || token == TOKEN_CLOSE_BRACE) {
+                continue;
+            }
+            if (numAttribute >= numAttributes) {
+                throw new RuntimeException("Line " + this.lineNumber + " of the data has more than "
+                        + numAttributes + " values.");
+            }
+            values[numAttribute] = tokenValue(numAttribute);
+            numAttribute++;
+        }
+        return numAttribute > 0 ? new DenseInstance(1.0, values) : null;
+    }
+
+    private Instance readInstanceSparse(int lineEnd) {
+        int numValues = 0;
+        int token = nextToken(lineEnd);
+        while (token != TOKEN_NONE && token != TOKEN_CLOSE_BRACE) {
+            int numAttribute = parseIndex();
+            token = nextToken(lineEnd);
+            if (token == TOKEN_NONE || token == TOKEN_CLOSE_BRACE) {
+                throw new RuntimeException("Line " + this.lineNumber + " of the data has no value for attribute "
+                        + numAttribute + ".");
+            }
+            if (numValues == this.sparseIndices.length) {
+                this.sparseIndices = Arrays.copyOf(this.sparseIndices, 2 * numValues);
+                this.sparseValues = Arrays.copyOf(this.sparseValues, 2 * numValues);
+            }
+            this.sparseIndices[numValues] = numAttribute;
+            this.sparseValues[numValues] = tokenValue(numAttribute);
+            numValues++;
+            token = nextToken(lineEnd);
+        }
+        return new SparseInstance(1.0, Arrays.copyOf(this.sparseValues, numValues),
+                Arrays.copyOf(this.sparseIndices, numValues), this.instanceInformation.numAttributes());
+    }
+
+    /**
+     * Reads the next token of the line, as the tokenizer of {@link ArffLoader} splits it.
+     *
+     * @return the type of the token, TOKEN_NONE at the end of the line
+     */
+    private int nextToken(int lineEnd) {
+        byte[] buffer = this.input.buffer;
+        int i = this.input.position;
+        while (i < lineEnd && (buffer[i] <= ' ' && buffer[i] >= 0 || buffer[i] == ',')) {
+            i++;
+        }
+        if (i == lineEnd || buffer[i] == '%') {
+            this.input.position = lineEnd;
+            return TOKEN_NONE;
+        }
+        byte first = buffer[i];
+        if (first == '{' || first == '}') {
+            this.input.position = i + 1;
+            return first;
+        }
+        if (first == '\'' || first == '"') {
+            this.tokenStart = ++i;
+            this.tokenEscaped = false;
+            while (i < lineEnd && buffer[i] != first) {
+                if (buffer[i] == '\\' && i + 1 < lineEnd) {
+                    this.tokenEscaped = true;
+                    i++;
+                }
+                i++;
+            }
+            this.tokenEnd = i;
+            this.input.position = Math.min(i + 1, lineEnd);
+            return TOKEN_QUOTED;
+        }
+        this.tokenStart = i;
+        while (i < lineEnd && isWordByte(buffer[i])) {
+            i++;
+        }
+        this.tokenEnd = i;
+        this.tokenEscaped = false;
+        this.input.position = i;
+        return TOKEN_WORD;
+    }
+
+    private static boolean isWordByte(byte b) {
+        return (b > ' ' || b < 0) && b != ',' && b != '%' && b != '{' && b != '}' && b != '\'' && b != '"';
+    }
+
+    private double tokenValue(int numAttribute) {
+        byte[] buffer = this.input.buffer;
+        if (this.tokenEnd - this.tokenStart == 1 && buffer[this.tokenStart] == '?') {
+            return Double.NaN;
+        }
+        NominalIndex nominalIndex = this.nominalIndices[numAttribute];
+        if (nominalIndex == null) {
+            return parseDouble(buffer, this.tokenStart, this.tokenEnd);
+        }
+        int index = this.tokenEscaped ? -1 : nominalIndex.indexOf(buffer, this.tokenStart, this.tokenEnd);
+        if (index < 0) {
+            // unknown labels are added to the attribute as ArffLoader does
+            Attribute attribute = this.instanceInformation.attribute(numAttribute);
+            index = attribute.indexOfValue(tokenString());
+            if (attribute.numValues() >= 2 * nominalIndex.size()) {
+                this.nominalIndices[numAttribute] = new NominalIndex(attribute);
+            }
+        }
+        return index;
+    }
+
+    private String tokenString() {
+        String token = new String(this.input.buffer, this.tokenStart, this.tokenEnd - this.tokenStart,
+                StandardCharsets.UTF_8);
+        return this.tokenEscaped ? unescape(token) : token;
+    }
+
+    private static String unescape(String token) {
+        StringBuilder sb = new StringBuilder(token.length());
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '\\' && i + 1 < token.length()) {
+                c = token.charAt(++i);
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    default:
+                        break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private int parseIndex() {
+        byte[] buffer = this.input.buffer;
+        int index = 0;
+        for (int i = this.tokenStart; i < this.tokenEnd; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || index > (Integer.MAX_VALUE - digit) / 10) {
+                return Integer.parseInt(tokenString());
+            }
+            index = index * 10 + digit;
+        }
+        if (this.tokenEnd == this.tokenStart) {
+            return Integer.parseInt(tokenString());
+        }
+        return index;
+    }
+
+    /**
+     * Parses a decimal number as {@link Double#parseDouble(String)} does. Numbers with at most 15 significant
+     * digits and a small exponent are converted exactly without creating a String, the others are handed to
+     * Double.parseDouble.
+     */
+    protected static double parseDouble(byte[] buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int numSignificantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+            mantissa = mantissa * 10 + (buffer[i] - '0');
+            if (mantissa != 0) {
+                numSignificantDigits++;
+            }
+            hasDigits = true;
+            i++;
+        }
+        if (i < end && buffer[i] == '.') {
+            i++;
+            while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+                mantissa = mantissa * 10 + (buffer[i] - '0');
+                if (mantissa != 0) {
+                    numSignificantDigits++;
+                }
+                exponent--;
+                hasDigits = true;
+                i++;
+            }
+        }
+        if (hasDigits && i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            boolean hasExponentDigits = false;
+            while (i < end && buffer[i] >= '0' && buffer[i] <= '9' && explicitExponent < 1000) {
+                explicitExponent = explicitExponent * 10 + (buffer[i] - '0');
+                hasExponentDigits = true;
+                i++;
+            }
+            if (!hasExponentDigits) {
+                hasDigits = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (!hasDigits || i != end || numSignificantDigits > 15
+                || exponent < -(POWERS_OF_TEN.length - 1) || exponent > POWERS_OF_TEN.length - 1) {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1));
+        }
+        // both operands are exact, so the result is rounded once as by Double.parseDouble
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Perfect hash of the labels of a nominal attribute: every label has its own slot, so a lookup hashes the
+     * bytes once and compares them with a single label.
+     */
+    protected static class NominalIndex {
+
+        // labels in UTF-8, by label index
+        protected final byte[][] labels;
+
+        // label index of each slot, -1 for empty slots
+        protected final int[] slots;
+
+        protected final int seed;
+
+        public NominalIndex(Attribute attribute) {
+            int numLabels = attribute.numValues();
+            this.labels = new byte[numLabels][];
+            for (int i = 0; i < numLabels; i++) {
+                this.labels[i] = attribute.value(i).getBytes(StandardCharsets.UTF_8);
+            }
+            int numSlots = Integer.highestOneBit(Math.max(2 * numLabels - 1, 1)) << 1;
+            int seed = 0;
+            int[] slots;
+            while ((slots = assignSlots(numSlots, seed)) == null) {
+                // grow the table every few seeds, collisions become unlikely as it gets sparser
+                if (++seed % 8 == 0) {
+                    numSlots <<= 1;
+                }
+            }
+            this.slots = slots;
+            this.seed = seed;
+        }
+
+        private int[] assignSlots(int numSlots, int seed) {
+            int[] slots = new int[numSlots];
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < this.labels.length; i++) {
+                int slot = hash(this.labels[i], 0, this.labels[i].length, seed) & (numSlots - 1);
+                if (slots[slot] >= 0) {
+                    if (Arrays.equals(this.labels[slots[slot]], this.labels[i])) {
+                        // repeated label, the first one is found as by Attribute.indexOfValue
+                        continue;
+                    }
+                    return null;
+                }
+                slots[slot] = i;
+            }
+            return slots;
+        }
+
+        private static int hash(byte[] bytes, int start, int end, int seed) {
+            int hash = 0x811C9DC5 ^ (seed * 0x9E3779B9);
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ bytes[i]) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        public int size() {
+            return this.labels.length;
+        }
+
+        /**
+         * @return the index of the label, or -1 if it is not a label of the attribute
+         */
+        public int indexOf(byte[] bytes, int start, int end) {
+            int index = this.slots[hash(bytes, start, end, this.seed) & (this.slots.length - 1)];
+            if (index < 0) {
+                return -1;
+            }
+            byte[] label = this.labels[index];
+            if (label.length != end - start) {
+                return -1;
+            }
+            for (int i = 0; i < label.length; i++) {
+                if (label[i] != bytes[start + i]) {
+                    return -1;
+                }
+            }
+            return index;
+        }
+    }
+
+    /**
+     * The bytes of the file, read through the channel into a buffer that always holds whole lines.
+     */
+    protected static class ByteInput {
+
+        protected final FileChannel channel;
+
+        protected final long size;
+
+        protected byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+        // start of the unread bytes in the buffer
+        protected int position;
+
+        // end of the bytes in the buffer
+        protected int limit;
+
+        protected long bytesRead;
+
+        protected boolean endOfChannel;
+
+        public ByteInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * Makes sure the buffer holds the next line.
+         *
+         * @return the index of the end of the line, its newline or the end of the file, or -1 at the end of the
+         * file
+         * @throws IOException if the channel could not be read
+         */
+        public int nextLine() throws IOException {
+            int searchFrom = this.position;
+            while (true) {
+                for (int i = searchFrom; i < this.limit; i++) {
+                    if (this.buffer[i] == '\n') {
+                        return i;
+                    }
+                }
+                if (this.endOfChannel) {
+                    return this.position < this.limit ? this.limit : -1;
+                }
+                searchFrom = this.limit - this.position;
+                fill();
+            }
+        }
+
+        private void fill() throws IOException {
+            int numUnread = this.limit - this.position;
+            if (numUnread == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+            } else if (this.position > 0) {
+                System.arraycopy(this.buffer, this.position, this.buffer, 0, numUnread);
+            }
+            this.position = 0;
+            this.limit = numUnread;
+            ByteBuffer target = ByteBuffer.wrap(this.buffer, this.limit, this.buffer.length - this.limit);
+            int numRead = this.channel.read(target);
+            if (numRead < 0) {
+                this.endOfChannel = true;
+            } else {
+                this.limit += numRead;
+                this.bytesRead += numRead;
+            }
+        }
+
+        /**
+         * Reads the lines up to the one starting with @data.
+         *
+         * @return a reader of the header
+         * @throws IOException if the channel could not be read
+         */
+        public Reader readHeader() throws IOException {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            int lineEnd;
+            while ((lineEnd = nextLine()) >= 0) {
+                int lineStart = this.position;
+                this.position = Math.min(lineEnd + 1, this.limit);
+                header.write(this.buffer, lineStart, this.position - lineStart);
+                if (isDataLine(lineStart, lineEnd)) {
+                    break;
+                }
+            }
+            return new InputStreamReader(new ByteArrayInputStream(header.toByteArray()), StandardCharsets.UTF_8);
+        }
+
+        private boolean isDataLine(int lineStart, int lineEnd) {
+            int i = lineStart;
+            while (i < lineEnd && this.buffer[i] <= ' ' && this.buffer[i] >= 0) {
+                i++;
+            }
+            String keyword = Instances.ARFF_DATA;
+            if (lineEnd - i < keyword.length()) {
+                return false;
+            }
+            for (int j = 0; j < keyword.length(); j++) {
+                if (Character.toLowerCase((char) this.buffer[i + j]) != keyword.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public double getProgressFraction() {
+            if (this.size == 0) {
+                return 1.0;
+            }
+            return (double) (this.bytesRead - (this.limit - this.position)) / this.size;
+        }
+    }
+}
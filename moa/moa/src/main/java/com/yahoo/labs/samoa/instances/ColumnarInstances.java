@@ -0,0 +1,536 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the
+ * License.
+ */
+package com.yahoo.labs.samoa.instances;
+
+import java.util.Arrays;
+
+/**
+ * Instances stored by attribute: one primitive array per attribute instead of one object per instance.
+ *
+ * Numeric attributes are stored as doubles, or as floats if requested. Nominal attributes are stored as the byte
+ * index of their label while they have at most 127 labels, and as an int index otherwise. A column is widened to
+ * doubles if a value does not fit, so no value is changed except numeric ones stored as floats. Weights are only
+ * stored once an instance does not weigh 1.
+ *
+ * {@link #instance(int)} returns a view of a row, created on each call, that reads from and writes to the
+ * columns. A view is a position: after rows are deleted or reordered it shows the row now at that position. Copy
+ * the instance to keep its values.
+ */
+public class ColumnarInstances extends Instances {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int DOUBLE_COLUMN = 0;
+    protected static final int FLOAT_COLUMN = 1;
+    protected static final int BYTE_COLUMN = 2;
+    protected static final int INT_COLUMN = 3;
+
+    // label index stored for missing nominal values
+    protected static final int MISSING_INDEX = -1;
+
+    protected boolean floatNumerics;
+
+    // the type of each column, only the array of that type is set for an attribute
+    protected int[] columnTypes;
+    protected double[][] doubleColumns;
+    protected float[][] floatColumns;
+    protected byte[][] byteColumns;
+    protected int[][] intColumns;
+
+    // null while all instances weigh 1
+    protected double[] weights;
+
+    protected int numInstances;
+
+    protected int capacity;
+
+    // the header of the views, rebuilt when the attributes or the class change
+    protected transient InstancesHeader header;
+
+    /**
+     * Instantiates new empty columnar instances with the attributes of a dataset.
+     *
+     * @param dataset the dataset
+     * @param capacity the capacity
+     */
+    public ColumnarInstances(Instances dataset, int capacity) {
+        this(dataset, capacity, false);
+    }
+
+    /**
+     * Instantiates new empty columnar instances with the attributes of a dataset.
+     *
+     * @param dataset the dataset
+     * @param capacity the capacity
+     * @param floatNumerics whether numeric values are stored as floats
+     */
+    public ColumnarInstances(Instances dataset, int capacity, boolean floatNumerics) {
+        super(dataset, 0);
+        // every row is in the columns
+        this.instances = null;
+        this.floatNumerics = floatNumerics;
+        this.capacity = Math.max(capacity, 0);
+        int numAttributes = numAttributes();
+        this.columnTypes = new int[numAttributes];
+        this.doubleColumns = new double[numAttributes][];
+        this.floatColumns = new float[numAttributes][];
+        this.byteColumns = new byte[numAttributes][];
+        this.intColumns = new int[numAttributes][];
+        for (int i = 0; i < numAttributes; i++) {
+            initColumn(i, attribute(i));
+        }
+    }
+
+    private void initColumn(int attributeIndex, Attribute attribute) {
+        if (attribute.isNominal()) {
+            if (attribute.numValues() <= Byte.MAX_VALUE) {
+                this.columnTypes[attributeIndex] = BYTE_COLUMN;
+                this.byteColumns[attributeIndex] = new byte[this.capacity];
+            } else {
+                this.columnTypes[attributeIndex] = INT_COLUMN;
+                this.intColumns[attributeIndex] = new int[this.capacity];
+            }
+        } else if (this.floatNumerics) {
+            this.columnTypes[attributeIndex] = FLOAT_COLUMN;
+            this.floatColumns[attributeIndex] = new float[this.capacity];
+        } else {
+            this.columnTypes[attributeIndex] = DOUBLE_COLUMN;
+            this.doubleColumns[attributeIndex] = new double[this.capacity];
+        }
+    }
+
+    /**
+     * Value of an attribute of a row, without a view.
+     *
+     * @param row the row
+     * @param attributeIndex the attribute index
+     * @return the value, NaN if missing
+     */
+    public double value(int row, int attributeIndex) {
+        switch (this.columnTypes[attributeIndex]) {
+            case BYTE_COLUMN: {
+                byte index = this.byteColumns[attributeIndex][row];
+                return index == MISSING_INDEX ? Double.NaN : index;
+            }
+            case INT_COLUMN: {
+                int index = this.intColumns[attributeIndex][row];
+                return index == MISSING_INDEX ? Double.NaN : index;
+            }
+            case FLOAT_COLUMN:
+                return this.floatColumns[attributeIndex][row];
+            default:
+                return this.doubleColumns[attributeIndex][row];
+        }
+    }
+
+    /**
+     * Sets the value of an attribute of a row, widening its column if the value does not fit.
+     *
+     * @param row the row
+     * @param attributeIndex the attribute index
+     * @param value the value, NaN if missing
+     */
+    public void setValue(int row, int attributeIndex, double value) {
+        switch (this.columnTypes[attributeIndex]) {
+            case BYTE_COLUMN:
+                if (Double.isNaN(value)) {
+                    this.byteColumns[attributeIndex][row] = MISSING_INDEX;
+                    return;
+                }
+                if (value >= 0 && value <= Byte.MAX_VALUE && value == (byte) value) {
+                    this.byteColumns[attributeIndex][row] = (byte) value;
+                    return;
+                }
+                break;
+            case INT_COLUMN:
+                if (Double.isNaN(value)) {
+                    this.intColumns[attributeIndex][row] = MISSING_INDEX;
+                    return;
+                }
+                if (value >= 0 && value == (int) value) {
+                    this.intColumns[attributeIndex][row] = (int) value;
+                    return;
+                }
+                break;
+            case FLOAT_COLUMN:
+                this.floatColumns[attributeIndex][row] = (float) value;
+                return;
+            default:
+                this.doubleColumns[attributeIndex][row] = value;
+                return;
+        }
+        widenColumn(attributeIndex, value == (int) value && value >= 0);
+        setValue(row, attributeIndex, value);
+    }
+
+    private void widenColumn(int attributeIndex, boolean toInt) {
+        int length = this.capacity;
+        if (toInt && this.columnTypes[attributeIndex] == BYTE_COLUMN) {
+            int[] column = new int[length];
+            byte[] byteColumn = this.byteColumns[attributeIndex];
+            for (int i = 0; i < length; i++) {
+                column[i] = byteColumn[i];
+            }
+            this.intColumns[attributeIndex] = column;
+            this.byteColumns[attributeIndex] = null;
+            this.columnTypes[attributeIndex] = INT_COLUMN;
+            return;
+        }
+        double[] column = new double[length];
+        for (int i = 0; i < this.numInstances; i++) {
+            column[i] = value(i, attributeIndex);
+        }
+        this.doubleColumns[attributeIndex] = column;
+        this.byteColumns[attributeIndex] = null;
+        this.intColumns[attributeIndex] = null;
+        this.columnTypes[attributeIndex] = DOUBLE_COLUMN;
+    }
+
+    /**
+     * Weight of a row, without a view.
+     *
+     * @param row the row
+     * @return the weight
+     */
+    public double weight(int row) {
+        return this.weights == null ? 1.0 : this.weights[row];
+    }
+
+    public void setWeight(int row, double weight) {
+        if (this.weights == null) {
+            if (weight == 1.0) {
+                return;
+            }
+            this.weights = new double[this.capacity];
+            Arrays.fill(this.weights, 1.0);
+        }
+        this.weights[row] = weight;
+    }
+
+    protected void ensureCapacity(int minCapacity) {
+        if (minCapacity <= this.capacity) {
+            return;
+        }
+        int newCapacity = Math.max(minCapacity, this.capacity + (this.capacity >> 1) + 16);
+        for (int i = 0; i < this.columnTypes.length; i++) {
+            switch (this.columnTypes[i]) {
+                case BYTE_COLUMN:
+                    this.byteColumns[i] = Arrays.copyOf(this.byteColumns[i], newCapacity);
+                    break;
+                case INT_COLUMN:
+                    this.intColumns[i] = Arrays.copyOf(this.intColumns[i], newCapacity);
+                    break;
+                case FLOAT_COLUMN:
+                    this.floatColumns[i] = Arrays.copyOf(this.floatColumns[i], newCapacity);
+                    break;
+                default:
+                    this.doubleColumns[i] = Arrays.copyOf(this.doubleColumns[i], newCapacity);
+                    break;
+            }
+        }
+        if (this.weights != null) {
+            this.weights = Arrays.copyOf(this.weights, newCapacity);
+            Arrays.fill(this.weights, this.capacity, newCapacity, 1.0);
+        }
+        this.capacity = newCapacity;
+    }
+
+    protected InstancesHeader header() {
+        if (this.header == null) {
+            this.header = new InstancesHeader(this);
+        }
+        return this.header;
+    }
+
+    @Override
+    public Instance instance(int num) {
+        if (num < 0 || num >= this.numInstances) {
+            throw new IndexOutOfBoundsException("Index: " + num + ", Size: " + this.numInstances);
+        }
+        return new RowInstance(this, num);
+    }
+
+    @Override
+    public int numInstances() {
+        return this.numInstances;
+    }
+
+    @Override
+    public void add(Instance inst) {
+        ensureCapacity(this.numInstances + 1);
+        setRow(this.numInstances, inst);
+        this.numInstances++;
+    }
+
+    @Override
+    public void set(int i, Instance inst) {
+        setRow(i, inst);
+    }
+
+    private void setRow(int row, Instance inst) {
+        for (int i = 0; i < this.columnTypes.length; i++) {
+            setValue(row, i, inst.value(i));
+        }
+        setWeight(row, inst.weight());
+    }
+
+    @Override
+    public void delete() {
+        this.numInstances = 0;
+    }
+
+    @Override
+    public void delete(int index) {
+        int numMoved = this.numInstances - index - 1;
+        for (int i = 0; i < this.columnTypes.length; i++) {
+            Object column = column(i);
+            System.arraycopy(column, index + 1, column, index, numMoved);
+        }
+        if (this.weights != null) {
+            System.arraycopy(this.weights, index + 1, this.weights, index, numMoved);
+        }
+        this.numInstances--;
+    }
+
+    private Object column(int attributeIndex) {
+        switch (this.columnTypes[attributeIndex]) {
+            case BYTE_COLUMN:
+                return this.byteColumns[attributeIndex];
+            case INT_COLUMN:
+                return this.intColumns[attributeIndex];
+            case FLOAT_COLUMN:
+                return this.floatColumns[attributeIndex];
+            default:
+                return this.doubleColumns[attributeIndex];
+        }
+    }
+
+    @Override
+    public void swap(int i, int j) {
+        for (int a = 0; a < this.columnTypes.length; a++) {
+            double value = value(i, a);
+            setValue(i, a, value(j, a));
+            setValue(j, a, value);
+        }
+        double weight = weight(i);
+        setWeight(i, weight(j));
+        setWeight(j, weight);
+    }
+
+    @Override
+    protected void stratStep(int numFolds) {
+        int[] order = new int[this.numInstances];
+        int numOrdered = 0;
+        for (int start = 0; numOrdered < this.numInstances; start++) {
+            for (int j = start; j < this.numInstances; j += numFolds) {
+                order[numOrdered++] = j;
+            }
+        }
+        ColumnarInstances reordered = new ColumnarInstances(this, this.numInstances, this.floatNumerics);
+        for (int row : order) {
+            reordered.add(instance(row));
+        }
+        this.columnTypes = reordered.columnTypes;
+        this.doubleColumns = reordered.doubleColumns;
+        this.floatColumns = reordered.floatColumns;
+        this.byteColumns = reordered.byteColumns;
+        this.intColumns = reordered.intColumns;
+        this.weights = reordered.weights;
+        this.capacity = reordered.capacity;
+    }
+
+    @Override
+    public void setClassIndex(int classIndex) {
+        super.setClassIndex(classIndex);
+        this.header = null;
+    }
+
+    @Override
+    public void deleteAttributeAt(Integer integer) {
+        this.instanceInformation.deleteAttributeAt(integer);
+        int index = integer;
+        this.columnTypes = removeAt(this.columnTypes, index);
+        this.doubleColumns = removeAt(this.doubleColumns, index);
+        this.floatColumns = removeAt(this.floatColumns, index);
+        this.byteColumns = removeAt(this.byteColumns, index);
+        this.intColumns = removeAt(this.intColumns, index);
+        this.header = null;
+    }
+
+    @Override
+    public void insertAttributeAt(Attribute attribute, int position) {
+        this.instanceInformation.insertAttributeAt(attribute, position);
+        this.columnTypes = insertAt(this.columnTypes, position);
+        this.doubleColumns = insertAt(this.doubleColumns, position);
+        this.floatColumns = insertAt(this.floatColumns, position);
+        this.byteColumns = insertAt(this.byteColumns, position);
+        this.intColumns = insertAt(this.intColumns, position);
+        initColumn(position, attribute);
+        // the values of the new attribute are missing
+        for (int i = 0; i < this.numInstances; i++) {
+            setValue(i, position, Double.NaN);
+        }
+        this.header = null;
+    }
+
+    private static int[] removeAt(int[] array, int index) {
+        int[] removed = new int[array.length - 1];
+        System.arraycopy(array, 0, removed, 0, index);
+        System.arraycopy(array, index + 1, removed, index, array.length - index - 1);
+        return removed;
+    }
+
+    private static <T> T[] removeAt(T[] array, int index) {
+        T[] removed = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, removed, index, array.length - index - 1);
+        return removed;
+    }
+
+    private static int[] insertAt(int[] array, int index) {
+        int[] inserted = new int[array.length + 1];
+        System.arraycopy(array, 0, inserted, 0, index);
+        System.arraycopy(array, index, inserted, index + 1, array.length - index);
+        return inserted;
+    }
+
+    private static <T> T[] insertAt(T[] array, int index) {
+        T[] inserted = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, index, inserted, index + 1, array.length - index);
+        inserted[index] = null;
+        return inserted;
+    }
+
+    /**
+     * View of a row of columnar instances.
+     */
+    protected static class RowInstance extends InstanceImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final ColumnarInstances instances;
+
+        protected final int row;
+
+        public RowInstance(ColumnarInstances instances, int row) {
+            super(instances.weight(row), new RowData(instances, row));
+            this.instances = instances;
+            this.row = row;
+            this.instanceHeader = instances.header();
+        }
+
+        @Override
+        public double weight() {
+            return this.instances.weight(this.row);
+        }
+
+        @Override
+        public void setWeight(double weight) {
+            super.setWeight(weight);
+            this.instances.setWeight(this.row, weight);
+        }
+
+        /**
+         * @return a dense instance with the values of the row, independent of the columns
+         */
+        @Override
+        public Instance copy() {
+            DenseInstance copy = new DenseInstance(this);
+            copy.setWeight(weight());
+            return copy;
+        }
+    }
+
+    /**
+     * The values of a row of columnar instances.
+     */
+    protected static class RowData implements InstanceData {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final ColumnarInstances instances;
+
+        protected final int row;
+
+        public RowData(ColumnarInstances instances, int row) {
+            this.instances = instances;
+            this.row = row;
+        }
+
+        @Override
+        public int numAttributes() {
+            return this.instances.numAttributes();
+        }
+
+        @Override
+        public double value(int instAttIndex) {
+            return this.instances.value(this.row, instAttIndex);
+        }
+
+        @Override
+        public boolean isMissing(int instAttIndex) {
+            return Double.isNaN(value(instAttIndex));
+        }
+
+        @Override
+        public int numValues() {
+            return numAttributes();
+        }
+
+        @Override
+        public int index(int i) {
+            return i;
+        }
+
+        @Override
+        public double valueSparse(int i) {
+            return value(i);
+        }
+
+        @Override
+        public boolean isMissingSparse(int p1) {
+            return isMissing(p1);
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            double[] values = new double[numAttributes()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value(i);
+            }
+            return values;
+        }
+
+        @Override
+        public void setValue(int m_numAttributes, double d) {
+            this.instances.setValue(this.row, m_numAttributes, d);
+        }
+
+        @Override
+        public void deleteAttributeAt(int index) {
+            throw new UnsupportedOperationException("The attributes of columnar instances are changed on the instances.");
+        }
+
+        @Override
+        public void insertAttributeAt(int index) {
+            throw new UnsupportedOperationException("The attributes of columnar instances are changed on the instances.");
+        }
+
+        @Override
+        public InstanceData copy() {
+            return new DenseInstanceData(toDoubleArray());
+        }
+    }
+}
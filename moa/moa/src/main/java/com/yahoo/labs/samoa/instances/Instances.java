@@ -106,6 +106,18 @@ public class Instances implements Serializable {
         this.computeAttributesIndices();
     }
 
+    /**
+     * Instantiates a new instances read by a loader.
+     *
+     * @param loader the loader, whose header is already read
+     */
+    public Instances(ArffLoader loader) {
+        this.arff = loader;
+        this.instanceInformation = arff.getStructure();
+        this.instances = new ArrayList<Instance>();
+        this.computeAttributesIndices();
+    }
+
     /**
      * Instantiates a new instances.
      *
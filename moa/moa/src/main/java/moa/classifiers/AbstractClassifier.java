@@ -168,15 +168,27 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
 
     @Override
     public void trainOnInstance(Instance inst) {
+        if (isTrainingInstance(inst)) {
+            this.trainingWeightSeenByModel += inst.weight();
+            trainOnInstanceImpl(inst);
+        }
+    }
+
+    /**
+     * Gets whether trainOnInstance learns from an instance: it must weigh
+     * more than 0 and, unless this learner is semi-supervised, have a class.
+     * Learners that train on batches use it to skip the same instances.
+     *
+     * @param inst the instance
+     * @return true if the instance is learnt from
+     */
+    protected boolean isTrainingInstance(Instance inst) {
         boolean isTraining = (inst.weight() > 0.0);
         if (this instanceof SemiSupervisedLearner == false &&
                 inst.classIsMissing() == true){
             isTraining = false;
         }
-        if (isTraining) {
-            this.trainingWeightSeenByModel += inst.weight();
-            trainOnInstanceImpl(inst);
-        }
+        return isTraining;
     }
 
     @Override
@@ -24,6 +24,7 @@ import moa.learners.Learner;
 
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.InstanceData;
+import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.Prediction;
 
 /**
@@ -76,6 +77,33 @@ public interface Classifier extends Learner<Example<Instance>> {
      * test instance in each class
      */
     public double[] getVotesForInstance(Instance inst);
+
+    /**
+     * Trains this learner incrementally on a batch of instances, in their
+     * order. Learners may learn a batch faster than each of its instances in
+     * turn, but end in the same state.
+     *
+     * @param batch the instances to be used for training
+     */
+    public default void trainOnInstances(Instances batch) {
+        for (int i = 0; i < batch.numInstances(); i++) {
+            trainOnInstance(batch.instance(i));
+        }
+    }
+
+    /**
+     * Predicts the class memberships of a batch of instances, as
+     * getVotesForInstance does for each of them.
+     *
+     * @param batch the instances to be classified
+     * @param votes the array to store the votes of each instance in, at
+     * least as long as the batch
+     */
+    public default void getVotesForInstances(Instances batch, double[][] votes) {
+        for (int i = 0; i < batch.numInstances(); i++) {
+            votes[i] = getVotesForInstance(batch.instance(i));
+        }
+    }
     
     /**
      * Sets the reference to the header of the data stream. The header of the
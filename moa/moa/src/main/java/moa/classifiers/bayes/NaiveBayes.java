@@ -32,6 +32,7 @@ import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.StringUtils;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 
 /**
  * Naive Bayes incremental learner.
@@ -82,12 +83,88 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         }
     }
 
+    /**
+     * Trains on a batch attribute by attribute: each attribute observer
+     * observes all the instances of the batch in their order, as it would one
+     * instance at a time.
+     */
+    @Override
+    public void trainOnInstances(Instances batch) {
+        if (getClass() != NaiveBayes.class) {
+            super.trainOnInstances(batch);
+            return;
+        }
+        Instance[] insts = new Instance[batch.numInstances()];
+        int numInsts = 0;
+        for (int i = 0; i < insts.length; i++) {
+            Instance inst = batch.instance(i);
+            if (isTrainingInstance(inst)) {
+                this.trainingWeightSeenByModel += inst.weight();
+                this.observedClassDistribution.addToValue((int) inst.classValue(), inst.weight());
+                insts[numInsts++] = inst;
+            }
+        }
+        if (numInsts == 0) {
+            return;
+        }
+        for (int i = 0; i < insts[0].numAttributes() - 1; i++) {
+            int instAttIndex = modelAttIndexToInstanceAttIndex(i, insts[0]);
+            AttributeClassObserver obs = this.attributeObservers.get(i);
+            if (obs == null) {
+                obs = insts[0].attribute(instAttIndex).isNominal() ? newNominalClassObserver()
+                        : newNumericClassObserver();
+                this.attributeObservers.set(i, obs);
+            }
+            for (int j = 0; j < numInsts; j++) {
+                obs.observeAttributeClass(insts[j].value(instAttIndex), (int) insts[j].classValue(), insts[j].weight());
+            }
+        }
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         return doNaiveBayesPrediction(inst, this.observedClassDistribution,
                 this.attributeObservers);
     }
 
+    /**
+     * Predicts a batch attribute by attribute. The votes of each instance are
+     * multiplied in the same order as by doNaiveBayesPrediction.
+     */
+    @Override
+    public void getVotesForInstances(Instances batch, double[][] votes) {
+        if (getClass() != NaiveBayes.class || batch.numInstances() == 0) {
+            super.getVotesForInstances(batch, votes);
+            return;
+        }
+        Instance[] insts = new Instance[batch.numInstances()];
+        int numClasses = this.observedClassDistribution.numValues();
+        double observedClassSum = this.observedClassDistribution.sumOfValues();
+        for (int i = 0; i < insts.length; i++) {
+            insts[i] = batch.instance(i);
+            votes[i] = new double[numClasses];
+            for (int classIndex = 0; classIndex < numClasses; classIndex++) {
+                votes[i][classIndex] = this.observedClassDistribution.getValue(classIndex)
+                        / observedClassSum;
+            }
+        }
+        for (int attIndex = 0; attIndex < insts[0].numAttributes() - 1; attIndex++) {
+            int instAttIndex = modelAttIndexToInstanceAttIndex(attIndex, insts[0]);
+            AttributeClassObserver obs = this.attributeObservers.get(attIndex);
+            if (obs == null) {
+                continue;
+            }
+            for (int i = 0; i < insts.length; i++) {
+                if (!insts[i].isMissing(instAttIndex)) {
+                    double value = insts[i].value(instAttIndex);
+                    for (int classIndex = 0; classIndex < numClasses; classIndex++) {
+                        votes[i][classIndex] *= obs.probabilityOfAttributeValueGivenClass(value, classIndex);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     protected Measurement[] getModelMeasurementsImpl() {
         return null;
@@ -0,0 +1,192 @@
+/*
+ *    SplitSuggestionRanker.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core;
+
+import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Ranks the split suggestions of the attributes of a node. The best suggestion of every attribute is evaluated,
+ * in parallel chunks of attributes on wide data, and only the k best suggestions are kept in a bounded heap.
+ *
+ * The suggestions are returned by ascending merit, those of equal merit in evaluation order, which is what the
+ * last k elements of a stable sort of all the suggestions would be. Trees that used to sort every suggestion
+ * therefore take the same decisions.
+ */
+public class SplitSuggestionRanker implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Keeps every suggestion.
+     */
+    public static final int ALL = Integer.MAX_VALUE;
+
+    /**
+     * Attributes are only evaluated in parallel in chunks of at least this many attributes.
+     */
+    public static final int MIN_ATTRIBUTES_PER_JOB = 32;
+
+    /**
+     * Best split suggestion of an attribute, or null if the attribute cannot be split on.
+     */
+    public interface AttributeEvaluator {
+        AttributeSplitSuggestion getBestSplitSuggestion(int attIndex);
+    }
+
+    protected int numberOfJobs;
+
+    protected transient ForkJoinPool pool;
+
+    /**
+     * @param numberOfJobs the number of attribute chunks evaluated concurrently (-1 = as many as processors,
+     * 0 or 1 = evaluate in the calling thread)
+     */
+    public SplitSuggestionRanker(int numberOfJobs) {
+        this.numberOfJobs = numberOfJobs == -1 ? Runtime.getRuntime().availableProcessors() : numberOfJobs;
+    }
+
+    /**
+     * The k best suggestions of the attribute observers, by ascending merit.
+     *
+     * @param nullSplit the suggestion not to split, ranked as if evaluated before the attributes, or null
+     */
+    public AttributeSplitSuggestion[] getBestSplitSuggestions(final List<AttributeClassObserver> observers,
+                                                              final SplitCriterion criterion,
+                                                              final double[] preSplitDist,
+                                                              final boolean binaryOnly,
+                                                              AttributeSplitSuggestion nullSplit,
+                                                              int k) {
+        return getBestSplitSuggestions(observers.size(), attIndex -> {
+            AttributeClassObserver obs = observers.get(attIndex);
+            return obs == null ? null : obs.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex, binaryOnly);
+        }, nullSplit, k);
+    }
+
+    /**
+     * The k best suggestions of the attributes, by ascending merit.
+     *
+     * @param nullSplit the suggestion not to split, ranked as if evaluated before the attributes, or null
+     */
+    public AttributeSplitSuggestion[] getBestSplitSuggestions(int numAttributes,
+                                                              AttributeEvaluator evaluator,
+                                                              AttributeSplitSuggestion nullSplit,
+                                                              int k) {
+        AttributeSplitSuggestion[] suggestions = new AttributeSplitSuggestion[numAttributes + 1];
+        suggestions[0] = nullSplit;
+        evaluate(evaluator, suggestions);
+        return selectBest(suggestions, k);
+    }
+
+    private void evaluate(final AttributeEvaluator evaluator, final AttributeSplitSuggestion[] suggestions) {
+        int numAttributes = suggestions.length - 1;
+        int numChunks = Math.min(this.numberOfJobs, numAttributes / MIN_ATTRIBUTES_PER_JOB);
+        if (numChunks <= 1) {
+            for (int i = 0; i < numAttributes; i++) {
+                suggestions[i + 1] = evaluator.getBestSplitSuggestion(i);
+            }
+            return;
+        }
+
+        ForkJoinPool pool = getPool();
+        List<Callable<Void>> chunks = new ArrayList<>(numChunks);
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            final int from = (int) ((long) numAttributes * chunk / numChunks);
+            final int to = (int) ((long) numAttributes * (chunk + 1) / numChunks);
+            chunks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    suggestions[i + 1] = evaluator.getBestSplitSuggestion(i);
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(chunks)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not evaluate the split suggestions concurrently.", e);
+        }
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (this.pool == null) {
+            this.pool = new ForkJoinPool(this.numberOfJobs);
+        }
+        return this.pool;
+    }
+
+    /**
+     * The k best of the non null suggestions, by ascending merit then ascending position.
+     */
+    static AttributeSplitSuggestion[] selectBest(AttributeSplitSuggestion[] suggestions, int k) {
+        int numSuggestions = 0;
+        for (AttributeSplitSuggestion suggestion : suggestions) {
+            if (suggestion != null) {
+                numSuggestions++;
+            }
+        }
+
+        if (numSuggestions <= k) {
+            AttributeSplitSuggestion[] all = new AttributeSplitSuggestion[numSuggestions];
+            int i = 0;
+            for (AttributeSplitSuggestion suggestion : suggestions) {
+                if (suggestion != null) {
+                    all[i++] = suggestion;
+                }
+            }
+            // stable, equal merits keep their order
+            Arrays.sort(all);
+            return all;
+        }
+
+        // the head of the heap is the worst kept suggestion: lowest merit, then earliest position
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, (a, b) -> {
+            int cmp = suggestions[a].compareTo(suggestions[b]);
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int i = 0; i < suggestions.length; i++) {
+            if (suggestions[i] == null) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.offer(i);
+            } else if (suggestions[i].compareTo(suggestions[heap.peek()]) >= 0) {
+                // a later suggestion of equal merit ranks higher, as in a stable sort
+                heap.poll();
+                heap.offer(i);
+            }
+        }
+        AttributeSplitSuggestion[] best = new AttributeSplitSuggestion[heap.size()];
+        for (int i = 0; i < best.length; i++) {
+            best[i] = suggestions[heap.poll()];
+        }
+        return best;
+    }
+}
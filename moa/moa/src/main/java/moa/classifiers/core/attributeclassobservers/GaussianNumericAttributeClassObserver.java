@@ -33,6 +33,7 @@ import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.GaussianEstimator;
 import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
 import com.github.javacliparser.IntOption;
 
 /**
@@ -173,4 +174,17 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public void observeAttributeTarget(double attVal, double target) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
+
+    @Override
+    public OptionHandler copy() {
+        if (getClass() != GaussianNumericAttributeClassObserver.class) {
+            return super.copy();
+        }
+        GaussianNumericAttributeClassObserver copy = new GaussianNumericAttributeClassObserver();
+        copy.numBinsOption.setValue(this.numBinsOption.getValue());
+        copy.minValueObservedPerClass = new DoubleVector(this.minValueObservedPerClass);
+        copy.maxValueObservedPerClass = new DoubleVector(this.maxValueObservedPerClass);
+        copy.attValDistPerClass = this.attValDistPerClass.copyElements();
+        return copy;
+    }
 }
@@ -30,6 +30,7 @@ import moa.core.Utils;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
 
 /**
  * Class for observing the class data distribution for a nominal attribute.
@@ -175,4 +176,16 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public OptionHandler copy() {
+        if (getClass() != NominalAttributeClassObserver.class) {
+            return super.copy();
+        }
+        NominalAttributeClassObserver copy = new NominalAttributeClassObserver();
+        copy.totalWeightObserved = this.totalWeightObserved;
+        copy.missingWeightObserved = this.missingWeightObserved;
+        copy.attValDistPerClass = this.attValDistPerClass.copyElements();
+        return copy;
+    }
+
 }
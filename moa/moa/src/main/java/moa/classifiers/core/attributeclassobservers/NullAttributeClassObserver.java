@@ -23,6 +23,7 @@ import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -77,4 +78,12 @@ public class NullAttributeClassObserver extends AbstractOptionHandler implements
     public void observeAttributeTarget(double attVal, double target) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
+
+    @Override
+    public OptionHandler copy() {
+        if (getClass() != NullAttributeClassObserver.class) {
+            return super.copy();
+        }
+        return new NullAttributeClassObserver();
+    }
 }
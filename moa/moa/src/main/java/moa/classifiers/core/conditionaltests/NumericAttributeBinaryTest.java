@@ -89,6 +89,10 @@ public class NumericAttributeBinaryTest extends InstanceConditionalBinaryTest {
         return this.attValue;
     }
 
+    public boolean isEqualsPassesTest() {
+        return this.equalsPassesTest;
+    }
+
 
     @Override
     public int getAttributeIndex() {
@@ -20,6 +20,7 @@
 package moa.classifiers.core.driftdetection;
 
 import moa.AbstractMOAObject;
+import moa.MOAObject;
 
 /**
  * ADaptive sliding WINdow method. This method is a change detector and estimator.
@@ -48,6 +49,17 @@ public class ADWIN extends AbstractMOAObject {
             addToHead();
         }
 
+        public List(List toCopy) {
+//			post: initializes the list with copies of the buckets of the given list.
+            clear();
+            for (ListItem item = toCopy.head(); item != null; item = item.next()) {
+                addToTail();
+                this.tail.bucketSizeRow = item.bucketSizeRow;
+                System.arraycopy(item.bucketTotal, 0, this.tail.bucketTotal, 0, item.bucketTotal.length);
+                System.arraycopy(item.bucketVariance, 0, this.tail.bucketVariance, 0, item.bucketVariance.length);
+            }
+        }
+
         /* Interface Store Methods */
         public int size() {
             //	post: returns the number of elements in the list.
@@ -595,6 +607,30 @@ public class ADWIN extends AbstractMOAObject {
         mintClock = cl;
     }
 
+    @Override
+    public MOAObject copy() {
+        if (getClass() != ADWIN.class) {
+            return super.copy();
+        }
+        ADWIN copy = new ADWIN(this.mdbldelta);
+        copy.mintTime = this.mintTime;
+        copy.mintClock = this.mintClock;
+        copy.mdblWidth = this.mdblWidth;
+        copy.lastBucketRow = this.lastBucketRow;
+        copy.TOTAL = this.TOTAL;
+        copy.VARIANCE = this.VARIANCE;
+        copy.WIDTH = this.WIDTH;
+        copy.BucketNumber = this.BucketNumber;
+        copy.Detect = this.Detect;
+        copy.numberDetections = this.numberDetections;
+        copy.DetectTwice = this.DetectTwice;
+        copy.blnBucketDeleted = this.blnBucketDeleted;
+        copy.BucketNumberMAX = this.BucketNumberMAX;
+        copy.mintMinWinLength = this.mintMinWinLength;
+        copy.listRowBuckets = copy.new List(this.listRowBuckets);
+        return copy;
+    }
+
     public String getEstimatorInfo() {
         return "ADWIN;;";
     }
@@ -62,6 +62,22 @@ public class ADWINChangeDetector extends AbstractChangeDetector {
         super.resetLearning();
     }
 
+    @Override
+    public ChangeDetector copy() {
+        if (getClass() != ADWINChangeDetector.class) {
+            return super.copy();
+        }
+        ADWINChangeDetector copy = new ADWINChangeDetector();
+        copy.deltaAdwinOption.setValue(this.deltaAdwinOption.getValue());
+        copy.adwin = this.adwin == null ? null : (ADWIN) this.adwin.copy();
+        copy.isChangeDetected = this.isChangeDetected;
+        copy.isWarningZone = this.isWarningZone;
+        copy.estimation = this.estimation;
+        copy.delay = this.delay;
+        copy.isInitialized = this.isInitialized;
+        return copy;
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
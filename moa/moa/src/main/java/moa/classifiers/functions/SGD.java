@@ -36,8 +36,11 @@ import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.MultiChoiceOption;
 import moa.classifiers.Regressor;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 import moa.core.Utils;
 
+import java.util.Arrays;
+
 /**
 <!-- globalinfo-start -->
  * Implements stochastic gradient descent for learning various linear models (binary class SVM, binary class logistic regression and linear regression). 
@@ -271,6 +274,94 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
         }
     }
 
+    /**
+     * Trains the classifier with a batch of instances, making the same updates
+     * as trainOnInstanceImpl on each of them in turn but on a plain array of
+     * the weights, which is stored back after the batch.
+     *
+     * @param batch 	the training instances
+     */
+    @Override
+    public void trainOnInstances(Instances batch) {
+        if (getClass() != SGD.class) {
+            super.trainOnInstances(batch);
+            return;
+        }
+        double[] weights = null;
+        int numWeights = 0;
+        for (int i = 0; i < batch.numInstances(); i++) {
+            Instance instance = batch.instance(i);
+            if (!isTrainingInstance(instance)) {
+                continue;
+            }
+            this.trainingWeightSeenByModel += instance.weight();
+            if (weights == null) {
+                if (m_weights == null) {
+                    m_weights = new DoubleVector();
+                    m_bias = 0.0;
+                }
+                weights = m_weights.getArrayCopy();
+                numWeights = weights.length;
+            }
+            int classIndex = instance.classIndex();
+            int n1 = instance.numValues();
+
+            double wx = 0;
+            for (int p1 = 0; p1 < n1; p1++) {
+                int ind1 = instance.index(p1);
+                if (ind1 >= numWeights) {
+                    break;
+                }
+                if (ind1 != classIndex && !instance.isMissingSparse(p1)) {
+                    wx += instance.valueSparse(p1) * weights[ind1];
+                }
+            }
+
+            double y;
+            double z;
+            if (instance.classAttribute().isNominal()) {
+                y = (instance.classValue() == 0) ? -1 : 1;
+                z = y * (wx + m_bias);
+            } else {
+                y = instance.classValue();
+                z = y - (wx + m_bias);
+                y = 1;
+            }
+
+            double multiplier = 1.0;
+            if (m_numInstances == 0) {
+                multiplier = 1.0 - (m_learningRate * m_lambda) / m_t;
+            } else {
+                multiplier = 1.0 - (m_learningRate * m_lambda) / m_numInstances;
+            }
+            for (int j = 0; j < numWeights; j++) {
+                weights[j] *= multiplier;
+            }
+
+            if (m_loss != HINGE || (z < 1)) {
+                double factor = m_learningRate * y * dloss(z);
+                for (int p1 = 0; p1 < n1; p1++) {
+                    int indS = instance.index(p1);
+                    if (indS != classIndex && !instance.isMissingSparse(p1)) {
+                        if (indS >= numWeights) {
+                            // the weights past numWeights are still 0
+                            if (indS >= weights.length) {
+                                weights = Arrays.copyOf(weights, Math.max(indS + 1, 2 * weights.length));
+                            }
+                            numWeights = indS + 1;
+                        }
+                        weights[indS] += factor * instance.valueSparse(p1);
+                    }
+                }
+                m_bias += factor;
+            }
+            m_t++;
+        }
+        if (weights != null) {
+            m_weights = new DoubleVector(Arrays.copyOf(weights, numWeights));
+        }
+    }
+
     /**
      * Calculates the class membership probabilities for the given test
      * instance.
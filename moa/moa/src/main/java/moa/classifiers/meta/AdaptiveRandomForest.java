@@ -19,6 +19,7 @@
 package moa.classifiers.meta;
 
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
@@ -38,13 +39,16 @@ import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import moa.classifiers.trees.ARFHoeffdingTree;
 import moa.evaluation.BasicClassificationPerformanceEvaluator;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import moa.AbstractMOAObject;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 
@@ -85,7 +89,7 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * @version $Revision: 1 $
  */
 public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier,
-                                                                        CapabilitiesHandler {
+                                                                        CapabilitiesHandler, Cloneable {
 
     @Override
     public String getPurposeString() {
@@ -220,6 +224,113 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * With several jobs, draws the weights of the instances of the batch for
+     * each tree in the same order as trainOnInstanceImpl, then lets each tree
+     * test and train on the whole batch on its own thread, instead of
+     * synchronizing the threads on every instance.
+     */
+    @Override
+    public void trainOnInstances(Instances batch) {
+        if (this.executor == null || getClass() != AdaptiveRandomForest.class) {
+            super.trainOnInstances(batch);
+            return;
+        }
+        List<Instance> instances = new ArrayList<Instance>();
+        for (int row = 0; row < batch.numInstances(); row++) {
+            Instance instance = batch.instance(row);
+            if (isTrainingInstance(instance)) {
+                instances.add(instance);
+            }
+        }
+        if (instances.isEmpty()) {
+            return;
+        }
+        long[] instancesSeenAt = new long[instances.size()];
+        int[][] weights = new int[this.ensembleSizeOption.getValue()][instances.size()];
+        for (int row = 0; row < instances.size(); row++) {
+            Instance instance = instances.get(row);
+            this.trainingWeightSeenByModel += instance.weight();
+            instancesSeenAt[row] = ++this.instancesSeen;
+            if (this.ensemble == null)
+                initEnsemble(instance);
+            for (int i = 0; i < this.ensemble.length; i++) {
+                weights[i][row] = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+            }
+        }
+
+        Collection<Callable<Integer>> trainers = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < this.ensemble.length; i++) {
+            ARFBaseLearner learner = this.ensemble[i];
+            int[] learnerWeights = weights[i];
+            trainers.add(() -> {
+                for (int row = 0; row < instancesSeenAt.length; row++) {
+                    Instance instance = instances.get(row);
+                    DoubleVector vote = new DoubleVector(learner.getVotesForInstance(instance));
+                    learner.evaluator.addResult(new InstanceExample(instance), vote.getArrayRef());
+                    if (learnerWeights[row] > 0)
+                        learner.trainOnInstance(instance, learnerWeights[row], instancesSeenAt[row]);
+                }
+                return 0;
+            });
+        }
+        invokeAll(trainers);
+    }
+
+    /**
+     * With several jobs, gets the votes of each tree for the whole batch on its
+     * own thread, then combines them per instance as getVotesForInstance.
+     */
+    @Override
+    public void getVotesForInstances(Instances batch, double[][] votes) {
+        if (this.executor == null || this.ensemble == null || getClass() != AdaptiveRandomForest.class) {
+            super.getVotesForInstances(batch, votes);
+            return;
+        }
+        Instance[] testInstances = new Instance[batch.numInstances()];
+        for (int row = 0; row < testInstances.length; row++)
+            testInstances[row] = batch.instance(row).copy();
+        double[][][] ensembleVotes = new double[this.ensemble.length][testInstances.length][];
+        Collection<Callable<Integer>> testers = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < this.ensemble.length; i++) {
+            ARFBaseLearner learner = this.ensemble[i];
+            double[][] learnerVotes = ensembleVotes[i];
+            testers.add(() -> {
+                for (int row = 0; row < testInstances.length; row++)
+                    learnerVotes[row] = learner.getVotesForInstance(testInstances[row]);
+                return 0;
+            });
+        }
+        invokeAll(testers);
+
+        for (int row = 0; row < testInstances.length; row++) {
+            DoubleVector combinedVote = new DoubleVector();
+            for (int i = 0; i < this.ensemble.length; ++i) {
+                DoubleVector vote = new DoubleVector(ensembleVotes[i][row]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    double acc = this.ensemble[i].evaluator.getPerformanceMeasurements()[1].getValue();
+                    if (! this.disableWeightedVote.isSet() && acc > 0.0) {
+                        for (int v = 0; v < vote.numValues(); ++v) {
+                            vote.setValue(v, vote.getValue(v) * acc);
+                        }
+                    }
+                    combinedVote.addValues(vote);
+                }
+            }
+            votes[row] = combinedVote.getArrayRef();
+        }
+    }
+
+    private void invokeAll(Collection<Callable<Integer>> tasks) {
+        try {
+            for (Future<Integer> future : this.executor.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new RuntimeException("Could not run the trees on the batch.", ex);
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -315,6 +426,28 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         return forest;
 
     }
+
+    /**
+     * Copies the trees, detectors and background learners of the forest with their own copy methods and
+     * serializes only the rest of the forest. Subclasses, which may keep state of their own, are serialized as
+     * a whole.
+     */
+    @Override
+    public Classifier copy() {
+        if (getClass() != AdaptiveRandomForest.class) {
+            return super.copy();
+        }
+        AdaptiveRandomForest withoutEnsemble = (AdaptiveRandomForest) shallowCopy();
+        withoutEnsemble.ensemble = null;
+        AdaptiveRandomForest copy = (AdaptiveRandomForest) AbstractMOAObject.copy(withoutEnsemble);
+        if (this.ensemble != null) {
+            copy.ensemble = new ARFBaseLearner[this.ensemble.length];
+            for (int i = 0; i < this.ensemble.length; i++) {
+                copy.ensemble[i] = copy.new ARFBaseLearner(this.ensemble[i]);
+            }
+        }
+        return copy;
+    }
     
     /**
      * Inner class that represents a single tree member of the forest. 
@@ -379,7 +512,30 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
             init(indexOriginal, instantiatedClassifier, evaluatorInstantiated, instancesSeen, useBkgLearner, useDriftDetector, driftOption, warningOption, isBackgroundLearner);
         }
 
-        public void reset() {
+        /**
+         * Copy of a learner of another forest, with its own copies of the tree, detectors and background learner.
+         * The options of the copy are those of this forest.
+         */
+        public ARFBaseLearner(ARFBaseLearner toCopy) {
+            this.indexOriginal = toCopy.indexOriginal;
+            this.createdOn = toCopy.createdOn;
+            this.lastDriftOn = toCopy.lastDriftOn;
+            this.lastWarningOn = toCopy.lastWarningOn;
+            this.classifier = (ARFHoeffdingTree) toCopy.classifier.copy();
+            this.isBackgroundLearner = toCopy.isBackgroundLearner;
+            this.driftOption = toCopy.driftOption == null ? null : driftDetectionMethodOption;
+            this.warningOption = toCopy.warningOption == null ? null : warningDetectionMethodOption;
+            this.driftDetectionMethod = toCopy.driftDetectionMethod == null ? null : toCopy.driftDetectionMethod.copy();
+            this.warningDetectionMethod = toCopy.warningDetectionMethod == null ? null : toCopy.warningDetectionMethod.copy();
+            this.useBkgLearner = toCopy.useBkgLearner;
+            this.useDriftDetector = toCopy.useDriftDetector;
+            this.bkgLearner = toCopy.bkgLearner == null ? null : new ARFBaseLearner(toCopy.bkgLearner);
+            this.evaluator = (BasicClassificationPerformanceEvaluator) toCopy.evaluator.copy();
+            this.numberOfDriftsDetected = toCopy.numberOfDriftsDetected;
+            this.numberOfWarningsDetected = toCopy.numberOfWarningsDetected;
+        }
+
+        public void reset(long instancesSeen) {
             if(this.useBkgLearner && this.bkgLearner != null) {
                 this.classifier = this.bkgLearner.classifier;
                 
@@ -442,7 +598,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
                 if(this.driftDetectionMethod.getChange()) {
                     this.lastDriftOn = instancesSeen;
                     this.numberOfDriftsDetected++;
-                    this.reset();
+                    this.reset(instancesSeen);
                 }
             }
         }
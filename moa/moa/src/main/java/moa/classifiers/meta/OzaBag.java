@@ -19,12 +19,23 @@
  */
 package moa.classifiers.meta;
 
+import moa.AbstractMOAObject;
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.Classifier;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
@@ -48,13 +59,14 @@ import com.github.javacliparser.IntOption;
  *
  * <p>Parameters:</p> <ul>
  * <li>-l : Classiﬁer to train</li>
- * <li>-s : The number of models in the bag</li> </ul>
+ * <li>-s : The number of models in the bag</li>
+ * <li>-j : The number of threads training the models on batches</li> </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
 public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
-                                                          CapabilitiesHandler {
+                                                          CapabilitiesHandler, Cloneable {
 
     @Override
     public String getPurposeString() {
@@ -69,10 +81,24 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 's',
             "The number of models in the bag.", 10, 1, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "The number of threads training and testing the models on batches of instances (-1 = as many as processors).",
+            1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
 
+    // created on the first batch, so that copies of the bag get their own threads
+    protected transient ExecutorService executor;
+
+    // idle time after which the threads of the bag end
+    protected static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
     @Override
     public void resetLearningImpl() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
         Classifier baseLearner = (Classifier) getPreparedClassOption(this.baseLearnerOption);
         baseLearner.resetLearning();
@@ -93,6 +119,45 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         }
     }
 
+    /**
+     * Draws the weights of the instances of the batch for each model in the
+     * same order as trainOnInstanceImpl, then trains each model on its own
+     * batch of weighted instances, the models in parallel if there are several
+     * jobs.
+     */
+    @Override
+    public void trainOnInstances(Instances batch) {
+        if (getClass() != OzaBag.class) {
+            super.trainOnInstances(batch);
+            return;
+        }
+        Instances[] ensembleBatches = new Instances[this.ensemble.length];
+        for (int i = 0; i < this.ensemble.length; i++) {
+            ensembleBatches[i] = new Instances(batch, 0);
+        }
+        for (int row = 0; row < batch.numInstances(); row++) {
+            Instance inst = batch.instance(row);
+            if (!isTrainingInstance(inst)) {
+                continue;
+            }
+            this.trainingWeightSeenByModel += inst.weight();
+            for (int i = 0; i < this.ensemble.length; i++) {
+                int k = MiscUtils.poisson(1.0, this.classifierRandom);
+                if (k > 0) {
+                    ensembleBatches[i].add(inst);
+                    ensembleBatches[i].instance(ensembleBatches[i].numInstances() - 1).setWeight(inst.weight() * k);
+                }
+            }
+        }
+        List<Runnable> trainers = new ArrayList<Runnable>();
+        for (int i = 0; i < this.ensemble.length; i++) {
+            Classifier member = this.ensemble[i];
+            Instances memberBatch = ensembleBatches[i];
+            trainers.add(() -> member.trainOnInstances(memberBatch));
+        }
+        runAll(trainers);
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         DoubleVector combinedVote = new DoubleVector();
@@ -106,6 +171,78 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * Gets the votes of each model for the batch, the models in parallel if
+     * there are several jobs, then combines them per instance in the order of
+     * getVotesForInstance.
+     */
+    @Override
+    public void getVotesForInstances(Instances batch, double[][] votes) {
+        if (getClass() != OzaBag.class) {
+            super.getVotesForInstances(batch, votes);
+            return;
+        }
+        double[][][] ensembleVotes = new double[this.ensemble.length][batch.numInstances()][];
+        List<Runnable> testers = new ArrayList<Runnable>();
+        for (int i = 0; i < this.ensemble.length; i++) {
+            Classifier member = this.ensemble[i];
+            double[][] memberVotes = ensembleVotes[i];
+            testers.add(() -> member.getVotesForInstances(batch, memberVotes));
+        }
+        runAll(testers);
+        for (int row = 0; row < batch.numInstances(); row++) {
+            DoubleVector combinedVote = new DoubleVector();
+            for (int i = 0; i < this.ensemble.length; i++) {
+                DoubleVector vote = new DoubleVector(ensembleVotes[i][row]);
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    combinedVote.addValues(vote);
+                }
+            }
+            votes[row] = combinedVote.getArrayRef();
+        }
+    }
+
+    /**
+     * Runs tasks on the models one after the other, or on the threads of the
+     * bag if there are several jobs.
+     */
+    protected void runAll(List<Runnable> tasks) {
+        int numberOfJobs = this.numberOfJobsOption.getValue() == -1
+                ? Runtime.getRuntime().availableProcessors()
+                : this.numberOfJobsOption.getValue();
+        if (numberOfJobs <= 1 || tasks.size() <= 1) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+        if (this.executor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfJobs, numberOfJobs,
+                    THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable);
+                        // does not keep the JVM alive once the stream has been processed
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // the threads of a bag, or of a copy, that is no longer used end on their own
+            executor.allowCoreThreadTimeOut(true);
+            this.executor = executor;
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (Runnable task : tasks) {
+            futures.add(this.executor.submit(task));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not run the models of the bag on the batch.", e);
+        }
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
@@ -127,6 +264,27 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         return this.ensemble.clone();
     }
 
+    /**
+     * Copies the members of the bag with their own copy methods and serializes only the rest of the bag.
+     * Subclasses, which may keep state of their own, are serialized as a whole.
+     */
+    @Override
+    public Classifier copy() {
+        if (getClass() != OzaBag.class) {
+            return super.copy();
+        }
+        OzaBag withoutEnsemble = (OzaBag) shallowCopy();
+        withoutEnsemble.ensemble = null;
+        OzaBag copy = (OzaBag) AbstractMOAObject.copy(withoutEnsemble);
+        if (this.ensemble != null) {
+            copy.ensemble = new Classifier[this.ensemble.length];
+            for (int i = 0; i < this.ensemble.length; i++) {
+                copy.ensemble[i] = this.ensemble[i] == null ? null : this.ensemble[i].copy();
+            }
+        }
+        return copy;
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == OzaBag.class)
@@ -59,6 +59,7 @@ public class Patching extends AbstractClassifier implements MultiClassClassifier
     Instances errorInstances;
     Instances reDefinedClasses;
     Instances prototypeData;
+    Instances baseClassAttributeHeader;
     InstanceStore instanceStore;
 
     Vector subsets = new Vector();
@@ -119,6 +120,7 @@ public class Patching extends AbstractClassifier implements MultiClassClassifier
         this.instancesInBatch = 0;
 
         this.origData = null;
+        this.baseClassAttributeHeader = null;
         this.errorInstances = null;
         this.reDefinedClasses = null;
         this.subsets = new Vector();
@@ -595,12 +597,7 @@ public class Patching extends AbstractClassifier implements MultiClassClassifier
 
                 // Handling of optional usage of the base class as an additional attribute.
                 if (this.useBaseClassAsAttribute.isSet()) {
-                    Instances tmp = new Instances(this.prototypeData); // deep copy of our empty prototypeData
-                    tmp.add(inst);
-                    tmp = addBaseClassToInstances(tmp);
-                    weka.core.Instance inst2 = tmp.get(0);
-                    inst = inst2;
-                    inst2 = null;
+                    inst = addBaseClassToInstance(inst);
                 }
 
                 // Pre-classify instance and retrieve the used Decider
@@ -744,6 +741,31 @@ public class Patching extends AbstractClassifier implements MultiClassClassifier
         return moddedInstances;
     }
 
+    /**
+     * Same as addBaseClassToInstances for a single instance, without copying
+     * and filtering a data set per instance: the header with the additional
+     * attribute is only built once.
+     *
+     * @param inst
+     * @return
+     * @throws Exception
+     */
+    private weka.core.Instance addBaseClassToInstance(weka.core.Instance inst) throws Exception {
+        if (this.baseClassAttributeHeader == null) {
+            this.baseClassAttributeHeader = copyClassAttribute(new Instances(inst.dataset(), 0), "baseLabel", 1);
+            this.baseClassAttributeHeader.setClassIndex(inst.classIndex() + 1);
+        }
+
+        double[] values = new double[inst.numAttributes() + 1];
+        values[0] = this.baseClassifier.classifyInstance(inst); // Caution: this must always be "base"
+        for (int i = 0; i < inst.numAttributes(); i++) {
+            values[i + 1] = inst.value(i);
+        }
+        weka.core.Instance moddedInstance = new weka.core.DenseInstance(inst.weight(), values);
+        moddedInstance.setDataset(this.baseClassAttributeHeader);
+        return moddedInstance;
+    }
+
     /**
      * Copies the class attribute to another position (first position)
      *
@@ -0,0 +1,214 @@
+package moa.classifiers.transfer;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.SplitSuggestionRanker;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+
+import java.io.Serializable;
+
+/**
+ * Bitset encoding of an observation window whose input attributes are all {0,1} nominal attributes with unit
+ * weights and no missing values. Every attribute column and every class is a long[] over the rows of the window,
+ * so the class distributions of a binary nominal split on a set of rows come from AND + popcount.
+ *
+ * The split suggestions are built exactly as NominalAttributeClassObserver builds them from its counts, so
+ * phantom trees grow the same branches whether or not the bitsets are used.
+ */
+public class BinaryAttributeBitsets implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected int numRows;
+
+    protected int numWords;
+
+    // attributeBits[attIndex] has the bit of a row set if the attribute value of the row is 1
+    protected long[][] attributeBits;
+
+    protected long[][] classBits;
+
+    public BinaryAttributeBitsets(ColumnarInstanceStore store) {
+        this.numRows = store.numRows();
+        this.numWords = (this.numRows + 63) >>> 6;
+
+        int numClasses = 0;
+        for (int row = 0; row < this.numRows; row++) {
+            numClasses = Math.max(numClasses, store.classValue(row) + 1);
+        }
+        this.attributeBits = new long[store.numAttributes()][this.numWords];
+        this.classBits = new long[numClasses][this.numWords];
+        for (int row = 0; row < this.numRows; row++) {
+            for (int att = 0; att < store.numAttributes(); att++) {
+                if (store.value(att, row) == 1.0) {
+                    this.attributeBits[att][row >>> 6] |= 1L << row;
+                }
+            }
+            this.classBits[store.classValue(row)][row >>> 6] |= 1L << row;
+        }
+    }
+
+    /**
+     * Whether every input attribute of the store is a {0,1} nominal attribute, without missing values or
+     * non-unit weights.
+     */
+    public static boolean canEncode(ColumnarInstanceStore store) {
+        for (int att = 0; att < store.numAttributes(); att++) {
+            if (!store.isNominal(att)) {
+                return false;
+            }
+        }
+        for (int row = 0; row < store.numRows(); row++) {
+            if (store.weight(row) != 1.0) {
+                return false;
+            }
+            for (int att = 0; att < store.numAttributes(); att++) {
+                double value = store.value(att, row);
+                if (value != 0.0 && value != 1.0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int numClasses() {
+        return this.classBits.length;
+    }
+
+    public long[] rowsToMask(int[] rows) {
+        long[] mask = new long[this.numWords];
+        for (int row : rows) {
+            mask[row >>> 6] |= 1L << row;
+        }
+        return mask;
+    }
+
+    public int[] maskToRows(long[] mask) {
+        return maskToRows(mask, cardinality(mask));
+    }
+
+    /**
+     * The sorted rows of a mask holding the given number of rows.
+     */
+    public static int[] maskToRows(long[] mask, int numRows) {
+        int[] rows = new int[numRows];
+        int idx = 0;
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                rows[idx++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return rows;
+    }
+
+    public static int cardinality(long[] mask) {
+        int count = 0;
+        for (long bits : mask) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    public int countClass(long[] mask, int classValue) {
+        long[] classMask = this.classBits[classValue];
+        int count = 0;
+        for (int word = 0; word < this.numWords; word++) {
+            count += Long.bitCount(mask[word] & classMask[word]);
+        }
+        return count;
+    }
+
+    private int countClassWithValueOne(long[] mask, int attIndex, int classValue) {
+        long[] attMask = this.attributeBits[attIndex];
+        long[] classMask = this.classBits[classValue];
+        int count = 0;
+        for (int word = 0; word < this.numWords; word++) {
+            count += Long.bitCount(mask[word] & attMask[word] & classMask[word]);
+        }
+        return count;
+    }
+
+    /**
+     * Class distribution of the rows, trimmed after the last observed class like a trained DoubleVector.
+     */
+    public double[] classDistribution(long[] mask) {
+        DoubleVector distribution = new DoubleVector();
+        for (int classValue = 0; classValue < numClasses(); classValue++) {
+            int count = countClass(mask, classValue);
+            if (count > 0) {
+                distribution.addToValue(classValue, count);
+            }
+        }
+        return distribution.getArrayRef();
+    }
+
+    /**
+     * Rows of both branches of the test, in branch order.
+     */
+    public long[][] partition(long[] mask, NominalAttributeBinaryTest splitTest) {
+        long[] attMask = this.attributeBits[splitTest.getAttributeIndex()];
+        long[] ones = new long[this.numWords];
+        long[] zeros = new long[this.numWords];
+        for (int word = 0; word < this.numWords; word++) {
+            ones[word] = mask[word] & attMask[word];
+            zeros[word] = mask[word] & ~attMask[word];
+        }
+        return (int) splitTest.getAttributeValue() == 1
+                ? new long[][]{ones, zeros}
+                : new long[][]{zeros, ones};
+    }
+
+    /**
+     * The k best split suggestions of the masked rows, by ascending merit.
+     */
+    public AttributeSplitSuggestion[] getBestSplitSuggestions(final SplitCriterion criterion,
+                                                              final double[] preSplitDist,
+                                                              final long[] mask,
+                                                              SplitSuggestionRanker ranker,
+                                                              int k) {
+        if (cardinality(mask) == 0) {
+            return new AttributeSplitSuggestion[0];
+        }
+
+        final int[] classCounts = new int[numClasses()];
+        for (int classValue = 0; classValue < numClasses(); classValue++) {
+            classCounts[classValue] = countClass(mask, classValue);
+        }
+        return ranker.getBestSplitSuggestions(this.attributeBits.length, att -> {
+            int[] valueOneCounts = new int[classCounts.length];
+            for (int classValue = 0; classValue < classCounts.length; classValue++) {
+                valueOneCounts[classValue] = classCounts[classValue] == 0 ? 0
+                        : countClassWithValueOne(mask, att, classValue);
+            }
+            return getBestEvaluatedSplitSuggestion(criterion, preSplitDist, att, classCounts, valueOneCounts);
+        }, null, k);
+    }
+
+    private AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion,
+                                                                     double[] preSplitDist,
+                                                                     int attIndex,
+                                                                     int[] classCounts,
+                                                                     int[] valueOneCounts) {
+        // number of attribute values a nominal observer would have seen per class
+        int[] numValues = new int[classCounts.length];
+        for (int classValue = 0; classValue < classCounts.length; classValue++) {
+            if (valueOneCounts[classValue] > 0) {
+                numValues[classValue] = 2;
+            } else if (classCounts[classValue] > 0) {
+                numValues[classValue] = 1;
+            }
+        }
+
+        double[][] valueClassCounts = new double[2][classCounts.length];
+        for (int classValue = 0; classValue < classCounts.length; classValue++) {
+            valueClassCounts[0][classValue] = classCounts[classValue] - valueOneCounts[classValue];
+            valueClassCounts[1][classValue] = valueOneCounts[classValue];
+        }
+        return PhantomTree.getBestNominalBinarySplitSuggestion(
+                criterion, preSplitDist, attIndex, valueClassCounts, numValues);
+    }
+}
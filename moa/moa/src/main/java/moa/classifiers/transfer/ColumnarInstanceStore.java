@@ -0,0 +1,217 @@
+package moa.classifiers.transfer;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.core.OffHeapInstanceStore;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Column-wise copy of an observation window: one primitive array per input attribute plus the class values
+ * and weights. Phantom nodes refer to the window through sorted row indices, so the split counting loops read
+ * the attribute values sequentially instead of chasing one instance object per row.
+ *
+ * The instances themselves are kept for training the underlying Hoeffding tree. Over an
+ * {@link OffHeapInstanceStore} the attribute values are not copied but read from its buffers, only the class
+ * values and weights are held on the heap.
+ *
+ * A mutable store holds a sliding window: the row of the oldest instance is overwritten by the newest one. Such
+ * stores have no bitset encoding, as the masks of the phantom nodes would go stale.
+ */
+public class ColumnarInstanceStore implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected List<Instance> instances;
+
+    protected int numRows;
+
+    protected int numAttributes;
+
+    protected boolean[] isNominal;
+
+    // number of values of each nominal attribute, 0 for numeric attributes
+    protected int[] numValues;
+
+    // attributeValues[attIndex][row], attIndex as seen by the model (class attribute excluded), null if the
+    // values are read from offHeapInstances
+    protected double[][] attributeValues;
+
+    protected OffHeapInstanceStore offHeapInstances;
+
+    // index in the instances of each input attribute
+    protected int[] instanceAttributeIndices;
+
+    protected int[] classValues;
+
+    protected double[] weights;
+
+    protected BinaryAttributeBitsets binaryAttributeBitsets;
+
+    protected boolean isBinaryAttributeBitsetsChecked;
+
+    protected boolean isMutable;
+
+    public ColumnarInstanceStore(List<Instance> instances) {
+        this(instances, false);
+    }
+
+    public ColumnarInstanceStore(List<Instance> instances, boolean isMutable) {
+        this.instances = instances;
+        this.isMutable = isMutable;
+        this.numRows = instances.size();
+        this.numAttributes = this.numRows == 0 ? 0 : instances.get(0).numInputAttributes();
+        this.isNominal = new boolean[this.numAttributes];
+        this.numValues = new int[this.numAttributes];
+        this.instanceAttributeIndices = new int[this.numAttributes];
+        if (instances instanceof OffHeapInstanceStore) {
+            this.offHeapInstances = (OffHeapInstanceStore) instances;
+        } else {
+            this.attributeValues = new double[this.numAttributes][this.numRows];
+        }
+        this.classValues = new int[this.numRows];
+        this.weights = new double[this.numRows];
+
+        for (int att = 0; att < this.numAttributes; att++) {
+            Instance first = instances.get(0);
+            this.isNominal[att] = first.inputAttribute(att).isNominal();
+            if (this.isNominal[att]) {
+                this.numValues[att] = first.inputAttribute(att).numValues();
+            }
+            this.instanceAttributeIndices[att] = att < first.classIndex() ? att : att + 1;
+        }
+        for (int row = 0; row < this.numRows; row++) {
+            copyRow(row, instances.get(row));
+        }
+    }
+
+    private void copyRow(int row, Instance inst) {
+        if (this.attributeValues != null) {
+            for (int att = 0; att < this.numAttributes; att++) {
+                this.attributeValues[att][row] = inst.valueInputAttribute(att);
+            }
+        }
+        this.classValues[row] = (int) inst.classValue();
+        this.weights[row] = inst.weight();
+    }
+
+    public int numRows() {
+        return this.numRows;
+    }
+
+    public int numAttributes() {
+        return this.numAttributes;
+    }
+
+    public boolean isNominal(int attIndex) {
+        return this.isNominal[attIndex];
+    }
+
+    public int numValues(int attIndex) {
+        return this.numValues[attIndex];
+    }
+
+    public double value(int attIndex, int row) {
+        if (this.attributeValues == null) {
+            return this.offHeapInstances.value(row, this.instanceAttributeIndices[attIndex]);
+        }
+        return this.attributeValues[attIndex][row];
+    }
+
+    public int classValue(int row) {
+        return this.classValues[row];
+    }
+
+    public double weight(int row) {
+        return this.weights[row];
+    }
+
+    public Instance instance(int row) {
+        return this.instances.get(row);
+    }
+
+    public boolean isMutable() {
+        return this.isMutable;
+    }
+
+    /**
+     * Overwrites a row of a mutable store.
+     */
+    public void setRow(int row, Instance inst) {
+        if (!this.isMutable) {
+            throw new IllegalStateException("The rows of an immutable store cannot be overwritten.");
+        }
+        this.instances.set(row, inst);
+        copyRow(row, inst);
+    }
+
+    /**
+     * Bitset encoding of the window, or null if not every input attribute is a {0,1} nominal attribute or if the
+     * store is mutable.
+     */
+    public synchronized BinaryAttributeBitsets getBinaryAttributeBitsets() {
+        if (!this.isBinaryAttributeBitsetsChecked && !this.isMutable) {
+            if (BinaryAttributeBitsets.canEncode(this)) {
+                this.binaryAttributeBitsets = new BinaryAttributeBitsets(this);
+            }
+            this.isBinaryAttributeBitsetsChecked = true;
+        }
+        return this.binaryAttributeBitsets;
+    }
+
+    /**
+     * Same as splitTest.branchForInstance(instance(row)), reading the binary tests straight from the columns.
+     */
+    public int branchForRow(InstanceConditionalTest splitTest, int row) {
+        if (splitTest instanceof NominalAttributeBinaryTest) {
+            double value = value(splitTest.getAttributeIndex(), row);
+            if (Double.isNaN(value)) {
+                return -1;
+            }
+            return (int) value == (int) splitTest.getAttributeValue() ? 0 : 1;
+        }
+        if (splitTest instanceof NumericAttributeBinaryTest) {
+            double value = value(splitTest.getAttributeIndex(), row);
+            if (Double.isNaN(value)) {
+                return -1;
+            }
+            double splitValue = splitTest.getAttributeValue();
+            if (value == splitValue) {
+                return ((NumericAttributeBinaryTest) splitTest).isEqualsPassesTest() ? 0 : 1;
+            }
+            return value < splitValue ? 0 : 1;
+        }
+        return splitTest.branchForInstance(this.instances.get(row));
+    }
+
+    /**
+     * Splits the sorted rows by the branch of the test. Rows missing the tested attribute are left out, the
+     * returned slices are sorted.
+     */
+    public int[][] partition(InstanceConditionalTest splitTest, int numBranches, int[] rows) {
+        int[] branches = new int[rows.length];
+        int[] branchSizes = new int[numBranches];
+        for (int i = 0; i < rows.length; i++) {
+            branches[i] = branchForRow(splitTest, rows[i]);
+            if (branches[i] >= 0) {
+                branchSizes[branches[i]]++;
+            }
+        }
+
+        int[][] partitions = new int[numBranches][];
+        for (int branch = 0; branch < numBranches; branch++) {
+            partitions[branch] = new int[branchSizes[branch]];
+            branchSizes[branch] = 0;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            int branch = branches[i];
+            if (branch >= 0) {
+                partitions[branch][branchSizes[branch]++] = rows[i];
+            }
+        }
+        return partitions;
+    }
+}
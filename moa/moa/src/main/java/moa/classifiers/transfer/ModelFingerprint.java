@@ -0,0 +1,77 @@
+package moa.classifiers.transfer;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact description of the concept a model was trained on: the class priors and the average depth of the
+ * phantom branches grown over a window of its stream. Models of similar concepts have close fingerprints, so the
+ * source model of a transfer can be looked up without evaluating the stored models.
+ */
+public class ModelFingerprint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double[] classPriors;
+
+    protected double avgDepth;
+
+    public ModelFingerprint(double[] classPriors, double avgDepth) {
+        this.classPriors = classPriors;
+        this.avgDepth = avgDepth;
+    }
+
+    /**
+     * Fingerprint of a window of instances.
+     *
+     * @param emptyPhantomTree the phantom tree the depth is measured with, left untouched
+     */
+    public static ModelFingerprint of(List<Instance> instances, PhantomTree emptyPhantomTree) {
+        if (instances.isEmpty()) {
+            return new ModelFingerprint(new double[0], 0);
+        }
+        double[] classPriors = new double[instances.get(0).numClasses()];
+        double totalWeight = 0;
+        for (Instance inst : instances) {
+            if (!inst.classIsMissing()) {
+                classPriors[(int) inst.classValue()] += inst.weight();
+                totalWeight += inst.weight();
+            }
+        }
+        for (int i = 0; i < classPriors.length; i++) {
+            classPriors[i] = totalWeight > 0 ? classPriors[i] / totalWeight : 0;
+        }
+        PhantomTree phantomTree = (PhantomTree) emptyPhantomTree.copy();
+        return new ModelFingerprint(classPriors, phantomTree.getConstructionComplexity(new ArrayList<>(instances)));
+    }
+
+    public double[] getClassPriors() {
+        return this.classPriors;
+    }
+
+    public double getAvgDepth() {
+        return this.avgDepth;
+    }
+
+    /**
+     * L1 distance between the class priors, in [0, 2], plus the difference between the depths relative to the
+     * deepest, in [0, 1].
+     */
+    public double distance(ModelFingerprint other) {
+        double distance = 0;
+        int numClasses = Math.max(this.classPriors.length, other.classPriors.length);
+        for (int i = 0; i < numClasses; i++) {
+            double prior = i < this.classPriors.length ? this.classPriors[i] : 0;
+            double otherPrior = i < other.classPriors.length ? other.classPriors[i] : 0;
+            distance += Math.abs(prior - otherPrior);
+        }
+        double maxDepth = Math.max(this.avgDepth, other.avgDepth);
+        if (maxDepth > 0) {
+            distance += Math.abs(this.avgDepth - other.avgDepth) / maxDepth;
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,234 @@
+package moa.classifiers.transfer;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.core.SerializeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classifiers stored at drifts, each indexed by the fingerprint of the concept it was trained on and the header of
+ * the stream it was trained on.
+ *
+ * The models are kept serialized, in memory or as files of a directory, and are only deserialized when looked
+ * up: a large repository costs little heap, and finding the nearest model only scans the fingerprints. Every
+ * lookup returns a fresh copy, so the stored models are never modified. Once the repository holds its maximum
+ * number of models, the oldest one is dropped for each new one.
+ *
+ * A repository in a directory persists. The models stored by earlier runs are found again, which is how a model
+ * learnt on one stream is transferred to another with the same attributes.
+ */
+public class ModelRepository implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final String INDEX_FILE_NAME = "fingerprints.moa";
+
+    /**
+     * A stored model: its fingerprint, the header of its stream and the id its file is named after.
+     */
+    protected static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final ModelFingerprint fingerprint;
+
+        protected final InstancesHeader header;
+
+        protected final long modelId;
+
+        public Entry(ModelFingerprint fingerprint, InstancesHeader header, long modelId) {
+            this.fingerprint = fingerprint;
+            this.header = header;
+            this.modelId = modelId;
+        }
+    }
+
+    // null if the models are kept in memory
+    protected File directory;
+
+    // -1 if unbounded
+    protected int maxSize;
+
+    // oldest first
+    protected List<Entry> entries = new ArrayList<>();
+
+    // serialized models, only used in memory
+    protected List<byte[]> serializedModels = new ArrayList<>();
+
+    protected long nextModelId;
+
+    /**
+     * An empty repository kept in memory.
+     *
+     * @param maxSize the maximum number of models kept, -1 for no maximum
+     */
+    public ModelRepository(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The repository of a directory, with the models stored there before.
+     *
+     * @param maxSize the maximum number of models kept, -1 for no maximum
+     */
+    @SuppressWarnings("unchecked")
+    public ModelRepository(File directory, int maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        try {
+            if (indexFile.exists()) {
+                this.entries = (List<Entry>) SerializeUtils.readFromFile(indexFile);
+                for (Entry entry : this.entries) {
+                    this.nextModelId = Math.max(this.nextModelId, entry.modelId + 1);
+                }
+                dropOldest();
+            } else if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create directory " + directory);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Could not open the model repository " + directory, e);
+        }
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public ModelFingerprint getFingerprint(int index) {
+        return this.entries.get(index).fingerprint;
+    }
+
+    public InstancesHeader getHeader(int index) {
+        return this.entries.get(index).header;
+    }
+
+    /**
+     * Stores a model, dropping the oldest one if the repository is full. The indices of the models stored before
+     * then move down by one.
+     *
+     * @param header the header of the stream the model was trained on
+     */
+    public void add(Classifier model, InstancesHeader header, ModelFingerprint fingerprint) {
+        Entry entry = new Entry(fingerprint, header, this.nextModelId++);
+        try {
+            if (this.directory == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(model);
+                }
+                this.serializedModels.add(bytes.toByteArray());
+            } else {
+                SerializeUtils.writeToFile(modelFile(entry.modelId), model);
+            }
+            this.entries.add(entry);
+            dropOldest();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the model in the repository.", e);
+        }
+    }
+
+    private void dropOldest() throws IOException {
+        List<Entry> dropped = new ArrayList<>();
+        while (this.maxSize >= 0 && this.entries.size() > this.maxSize) {
+            dropped.add(this.entries.remove(0));
+            if (this.directory == null) {
+                this.serializedModels.remove(0);
+            }
+        }
+        if (this.directory == null) {
+            return;
+        }
+        // the index is written before the dropped models are deleted and after the added model is complete, so it
+        // only lists complete models
+        SerializeUtils.writeToFile(new File(this.directory, INDEX_FILE_NAME), new ArrayList<>(this.entries));
+        for (Entry entry : dropped) {
+            File modelFile = modelFile(entry.modelId);
+            if (modelFile.exists() && !modelFile.delete()) {
+                throw new IOException("Could not delete " + modelFile);
+            }
+        }
+    }
+
+    /**
+     * Deserializes a stored model.
+     */
+    public Classifier get(int index) {
+        try {
+            if (this.directory == null) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                        new ByteArrayInputStream(this.serializedModels.get(index)))) {
+                    return (Classifier) in.readObject();
+                }
+            }
+            return (Classifier) SerializeUtils.readFromFile(modelFile(this.entries.get(index).modelId));
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("Could not load model " + index + " from the repository.", e);
+        }
+    }
+
+    /**
+     * Index of the model with the nearest fingerprint among those trained on streams with the given header, the
+     * latest one among equally near models, or -1 if there is no such model.
+     */
+    public int nearest(ModelFingerprint fingerprint, InstancesHeader header) {
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < this.entries.size(); i++) {
+            Entry entry = this.entries.get(i);
+            if (!isCompatible(entry.header, header)) {
+                continue;
+            }
+            double distance = entry.fingerprint.distance(fingerprint);
+            if (distance <= nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Whether a model trained on instances of one header can predict instances of the other: the same class
+     * attribute and attributes of the same types, the nominal ones with the same labels in the same order.
+     */
+    public static boolean isCompatible(InstancesHeader header, InstancesHeader otherHeader) {
+        if (header == null || otherHeader == null || header.numAttributes() != otherHeader.numAttributes()
+                || header.classIndex() != otherHeader.classIndex()) {
+            return false;
+        }
+        for (int i = 0; i < header.numAttributes(); i++) {
+            Attribute attribute = header.attribute(i);
+            Attribute otherAttribute = otherHeader.attribute(i);
+            if (attribute.isNominal() != otherAttribute.isNominal()
+                    || attribute.isNumeric() != otherAttribute.isNumeric()) {
+                return false;
+            }
+            if (attribute.isNominal()) {
+                if (attribute.numValues() != otherAttribute.numValues()) {
+                    return false;
+                }
+                for (int j = 0; j < attribute.numValues(); j++) {
+                    if (!attribute.value(j).equals(otherAttribute.value(j))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    protected File modelFile(long modelId) {
+        return new File(this.directory, "model-" + modelId + ".moa");
+    }
+}
@@ -0,0 +1,83 @@
+package moa.classifiers.transfer;
+
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * Phantom branches grown by a PhantomTree: their depth statistics, their branch prefixes and the time it took to
+ * grow them.
+ */
+public class PhantomGrowthEvent extends EventObject {
+
+    private final double trainingWeightSeen;
+    private final double avgDepth;
+    private final double minDepth;
+    private final double maxDepth;
+    private final double depthInterval;
+    private final List<String> branchPrefixes;
+    private final long time;
+
+    public PhantomGrowthEvent(PhantomTree source,
+                              double trainingWeightSeen,
+                              double avgDepth,
+                              double minDepth,
+                              double maxDepth,
+                              double depthInterval,
+                              List<String> branchPrefixes,
+                              long time) {
+        super(source);
+        this.trainingWeightSeen = trainingWeightSeen;
+        this.avgDepth = avgDepth;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.depthInterval = depthInterval;
+        this.branchPrefixes = branchPrefixes;
+        this.time = time;
+    }
+
+    @Override
+    public PhantomTree getSource() {
+        return (PhantomTree) super.getSource();
+    }
+
+    /**
+     * Training weight the tree had seen when the branches were grown.
+     */
+    public double getTrainingWeightSeen() {
+        return this.trainingWeightSeen;
+    }
+
+    public double getAvgDepth() {
+        return this.avgDepth;
+    }
+
+    public double getMinDepth() {
+        return this.minDepth;
+    }
+
+    public double getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * Half width of the confidence interval of the average depth, -1 if fewer than two branches were grown.
+     */
+    public double getDepthInterval() {
+        return this.depthInterval;
+    }
+
+    public int getNumBranches() {
+        return this.branchPrefixes.size();
+    }
+
+    public List<String> getBranchPrefixes() {
+        return this.branchPrefixes;
+    }
+
+    /**
+     * Time spent growing the branches, in nanoseconds.
+     */
+    public long getTime() {
+        return this.time;
+    }
+}
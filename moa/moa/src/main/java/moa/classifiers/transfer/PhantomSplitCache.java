@@ -0,0 +1,150 @@
+package moa.classifiers.transfer;
+
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of phantom split results.
+ *
+ * A phantom split only depends on the instances that reach the phantom node, not on the branch it was reached
+ * by, so entries are keyed by the sorted rows of the node, where rows index a store shared by every phantom tree
+ * that uses the cache. Phantom trees measured over subsets of the same store (e.g. the error and apropos regions
+ * of the observation store) can then rebuild the children of a node from the cached class distributions instead
+ * of re-training them instance by instance.
+ */
+public class PhantomSplitCache implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // rough per-object overhead used for the byte size estimate of an entry
+    private static final int OBJECT_OVERHEAD = 16;
+
+    private final long maxByteSize;
+    private long byteSize;
+    private long hitCount;
+    private long missCount;
+
+    private final LinkedHashMap<RowsKey, Entry> entries;
+
+    public PhantomSplitCache(long maxByteSize) {
+        this.maxByteSize = maxByteSize;
+        this.byteSize = 0;
+        this.hitCount = 0;
+        this.missCount = 0;
+        // access order makes the iteration order least recently used first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        public final InstanceConditionalTest[] splitTests;
+        public final double[][] childClassDistributions;
+        public final int[][] childRows;
+        public final double[] childFoilInfoGains;
+
+        public Entry(InstanceConditionalTest[] splitTests,
+                     double[][] childClassDistributions,
+                     int[][] childRows,
+                     double[] childFoilInfoGains) {
+            this.splitTests = splitTests;
+            this.childClassDistributions = childClassDistributions;
+            this.childRows = childRows;
+            this.childFoilInfoGains = childFoilInfoGains;
+        }
+
+        public int numChildren() {
+            return this.splitTests.length;
+        }
+
+        long calcByteSize(int[] rows) {
+            long size = OBJECT_OVERHEAD + 4L * rows.length;
+            for (int i = 0; i < numChildren(); i++) {
+                size += 3 * OBJECT_OVERHEAD
+                        + 4L * this.childRows[i].length
+                        + 8L * this.childClassDistributions[i].length;
+            }
+            return size;
+        }
+    }
+
+    private static final class RowsKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] rows;
+
+        private final int hashCode;
+
+        RowsKey(int[] rows) {
+            this.rows = rows;
+            this.hashCode = Arrays.hashCode(rows);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RowsKey && Arrays.equals(this.rows, ((RowsKey) obj).rows);
+        }
+    }
+
+    public synchronized Entry get(int[] rows) {
+        Entry entry = this.entries.get(new RowsKey(rows));
+        if (entry == null) {
+            this.missCount++;
+        } else {
+            this.hitCount++;
+        }
+        return entry;
+    }
+
+    public synchronized void put(int[] rows, Entry entry) {
+        if (this.maxByteSize <= 0) {
+            return;
+        }
+        long entryByteSize = entry.calcByteSize(rows);
+        if (entryByteSize > this.maxByteSize) {
+            return;
+        }
+
+        // row slices are never modified once a phantom node is split, so they are cached without copying
+        Entry previous = this.entries.put(new RowsKey(rows), entry);
+        if (previous != null) {
+            this.byteSize -= previous.calcByteSize(rows);
+        }
+        this.byteSize += entryByteSize;
+
+        Iterator<Map.Entry<RowsKey, Entry>> it = this.entries.entrySet().iterator();
+        while (this.byteSize > this.maxByteSize && it.hasNext()) {
+            Map.Entry<RowsKey, Entry> eldest = it.next();
+            this.byteSize -= eldest.getValue().calcByteSize(eldest.getKey().rows);
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getByteSize() {
+        return this.byteSize;
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+}
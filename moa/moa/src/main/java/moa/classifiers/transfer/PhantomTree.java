@@ -1,5 +1,6 @@
 package moa.classifiers.transfer;
 
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.capabilities.CapabilitiesHandler;
@@ -7,6 +8,7 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.SplitSuggestionRanker;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
@@ -14,10 +16,20 @@ import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.classifiers.trees.HoeffdingTree;
 import moa.core.AutoExpandVector;
+import moa.core.DoubleVector;
 import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Measurement;
+import moa.core.OffHeapInstanceStore;
+import moa.core.Statistics;
+import moa.core.StringUtils;
 import moa.core.Utils;
 
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class PhantomTree extends HoeffdingTree implements MultiClassClassifier, CapabilitiesHandler {
 
@@ -37,68 +49,305 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
             "Squashing the accuracy terms in the FOIL information formula",
             7, 0, Integer.MAX_VALUE);
 
-    ArrayDeque<Instance> instanceStore = new ArrayDeque<>();
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for growing phantom branches (-1 = as much as possible, 0 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
+    public IntOption splitCacheSizeOption = new IntOption("splitCacheSize", 'a',
+            "Maximum memory in bytes used for caching phantom split results (0 = no caching).",
+            16777216, 0, Integer.MAX_VALUE);
+
+    public FloatOption depthIntervalWidthOption = new FloatOption("depthIntervalWidth", 'w',
+            "Stop growing phantom branches once the confidence interval of the mean depth is narrower than this half width, numPhantomBranch then being the maximum (0 = always grow numPhantomBranch branches).",
+            0.0, 0.0, Double.MAX_VALUE);
+
+    public FloatOption depthConfidenceOption = new FloatOption("depthConfidence", 'v',
+            "Confidence level of the interval of the mean phantom branch depth.",
+            0.95, 0.5, 0.9999);
+
+    public IntOption minPhantomBranchOption = new IntOption("minPhantomBranch", 'f',
+            "The number of phantom branches to grow before the depth interval may stop the growth.",
+            3, 2, Integer.MAX_VALUE);
+
+    public FloatOption subsampleFractionOption = new FloatOption("subsampleFraction", 'h',
+            "Fraction of the instances a construction complexity is measured on.",
+            1.0, 0.0, 1.0);
+
+    public IntOption minSubsampleSizeOption = new IntOption("minSubsampleSize", 'u',
+            "The smallest number of instances a subsampled construction complexity is measured on.",
+            1000, 1, Integer.MAX_VALUE);
+
+    public IntOption maxSubsampleSizeOption = new IntOption("maxSubsampleSize", 'x',
+            "The largest number of instances a construction complexity is measured on.",
+            Integer.MAX_VALUE, 1, Integer.MAX_VALUE);
+
+    public IntOption growthPeriodOption = new IntOption("growthPeriod", 'y',
+            "The number of instances the phantom branches are regrown on after the first observation period (0 = grow phantom branches once).",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption slidingWindowOption = new FlagOption("slidingWindow", 'S',
+            "Maintain the phantom branches over a sliding window of the last obsPeriod instances instead of regrowing them.");
+
+    public IntOption offHeapStoreSizeOption = new IntOption("offHeapStoreSize", 'Z',
+            "Store the instances of the observation period off the heap, in up to this many MB of direct memory before spilling to a memory-mapped temporary file (-1 = on the heap).",
+            -1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
+    // number of best split suggestions phantom children are created for
+    protected static final int NUM_PHANTOM_SPLIT_CANDIDATES = 10;
+
+    List<Instance> instanceStore = new ArrayList<>();
+    // observation window the phantom branches are grown on, possibly shared with other phantom trees
+    ColumnarInstanceStore columnarStore;
+    // the rows of columnarStore this tree is grown on
+    int[] columnarStoreRows;
+    PhantomSplitCache splitCache;
     double avgPhantomBranchDepth;
     double minPhantomBranchDepth;
     double maxPhantomBranchDepth;
-
-    public class PhantomNode extends ActiveLearningNode {
+    // half width of the confidence interval of avgPhantomBranchDepth, -1 if fewer than two branches were grown
+    double phantomBranchDepthInterval;
+    int numGrownPhantomBranch;
+    List<String> phantomBranchPrefixes = new ArrayList<>();
+    long phantomGrowthTime;
+    int numPhantomGrowths;
+
+    private transient List<PhantomTreeListener> listeners;
+
+    // phantom structure kept for the sliding window: the root parent under each leaf of the tree, the roots the
+    // branches start from and the grown branches
+    List<PhantomNode> phantomRootParents;
+    Map<Node, PhantomNode> leafPhantomRootParents;
+    AutoExpandVector<PhantomNode> phantomRoots;
+    List<PhantomBranchGrower> phantomBranches;
+    // the grown branches through each phantom node, at the depth of the node in their path
+    Map<PhantomNode, List<PhantomBranchGrower>> nodePhantomBranches;
+    // decision node count of the tree when the phantom root parents were built
+    int phantomRootsDecisionNodeCount;
+    // row of the sliding window overwritten by the next instance
+    int oldestWindowRow;
+    long numRegrownPhantomBranches;
+
+    /**
+     * Phantom node holding counts only. The class distribution is counted from the rows when the node is
+     * created; the per attribute statistics are only collected once the node is chosen for expansion, as a
+     * [attribute][value][class] count tensor for the nominal attributes and a numeric observer for each numeric
+     * attribute.
+     */
+    public class PhantomNode extends Node {
 
         int depth;
         double foil_info_gain;
         // public boolean isPhantomLeaf;
         String branchPrefix = "";
+        // set once the phantom children have been created, so that concurrently grown
+        // branches sharing this node split it at most once
+        volatile boolean isPhantomSplit;
+        // set once the node has been cut off the phantom structure by a re-split of an ancestor
+        boolean isDetached;
+        // unweighted number of rows per class, the FOIL gain counts rows rather than weights
+        int[] classRowCounts;
+
+        // nominalCounts[attIndex][attValue][classValue], null for numeric attributes
+        double[][][] nominalCounts;
+        // numValuesSeen[attIndex][classValue] is 1 + the highest value seen with the class, as a nominal
+        // observer would have grown its per class vector
+        int[][] numValuesSeen;
+        // null for nominal attributes; the array itself is null until collected, and again once a row of the
+        // sliding window has changed
+        AttributeClassObserver[] numericObservers;
 
         public AutoExpandVector<InstanceConditionalTest> splitTests;
         public AutoExpandVector<PhantomNode> splitChildrenPairs;
-        public ArrayDeque<Instance> instanceStore;
-
-        public PhantomNode(int depth, String branchPrefix) {
+        // sorted rows of the node, null over a sliding window until listed again from rowMask, see getRows
+        public int[] rows;
+        int numRows;
+        // rows as a bitset, used when the store has a binary attribute encoding, and over a sliding window where
+        // it is updated in place of the rows
+        long[] rowMask;
+
+        public PhantomNode(int depth, String branchPrefix, int[] rows) {
             super(new double[0]);
             this.depth = depth;
             this.branchPrefix = branchPrefix;
             this.foil_info_gain = -1;
+            this.isPhantomSplit = false;
 
             this.splitTests = new AutoExpandVector<>();
             this.splitChildrenPairs = new AutoExpandVector<>();
-            this.instanceStore = new ArrayDeque<>();
-        }
-
-        private void passInstanceToChild(
-                Instance inst,
-                HoeffdingTree ht,
-                InstanceConditionalTest splitTest,
-                AutoExpandVector<PhantomNode> children) {
-            int childIndex = splitTest.branchForInstance(inst);
-            if (childIndex < 0) {
-                System.exit(1);
-            }
-            PhantomNode child = children.get(childIndex);
-            if (child == null) {
-                throw new NullPointerException("passInstanceTodChild child is null");
-            }
-            child.instanceStore.offer(inst);
-            child.learnFromInstance(inst, ht);
-        }
-
-        public AttributeSplitSuggestion[] getAllSplitSuggestions(SplitCriterion criterion) {
-            List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<>();
-            double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
-
-            for (int i = 0; i < this.attributeObservers.size(); i++) {
-                AttributeClassObserver obs = this.attributeObservers.get(i);
-                if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(
-                                                                    criterion,
-                                                                    preSplitDist,
-                                                                    i,
-                                                                    true);
-                    if (bestSuggestion != null) {
-                        bestSuggestions.add(bestSuggestion);
+            this.rows = rows;
+            this.numRows = rows.length;
+        }
+
+        /**
+         * The sorted rows of the node, listed from the row bitset if the rows have changed since last listed.
+         */
+        int[] getRows() {
+            if (this.rows == null) {
+                this.rows = BinaryAttributeBitsets.maskToRows(this.rowMask, this.numRows);
+            }
+            return this.rows;
+        }
+
+        private void countClasses() {
+            ColumnarInstanceStore store = PhantomTree.this.columnarStore;
+            this.observedClassDistribution = new DoubleVector();
+            int[] counts = new int[0];
+            for (int row : getRows()) {
+                int classValue = store.classValue(row);
+                this.observedClassDistribution.addToValue(classValue, store.weight(row));
+                if (classValue >= counts.length) {
+                    counts = Arrays.copyOf(counts, classValue + 1);
+                }
+                counts[classValue]++;
+            }
+            this.classRowCounts = counts;
+        }
+
+        /**
+         * Adds a row of the sliding window to the counts of the node, or removes it. The nominal counts are
+         * updated along; the numeric observers cannot be decremented, so they are dropped and collected again
+         * when needed.
+         */
+        private void updateRow(int row, boolean isAdded) {
+            ColumnarInstanceStore store = PhantomTree.this.columnarStore;
+            // the row bit is flipped rather than the sorted rows copied
+            if (this.rowMask == null) {
+                this.rowMask = new long[(store.numRows() + 63) >>> 6];
+                for (int r : this.rows) {
+                    this.rowMask[r >>> 6] |= 1L << r;
+                }
+            }
+            if (isAdded) {
+                this.rowMask[row >>> 6] |= 1L << row;
+                this.numRows++;
+            } else {
+                this.rowMask[row >>> 6] &= ~(1L << row);
+                this.numRows--;
+            }
+            this.rows = null;
+            int classValue = store.classValue(row);
+            double weight = isAdded ? store.weight(row) : -store.weight(row);
+            if (this.classRowCounts == null) {
+                countClasses();
+            } else {
+                this.observedClassDistribution.addToValue(classValue, weight);
+                if (classValue >= this.classRowCounts.length) {
+                    this.classRowCounts = Arrays.copyOf(this.classRowCounts, classValue + 1);
+                }
+                this.classRowCounts[classValue] += isAdded ? 1 : -1;
+            }
+
+            if (this.numericObservers != null) {
+                for (AttributeClassObserver observer : this.numericObservers) {
+                    if (observer != null) {
+                        this.numericObservers = null;
+                        break;
                     }
                 }
             }
-            return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
+            if (this.nominalCounts == null) {
+                return;
+            }
+            for (int att = 0; att < this.nominalCounts.length; att++) {
+                double[][] attCounts = this.nominalCounts[att];
+                if (attCounts == null) {
+                    continue;
+                }
+                if (classValue >= this.numValuesSeen[att].length) {
+                    // first row of the class in the node
+                    this.numValuesSeen[att] = Arrays.copyOf(this.numValuesSeen[att], classValue + 1);
+                    for (int attValue = 0; attValue < attCounts.length; attValue++) {
+                        attCounts[attValue] = Arrays.copyOf(attCounts[attValue], classValue + 1);
+                    }
+                }
+                double value = store.value(att, row);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                int attValue = (int) value;
+                attCounts[attValue][classValue] += weight;
+                // numValuesSeen is never lowered, values left without counts only add empty candidate splits
+                if (isAdded && attValue >= this.numValuesSeen[att][classValue]) {
+                    this.numValuesSeen[att][classValue] = attValue + 1;
+                }
+            }
+        }
+
+        private boolean hasSplitStatistics() {
+            return this.nominalCounts != null && this.numericObservers != null;
+        }
+
+        /**
+         * Collects the split statistics the node is missing: the nominal counts, the numeric observers, or both.
+         */
+        private void collectSplitStatistics(HoeffdingTree ht) {
+            ColumnarInstanceStore store = PhantomTree.this.columnarStore;
+            int[] rows = getRows();
+            int numAttributes = store.numAttributes();
+            int numClasses = this.observedClassDistribution.numValues();
+            boolean isNominalCollected = this.nominalCounts == null;
+            boolean isNumericCollected = this.numericObservers == null;
+            double[][][] counts = isNominalCollected ? new double[numAttributes][][] : this.nominalCounts;
+            int[][] seen = isNominalCollected ? new int[numAttributes][] : this.numValuesSeen;
+            AttributeClassObserver[] observers = new AttributeClassObserver[numAttributes];
+
+            // one column at a time, so the attribute values are read sequentially
+            for (int att = 0; att < numAttributes; att++) {
+                if (store.isNominal(att)) {
+                    if (!isNominalCollected) {
+                        continue;
+                    }
+                    double[][] attCounts = new double[store.numValues(att)][numClasses];
+                    int[] attSeen = new int[numClasses];
+                    for (int row : rows) {
+                        double value = store.value(att, row);
+                        if (Double.isNaN(value)) {
+                            continue;
+                        }
+                        int attValue = (int) value;
+                        int classValue = store.classValue(row);
+                        attCounts[attValue][classValue] += store.weight(row);
+                        if (attValue >= attSeen[classValue]) {
+                            attSeen[classValue] = attValue + 1;
+                        }
+                    }
+                    counts[att] = attCounts;
+                    seen[att] = attSeen;
+                } else if (isNumericCollected) {
+                    observers[att] = ht.newNumericClassObserver();
+                    for (int row : rows) {
+                        observers[att].observeAttributeClass(
+                                store.value(att, row), store.classValue(row), store.weight(row));
+                    }
+                }
+            }
+            this.numValuesSeen = seen;
+            this.nominalCounts = counts;
+            if (isNumericCollected) {
+                this.numericObservers = observers;
+            }
+        }
+
+        /**
+         * The k best binary split suggestions of the node, by ascending merit.
+         */
+        public AttributeSplitSuggestion[] getBestSplitSuggestions(final SplitCriterion criterion,
+                                                                  SplitSuggestionRanker ranker,
+                                                                  int k) {
+            if (this.numRows == 0) {
+                return new AttributeSplitSuggestion[0];
+            }
+            final double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
+            return ranker.getBestSplitSuggestions(this.nominalCounts.length, attIndex -> {
+                if (this.nominalCounts[attIndex] != null) {
+                    return getBestNominalBinarySplitSuggestion(criterion, preSplitDist, attIndex,
+                            this.nominalCounts[attIndex], this.numValuesSeen[attIndex]);
+                }
+                return this.numericObservers[attIndex].getBestEvaluatedSplitSuggestion(
+                        criterion, preSplitDist, attIndex, true);
+            }, null, k);
         }
 
         @Override
@@ -107,22 +356,76 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         }
     }
 
+    /**
+     * Best binary split on a nominal attribute from its [value][class] counts, evaluated exactly as
+     * NominalAttributeClassObserver evaluates its own counts.
+     */
+    static AttributeSplitSuggestion getBestNominalBinarySplitSuggestion(SplitCriterion criterion,
+                                                                       double[] preSplitDist,
+                                                                       int attIndex,
+                                                                       double[][] valueClassCounts,
+                                                                       int[] numValuesSeen) {
+        int maxAttValsObserved = 0;
+        for (int numValues : numValuesSeen) {
+            maxAttValsObserved = Math.max(maxAttValsObserved, numValues);
+        }
+
+        AttributeSplitSuggestion bestSuggestion = null;
+        for (int valIndex = 0; valIndex < maxAttValsObserved; valIndex++) {
+            DoubleVector equalsDist = new DoubleVector();
+            DoubleVector notEqualDist = new DoubleVector();
+            for (int classValue = 0; classValue < numValuesSeen.length; classValue++) {
+                for (int attValue = 0; attValue < numValuesSeen[classValue]; attValue++) {
+                    if (attValue == valIndex) {
+                        equalsDist.addToValue(classValue, valueClassCounts[attValue][classValue]);
+                    } else {
+                        notEqualDist.addToValue(classValue, valueClassCounts[attValue][classValue]);
+                    }
+                }
+            }
+            double[][] postSplitDists = new double[][]{equalsDist.getArrayRef(), notEqualDist.getArrayRef()};
+            double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
+                bestSuggestion = new AttributeSplitSuggestion(
+                        new NominalAttributeBinaryTest(attIndex, valIndex),
+                        postSplitDists, merit);
+            }
+        }
+        return bestSuggestion;
+    }
+
     private ArrayDeque<PhantomNode> growPhantomBranches() {
+        SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
+        if (this.splitCache == null) {
+            this.splitCache = new PhantomSplitCache(this.splitCacheSizeOption.getValue());
+        }
+
         // init candidate phantom branches
-        System.out.println("init candidate phantom branches");
-        addInstancesToLeaves(this.instanceStore);
-        ArrayDeque<PhantomNode> phantomRootParents = initPhantomRootParents();
+        if (this.columnarStore == null) {
+            this.columnarStore = new ColumnarInstanceStore(this.instanceStore);
+            this.columnarStoreRows = new int[this.instanceStore.size()];
+            for (int row = 0; row < this.columnarStoreRows.length; row++) {
+                this.columnarStoreRows[row] = row;
+            }
+        }
+        Map<Node, int[]> leafRows = addInstancesToLeaves(this.columnarStoreRows);
+        this.leafPhantomRootParents = new IdentityHashMap<>();
+        ArrayDeque<PhantomNode> phantomRootParents = initPhantomRootParents(leafRows);
         if (phantomRootParents.size() == 0) {
             throw new NullPointerException("No phantom root parent constructed.");
         }
+        this.phantomRootParents = new ArrayList<>(phantomRootParents);
+        this.phantomRootsDecisionNodeCount = this.decisionNodeCount;
 
-        System.out.println("first level phantom splits");
         // perform first level phantom splits to find phantom roots
         AutoExpandVector<PhantomNode> phantomRoots = new AutoExpandVector<>();
         for (PhantomNode parent : phantomRootParents) {
-            phantomSplit(parent);
+            ensurePhantomSplit(parent, splitCriterion);
             phantomRoots.addAll(parent.splitChildrenPairs);
         }
+        this.phantomRoots = phantomRoots;
+        this.phantomBranches = new ArrayList<>();
+        this.nodePhantomBranches = new IdentityHashMap<>();
 
         ArrayDeque<PhantomNode> phantomLeaves = new ArrayDeque<>();
 
@@ -131,28 +434,80 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
             this.avgPhantomBranchDepth = 1;
             this.minPhantomBranchDepth = 1;
             this.maxPhantomBranchDepth = 1;
+            this.phantomBranchDepthInterval = 0;
+            this.numGrownPhantomBranch = 0;
+            this.phantomBranchPrefixes = new ArrayList<>();
             return phantomLeaves;
         }
 
+        // every branch draws from its own random generator, seeded from classifierRandom in branch order,
+        // so the depths only depend on the random seed and not on the number of jobs. With a depth interval
+        // the branches are the first ones of the full set
+        int numPhantomBranch = this.numPhantomBranchOption.getValue();
+        List<PhantomBranchGrower> growers = new ArrayList<>(numPhantomBranch);
+        for (int i = 0; i < numPhantomBranch; i++) {
+            growers.add(new PhantomBranchGrower(phantomRoots, splitCriterion, new Random(this.classifierRandom.nextLong())));
+        }
+
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = Math.min(this.numberOfJobsOption.getValue(), numPhantomBranch);
+
+        boolean isStoppingEarly = this.depthIntervalWidthOption.getValue() > 0;
+        boolean isConcurrent = numberOfJobs != PhantomTree.SINGLE_THREAD && numberOfJobs != 1;
+        // with a depth interval the branches are grown in rounds of one branch per job
+        int roundSize = !isStoppingEarly ? numPhantomBranch : isConcurrent ? numberOfJobs : 1;
+        ForkJoinPool pool = isConcurrent ? new ForkJoinPool(numberOfJobs) : null;
+
         int min_depth = Integer.MAX_VALUE;
         int max_depth = 0;
         double sum_depth = 0.0;
-        for (int i = 0; i < numPhantomBranchOption.getValue(); i++) {
-            System.out.println("Start constructing branch " + i);
-            int nodeIdx = getWeightedRandomPhantomNodeIdx(phantomRoots);
-            if (nodeIdx == -1) {
-                throw new NullPointerException("getWeightedRandomPhantomNodeIdx returns -1");
-            }
-            PhantomNode phantomRoot = phantomRoots.get(nodeIdx);
-
-            StringBuilder branchStringBuilder = new StringBuilder(phantomRoot.branchPrefix);
-            PhantomNode phantomLeaf = growPhantomBranch(phantomRoot, branchStringBuilder);
-            phantomLeaves.offer(phantomLeaf);
-            min_depth = Math.min(min_depth, phantomLeaf.depth);
-            max_depth = Math.max(max_depth, phantomLeaf.depth);
-            sum_depth = sum_depth + phantomLeaf.depth;
+        double sum_squared_depth = 0.0;
+        List<String> branchPrefixes = new ArrayList<>();
+        try {
+            int i = 0;
+            while (i < numPhantomBranch) {
+                List<PhantomBranchGrower> round = growers.subList(i, Math.min(i + roundSize, numPhantomBranch));
+                if (pool != null) {
+                    for (Future<PhantomNode> future : pool.invokeAll(round)) {
+                        future.get();
+                    }
+                } else {
+                    for (PhantomBranchGrower grower : round) {
+                        grower.call();
+                    }
+                }
 
-            System.out.println("Phantom Branch " + i + ": " + branchStringBuilder);
+                // branches are counted in branch order, so where the growth stops does not depend on the
+                // number of jobs either; branches of the round past that point are dropped
+                for (PhantomBranchGrower grower : round) {
+                    PhantomNode phantomLeaf = grower.phantomLeaf;
+                    phantomLeaves.offer(phantomLeaf);
+                    min_depth = Math.min(min_depth, phantomLeaf.depth);
+                    max_depth = Math.max(max_depth, phantomLeaf.depth);
+                    sum_depth = sum_depth + phantomLeaf.depth;
+                    sum_squared_depth = sum_squared_depth + phantomLeaf.depth * phantomLeaf.depth;
+
+                    branchPrefixes.add(grower.branchStringBuilder.toString());
+                    this.phantomBranches.add(grower);
+                    indexPhantomBranch(grower, 0);
+                    i++;
+                    if (isStoppingEarly && i >= this.minPhantomBranchOption.getValue()
+                            && depthIntervalHalfWidth(i, sum_depth, sum_squared_depth)
+                               <= this.depthIntervalWidthOption.getValue()) {
+                        i = numPhantomBranch;
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not grow phantom branches concurrently.", e);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
 
         // System.out.println("min=" + min_depth + "|max=" + max_depth + "|avg=" + sum_depth / phantomLeaves.size());
@@ -160,14 +515,160 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         this.avgPhantomBranchDepth = sum_depth / phantomLeaves.size();
         this.minPhantomBranchDepth = min_depth;
         this.maxPhantomBranchDepth = max_depth;
+        this.phantomBranchDepthInterval = depthIntervalHalfWidth(phantomLeaves.size(), sum_depth, sum_squared_depth);
+        this.numGrownPhantomBranch = phantomLeaves.size();
+        this.phantomBranchPrefixes = branchPrefixes;
 
         return phantomLeaves;
     }
 
-    private PhantomNode growPhantomBranch(PhantomNode node, StringBuilder branchStringBuilder) {
+    /**
+     * Grows the phantom branches and notifies the listeners.
+     */
+    private ArrayDeque<PhantomNode> growPhantomBranchesAndNotify() {
+        long startTime = System.nanoTime();
+        ArrayDeque<PhantomNode> phantomLeaves = growPhantomBranches();
+        this.phantomGrowthTime = System.nanoTime() - startTime;
+        this.numPhantomGrowths++;
+        firePhantomBranchesGrown();
+        return phantomLeaves;
+    }
+
+    public synchronized void addPhantomTreeListener(PhantomTreeListener l) {
+        if (this.listeners == null) {
+            this.listeners = new ArrayList<>();
+        }
+        this.listeners.add(l);
+    }
+
+    public synchronized void removePhantomTreeListener(PhantomTreeListener l) {
+        if (this.listeners != null) {
+            this.listeners.remove(l);
+        }
+    }
+
+    protected void firePhantomBranchesGrown() {
+        List<PhantomTreeListener> targets;
+        synchronized (this) {
+            if (this.listeners == null || this.listeners.isEmpty()) {
+                return;
+            }
+            // listeners may add or remove listeners
+            targets = new ArrayList<>(this.listeners);
+        }
+        PhantomGrowthEvent event = new PhantomGrowthEvent(this, this.trainingWeightSeenByModel,
+                this.avgPhantomBranchDepth, this.minPhantomBranchDepth, this.maxPhantomBranchDepth,
+                this.phantomBranchDepthInterval, Collections.unmodifiableList(this.phantomBranchPrefixes),
+                this.phantomGrowthTime);
+        for (PhantomTreeListener l : targets) {
+            l.phantomBranchesGrown(event);
+        }
+    }
+
+    /**
+     * Half width of the normal confidence interval of the mean depth of n branches, -1 if n is below two.
+     */
+    private double depthIntervalHalfWidth(int n, double sumDepth, double sumSquaredDepth) {
+        if (n < 2) {
+            return -1;
+        }
+        double variance = Math.max(0, (sumSquaredDepth - sumDepth * sumDepth / n) / (n - 1));
+        double z = Statistics.normalInverse(1 - (1 - this.depthConfidenceOption.getValue()) / 2);
+        return z * Math.sqrt(variance / n);
+    }
+
+    /**
+     * Sorted random subset of the rows, of subsampleFraction of their number bounded by the subsample sizes.
+     */
+    private int[] subsampleRows(int[] rows) {
+        int size = (int) Math.round(this.subsampleFractionOption.getValue() * rows.length);
+        size = Math.max(size, this.minSubsampleSizeOption.getValue());
+        size = Math.min(size, this.maxSubsampleSizeOption.getValue());
+        if (size >= rows.length) {
+            return rows;
+        }
+        // partial Fisher-Yates shuffle
+        int[] shuffled = rows.clone();
+        for (int i = 0; i < size; i++) {
+            int j = i + this.classifierRandom.nextInt(shuffled.length - i);
+            int row = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = row;
+        }
+        int[] sample = Arrays.copyOf(shuffled, size);
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    protected class PhantomBranchGrower implements Callable<PhantomNode>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final private AutoExpandVector<PhantomNode> phantomRoots;
+        final private SplitCriterion splitCriterion;
+        final private Random branchRandom;
+        private StringBuilder branchStringBuilder;
+        private PhantomNode phantomLeaf;
+        // the nodes of the branch, from its phantom root to its phantom leaf
+        final List<PhantomNode> path = new ArrayList<>();
+
+        public PhantomBranchGrower(AutoExpandVector<PhantomNode> phantomRoots,
+                                   SplitCriterion splitCriterion,
+                                   Random branchRandom) {
+            this.phantomRoots = phantomRoots;
+            this.splitCriterion = splitCriterion;
+            this.branchRandom = branchRandom;
+        }
+
+        @Override
+        public PhantomNode call() {
+            int nodeIdx = getWeightedRandomPhantomNodeIdx(this.phantomRoots, this.branchRandom);
+            if (nodeIdx == -1) {
+                throw new NullPointerException("getWeightedRandomPhantomNodeIdx returns -1");
+            }
+            PhantomNode phantomRoot = this.phantomRoots.get(nodeIdx);
+
+            this.path.clear();
+            this.branchStringBuilder = new StringBuilder(phantomRoot.branchPrefix);
+            this.phantomLeaf = growPhantomBranch(phantomRoot, this.branchStringBuilder,
+                    this.splitCriterion, this.branchRandom, this.path);
+            return this.phantomLeaf;
+        }
+
+        /**
+         * The position of a node of the branch in its path, the path going down one depth at a time.
+         */
+        int pathIdx(PhantomNode node) {
+            return node.depth - this.path.get(0).depth;
+        }
+
+        /**
+         * Regrows the branch from the node at the given position of its path, keeping the nodes above it.
+         */
+        public PhantomNode regrowFrom(int pathIdx) {
+            PhantomNode node = this.path.get(pathIdx);
+            this.branchStringBuilder = new StringBuilder(this.path.get(0).branchPrefix);
+            for (int i = 0; i < pathIdx; i++) {
+                PhantomNode parent = this.path.get(i);
+                int childIdx = parent.splitChildrenPairs.indexOf(this.path.get(i + 1));
+                this.branchStringBuilder.append(parent.splitTests.get(childIdx).getAttributeIndex()).append(",");
+            }
+            this.path.subList(pathIdx, this.path.size()).clear();
+            this.phantomLeaf = growPhantomBranch(node, this.branchStringBuilder,
+                    this.splitCriterion, this.branchRandom, this.path);
+            return this.phantomLeaf;
+        }
+    }
+
+    private PhantomNode growPhantomBranch(PhantomNode node,
+                                          StringBuilder branchStringBuilder,
+                                          SplitCriterion splitCriterion,
+                                          Random branchRandom,
+                                          List<PhantomNode> path) {
         if  (node == null) {
             throw new NullPointerException("growPhantomBranch node is null");
         }
+        path.add(node);
 
         if (node.observedClassDistributionIsPure()) {
             return node;
@@ -175,11 +676,9 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
 
         // TODO cache leaf node info
         // split if phantom children do not exist
-        if (node.splitChildrenPairs.size() == 0) {
-            phantomSplit(node);
-        }
+        ensurePhantomSplit(node, splitCriterion);
 
-        int childIdx = getWeightedRandomPhantomNodeIdx(node.splitChildrenPairs);
+        int childIdx = getWeightedRandomPhantomNodeIdx(node.splitChildrenPairs, branchRandom);
         if (childIdx == -1) {
             // throw new NullPointerException("getWeightedRandomPhantomChildIdx returns -1");
             return node;
@@ -199,28 +698,114 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         }
         // System.out.println(condition.getAttributeIndex() + ":" + condition.getAttributeValue());
 
-        return growPhantomBranch(selectedPhantomChild, branchStringBuilder);
+        return growPhantomBranch(selectedPhantomChild, branchStringBuilder, splitCriterion, branchRandom, path);
     }
 
-    private void phantomSplit(PhantomNode node) {
-        SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
-        AttributeSplitSuggestion[] allSplitSuggestions = node.getAllSplitSuggestions(splitCriterion);
-        if (allSplitSuggestions.length == 0) {
+    private void ensurePhantomSplit(PhantomNode node, SplitCriterion splitCriterion) {
+        if (node.isPhantomSplit) {
             return;
         }
-        Arrays.sort(allSplitSuggestions);
-        allSplitSuggestions = Arrays.copyOfRange(
-                allSplitSuggestions,
-                allSplitSuggestions.length-11,
-                allSplitSuggestions.length-1);
+        synchronized (node) {
+            if (!node.isPhantomSplit) {
+                phantomSplit(node, splitCriterion);
+                node.isPhantomSplit = true;
+            }
+        }
+    }
 
-        for (AttributeSplitSuggestion splitDecision : allSplitSuggestions) {
-            if (splitDecision.splitTest == null) {
-                throw new NullPointerException("PhantomSplit splitTest is null.");
+    private void phantomSplit(PhantomNode node, SplitCriterion splitCriterion) {
+        PhantomSplitCache.Entry cachedSplit = this.splitCache.get(node.getRows());
+        if (cachedSplit != null) {
+            for (int i = 0; i < cachedSplit.numChildren(); i++) {
+                PhantomNode newChild = new PhantomNode(
+                        node.depth + 1, node.branchPrefix, cachedSplit.childRows[i]);
+                newChild.observedClassDistribution = new DoubleVector(cachedSplit.childClassDistributions[i]);
+                newChild.foil_info_gain = cachedSplit.childFoilInfoGains[i];
+
+                node.splitTests.add(cachedSplit.splitTests[i]);
+                node.splitChildrenPairs.add(newChild);
             }
+            return;
+        }
 
+        BinaryAttributeBitsets bitsets = this.columnarStore.getBinaryAttributeBitsets();
+        for (AttributeSplitSuggestion splitDecision : getPhantomSplitSuggestions(node, splitCriterion)) {
             InstanceConditionalTest curSplitTest = splitDecision.splitTest;
             AutoExpandVector<PhantomNode> newChildren = new AutoExpandVector<>();
+            if (bitsets != null) {
+                long[][] childRowMasks = bitsets.partition(
+                        node.rowMask, (NominalAttributeBinaryTest) curSplitTest);
+                for (int i = 0; i < splitDecision.numSplits(); i++) {
+                    PhantomNode newChild = new PhantomNode(
+                            node.depth + 1, node.branchPrefix, bitsets.maskToRows(childRowMasks[i]));
+                    newChild.rowMask = childRowMasks[i];
+                    newChild.observedClassDistribution = new DoubleVector(
+                            bitsets.classDistribution(childRowMasks[i]));
+
+                    newChildren.add(newChild);
+
+                    node.splitTests.add(curSplitTest);
+                    node.splitChildrenPairs.add(newChild);
+                }
+            } else {
+                int[][] rowPartitions = this.columnarStore.partition(
+                        curSplitTest, splitDecision.numSplits(), node.getRows());
+                for (int i = 0; i < splitDecision.numSplits(); i++) {
+                    PhantomNode newChild = new PhantomNode(
+                            node.depth + 1, node.branchPrefix, rowPartitions[i]);
+                    newChild.countClasses();
+
+                    newChildren.add(newChild);
+
+                    node.splitTests.add(curSplitTest);
+                    node.splitChildrenPairs.add(newChild);
+                }
+            }
+
+            // compute foil information gain for weighted selection
+            for (Node child : newChildren) {
+                PhantomNode phantomChild = (PhantomNode) child;
+                phantomChild.foil_info_gain = calcPhantomInfoGain(phantomChild);
+            }
+        }
+
+        cachePhantomSplit(node);
+    }
+
+    /**
+     * The candidate splits phantom children are created for: the top suggestions, except those leaving a branch
+     * with the class distribution of the node.
+     */
+    private List<AttributeSplitSuggestion> getPhantomSplitSuggestions(PhantomNode node,
+                                                                      SplitCriterion splitCriterion) {
+        BinaryAttributeBitsets bitsets = this.columnarStore.getBinaryAttributeBitsets();
+        AttributeSplitSuggestion[] bestSplitSuggestions;
+        if (bitsets != null) {
+            // all attributes are binary nominal: count the candidate splits straight from the bitsets
+            if (node.rowMask == null) {
+                node.rowMask = bitsets.rowsToMask(node.rows);
+            }
+            bestSplitSuggestions = bitsets.getBestSplitSuggestions(splitCriterion,
+                    node.getObservedClassDistribution(), node.rowMask,
+                    getSplitSuggestionRanker(), NUM_PHANTOM_SPLIT_CANDIDATES);
+        } else {
+            // the count tensor is only filled once the node is expanded
+            if (!node.hasSplitStatistics()) {
+                node.collectSplitStatistics(this);
+            }
+            bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion,
+                    getSplitSuggestionRanker(), NUM_PHANTOM_SPLIT_CANDIDATES);
+        }
+        if (bestSplitSuggestions.length == 0) {
+            return Collections.emptyList();
+        }
+
+        List<AttributeSplitSuggestion> splitSuggestions = new ArrayList<>();
+        for (AttributeSplitSuggestion splitDecision : bestSplitSuggestions) {
+            if (splitDecision.splitTest == null) {
+                throw new NullPointerException("PhantomSplit splitTest is null.");
+            }
+
             boolean isUsedAttribute = false;
             for (int i = 0; i < splitDecision.numSplits(); i++) {
                 double[] resultingClassDistribution = splitDecision.resultingClassDistributionFromSplit(i);
@@ -249,45 +834,258 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
             }
 
             if (!isUsedAttribute) {
-                for (int i = 0; i < splitDecision.numSplits(); i++) {
-                    PhantomNode newChild = new PhantomNode(
-                            node.depth + 1, node.branchPrefix);
+                splitSuggestions.add(splitDecision);
+            }
+        }
+        return splitSuggestions;
+    }
 
-                    newChildren.add(newChild);
+    /**
+     * Slides the window by one instance: the oldest instance leaves the counts of the phantom nodes it reaches,
+     * the new one takes its row and enters the counts of the nodes it reaches. Only the expanded nodes reached by
+     * either instance are checked; those where a branch took a split that is no longer a candidate are split
+     * again and the branches through them are regrown from there. Every branch is regrown if the tree itself has grown, as its leaves
+     * are the parents of the phantom roots.
+     */
+    private void slidePhantomWindow(Instance inst) {
+        int row = this.oldestWindowRow;
+        this.oldestWindowRow = (row + 1) % this.columnarStore.numRows();
+        if (this.decisionNodeCount != this.phantomRootsDecisionNodeCount || this.phantomBranches == null) {
+            this.columnarStore.setRow(row, inst);
+            growPhantomBranchesAndNotify();
+            return;
+        }
 
-                    node.splitTests.add(curSplitTest);
-                    node.splitChildrenPairs.add(newChild);
-                }
+        long startTime = System.nanoTime();
+        // ancestors are always reached before their descendants
+        Set<PhantomNode> reachedNodes = new LinkedHashSet<>();
+        updatePhantomPaths(row, false, reachedNodes);
+        this.columnarStore.setRow(row, inst);
+        updatePhantomPaths(row, true, reachedNodes);
 
-                // TODO only train the selected phantom children?
-                // for each splitTest, pass instances & train
-                for (Instance inst : node.instanceStore) {
-                    node.passInstanceToChild(inst, this, curSplitTest, newChildren);
+        SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
+        Set<PhantomNode> resplitNodes = new HashSet<>();
+        for (PhantomNode node : reachedNodes) {
+            if (node.isDetached || !isTakenPhantomSplitDropped(node, splitCriterion)) {
+                continue;
+            }
+            detachPhantomChildren(node);
+            node.splitTests = new AutoExpandVector<>();
+            node.splitChildrenPairs = new AutoExpandVector<>();
+            node.isPhantomSplit = false;
+            ensurePhantomSplit(node, splitCriterion);
+            resplitNodes.add(node);
+        }
+        if (resplitNodes.isEmpty()) {
+            return;
+        }
+
+        this.phantomRoots.clear();
+        for (PhantomNode parent : this.phantomRootParents) {
+            this.phantomRoots.addAll(parent.splitChildrenPairs);
+        }
+        if (this.phantomBranches.isEmpty()) {
+            // no branch to regrow, the phantom roots had no split
+            growPhantomBranchesAndNotify();
+            return;
+        }
+        // a re-split detaches the nodes below it, so a branch goes through at most one re-split node
+        Map<PhantomBranchGrower, Integer> regrowthPathIdx = new IdentityHashMap<>();
+        for (PhantomNode node : resplitNodes) {
+            List<PhantomBranchGrower> branches = this.nodePhantomBranches.get(node);
+            if (branches != null) {
+                for (PhantomBranchGrower branch : branches) {
+                    regrowthPathIdx.put(branch, branch.pathIdx(node));
                 }
+            }
+        }
+        for (PhantomBranchGrower branch : this.phantomBranches) {
+            if (branch.path.get(0).isDetached) {
+                unindexPhantomBranch(branch, 0);
+                branch.call();
+                indexPhantomBranch(branch, 0);
+                this.numRegrownPhantomBranches++;
+                continue;
+            }
+            Integer pathIdx = regrowthPathIdx.get(branch);
+            if (pathIdx != null) {
+                // the nodes down to the re-split node stay in the path
+                unindexPhantomBranch(branch, pathIdx + 1);
+                branch.regrowFrom(pathIdx);
+                indexPhantomBranch(branch, pathIdx + 1);
+                this.numRegrownPhantomBranches++;
+            }
+        }
+        updatePhantomBranchDepthStatistics();
+        this.phantomGrowthTime = System.nanoTime() - startTime;
+        firePhantomBranchesGrown();
+    }
 
-                // compute foil information gain for weighted selection
-                for (Node child : newChildren) {
-                    PhantomNode phantomChild = (PhantomNode) child;
-                    phantomChild.foil_info_gain = calcPhantomInfoGain(phantomChild);
+    private void updatePhantomPaths(int row, boolean isAdded, Set<PhantomNode> reachedNodes) {
+        Node leaf = filter(super.treeRoot, row);
+        PhantomNode rootParent = leaf == null ? null : this.leafPhantomRootParents.get(leaf);
+        if (rootParent != null) {
+            updatePhantomPath(rootParent, row, isAdded, reachedNodes);
+        }
+    }
+
+    private void updatePhantomPath(PhantomNode node, int row, boolean isAdded, Set<PhantomNode> reachedNodes) {
+        node.updateRow(row, isAdded);
+        if (!node.isPhantomSplit) {
+            return;
+        }
+        reachedNodes.add(node);
+        // the children of a candidate split follow each other, one per branch of its test
+        int branch = 0;
+        for (int i = 0; i < node.splitChildrenPairs.size(); i++) {
+            InstanceConditionalTest splitTest = node.splitTests.get(i);
+            branch = i > 0 && splitTest == node.splitTests.get(i - 1) ? branch + 1 : 0;
+            if (this.columnarStore.branchForRow(splitTest, row) == branch) {
+                PhantomNode child = node.splitChildrenPairs.get(i);
+                updatePhantomPath(child, row, isAdded, reachedNodes);
+                child.foil_info_gain = calcPhantomInfoGain(child);
+            }
+        }
+    }
+
+    /**
+     * Whether a branch through the node took a split that is no longer one of the candidate splits of the node.
+     * Numeric split points move with every instance, so a numeric candidate on the same attribute is the taken
+     * split as long as it partitions the rows of the node alike.
+     */
+    private boolean isTakenPhantomSplitDropped(PhantomNode node, SplitCriterion splitCriterion) {
+        List<PhantomBranchGrower> branches = this.nodePhantomBranches.get(node);
+        if (branches == null) {
+            return false;
+        }
+        List<InstanceConditionalTest> takenSplitTests = new ArrayList<>();
+        for (PhantomBranchGrower branch : branches) {
+            int pathIdx = branch.pathIdx(node);
+            if (pathIdx < branch.path.size() - 1) {
+                int childIdx = node.splitChildrenPairs.indexOf(branch.path.get(pathIdx + 1));
+                takenSplitTests.add(node.splitTests.get(childIdx));
+            }
+        }
+        if (takenSplitTests.isEmpty()) {
+            return false;
+        }
+
+        List<AttributeSplitSuggestion> splitSuggestions = getPhantomSplitSuggestions(node, splitCriterion);
+        for (InstanceConditionalTest splitTest : takenSplitTests) {
+            boolean isCandidate = false;
+            for (AttributeSplitSuggestion splitSuggestion : splitSuggestions) {
+                InstanceConditionalTest candidate = splitSuggestion.splitTest;
+                if (splitTest.getClass() != candidate.getClass()
+                        || splitTest.getAttributeIndex() != candidate.getAttributeIndex()) {
+                    continue;
+                }
+                if (splitTest instanceof NumericAttributeBinaryTest
+                        ? isSamePartition(splitTest, candidate, node.getRows())
+                        : splitTest.getAttributeValue() == candidate.getAttributeValue()) {
+                    isCandidate = true;
+                    break;
                 }
             }
+            if (!isCandidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSamePartition(InstanceConditionalTest splitTest, InstanceConditionalTest otherTest,
+                                    int[] rows) {
+        for (int row : rows) {
+            if (this.columnarStore.branchForRow(splitTest, row) != this.columnarStore.branchForRow(otherTest, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void indexPhantomBranch(PhantomBranchGrower branch, int fromPathIdx) {
+        for (int i = fromPathIdx; i < branch.path.size(); i++) {
+            PhantomNode node = branch.path.get(i);
+            List<PhantomBranchGrower> branches = this.nodePhantomBranches.get(node);
+            if (branches == null) {
+                branches = new ArrayList<>();
+                this.nodePhantomBranches.put(node, branches);
+            }
+            branches.add(branch);
+        }
+    }
+
+    private void unindexPhantomBranch(PhantomBranchGrower branch, int fromPathIdx) {
+        for (int i = fromPathIdx; i < branch.path.size(); i++) {
+            PhantomNode node = branch.path.get(i);
+            List<PhantomBranchGrower> branches = this.nodePhantomBranches.get(node);
+            branches.remove(branch);
+            if (branches.isEmpty()) {
+                this.nodePhantomBranches.remove(node);
+            }
+        }
+    }
+
+    private void detachPhantomChildren(PhantomNode node) {
+        for (PhantomNode child : node.splitChildrenPairs) {
+            child.isDetached = true;
+            detachPhantomChildren(child);
+        }
+    }
+
+    private void updatePhantomBranchDepthStatistics() {
+        double min_depth = Integer.MAX_VALUE;
+        double max_depth = 0;
+        double sum_depth = 0.0;
+        double sum_squared_depth = 0.0;
+        List<String> branchPrefixes = new ArrayList<>();
+        for (PhantomBranchGrower branch : this.phantomBranches) {
+            int depth = branch.phantomLeaf.depth;
+            min_depth = Math.min(min_depth, depth);
+            max_depth = Math.max(max_depth, depth);
+            sum_depth += depth;
+            sum_squared_depth += depth * depth;
+            branchPrefixes.add(branch.branchStringBuilder.toString());
         }
+        int numBranches = this.phantomBranches.size();
+        this.avgPhantomBranchDepth = sum_depth / numBranches;
+        this.minPhantomBranchDepth = min_depth;
+        this.maxPhantomBranchDepth = max_depth;
+        this.phantomBranchDepthInterval = depthIntervalHalfWidth(numBranches, sum_depth, sum_squared_depth);
+        this.phantomBranchPrefixes = branchPrefixes;
+    }
+
+    private void cachePhantomSplit(PhantomNode node) {
+        int numChildren = node.splitChildrenPairs.size();
+        InstanceConditionalTest[] splitTests = new InstanceConditionalTest[numChildren];
+        double[][] childClassDistributions = new double[numChildren][];
+        int[][] childRows = new int[numChildren][];
+        double[] childFoilInfoGains = new double[numChildren];
+        for (int i = 0; i < numChildren; i++) {
+            PhantomNode child = node.splitChildrenPairs.get(i);
+            splitTests[i] = node.splitTests.get(i);
+            childClassDistributions[i] = child.getObservedClassDistribution();
+            childRows[i] = child.getRows();
+            childFoilInfoGains[i] = child.foil_info_gain;
+        }
+        this.splitCache.put(node.getRows(), new PhantomSplitCache.Entry(
+                splitTests, childClassDistributions, childRows, childFoilInfoGains));
     }
 
     private double calcPhantomInfoGain(PhantomNode child) {
-        double total = child.instanceStore.size();
+        double total = child.numRows;
         if (total == 0) {
-            System.out.println("empty instanceStore");
             return -1;
         }
 
         double child_num_positive = 0;
-        for (Instance inst : child.instanceStore) {
-            int trueClass = (int) inst.classValue();
-            int childPrediction = Utils.maxIndex(child.getClassVotes(inst, this));
-            if (childPrediction == trueClass) {
-                child_num_positive++;
-            }
+        // phantom nodes predict the majority class, whatever the instance
+        int childPrediction = Utils.maxIndex(child.getObservedClassDistribution());
+        BinaryAttributeBitsets bitsets = this.columnarStore.getBinaryAttributeBitsets();
+        if (bitsets != null && child.rowMask != null) {
+            child_num_positive = bitsets.countClass(child.rowMask, childPrediction);
+        } else if (childPrediction < child.classRowCounts.length) {
+            child_num_positive = child.classRowCounts[childPrediction];
         }
 
         double phantom_factor = - Math.log(1 - child_num_positive / total) / Math.log(2);
@@ -297,7 +1095,7 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         return child_num_positive * phantom_factor;
     }
 
-    private int getWeightedRandomPhantomNodeIdx(AutoExpandVector<PhantomNode> phantomChildren) {
+    private int getWeightedRandomPhantomNodeIdx(AutoExpandVector<PhantomNode> phantomChildren, Random random) {
         double sum = 0;
         int invalid_child_count = 0;
         for (PhantomNode child : phantomChildren) {
@@ -312,7 +1110,7 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
             return -1;
         }
 
-        double rand = this.classifierRandom.nextDouble();
+        double rand = random.nextDouble();
         double partial_sum = 0;
         for (int i = 0; i < phantomChildren.size(); i++) {
             PhantomNode child = phantomChildren.get(i);
@@ -328,7 +1126,7 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         return -1;
     }
 
-    private ArrayDeque<PhantomNode> initPhantomRootParents() {
+    private ArrayDeque<PhantomNode> initPhantomRootParents(Map<Node, int[]> leafRows) {
         ArrayDeque<Node> nodes = new ArrayDeque<>();
         ArrayDeque<PhantomNode> phantomRoots = new ArrayDeque<>();
         ArrayDeque<Integer> depths = new ArrayDeque<>();
@@ -344,12 +1142,18 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
 
             if (curNode instanceof LearningNode) {
                 branchStringBuilder.append("#");
-                PhantomNode root = new PhantomNode(depth, branchStringBuilder.toString());
-                for (Instance inst : curNode.instanceStore) {
-                    root.learnFromInstance(inst, this);
-                    root.instanceStore.offer(inst);
+                int[] rows = leafRows.get(curNode);
+                PhantomNode root = new PhantomNode(depth, branchStringBuilder.toString(),
+                        rows == null ? new int[0] : rows);
+                BinaryAttributeBitsets bitsets = this.columnarStore.getBinaryAttributeBitsets();
+                if (bitsets != null) {
+                    root.rowMask = bitsets.rowsToMask(root.rows);
+                    root.observedClassDistribution = new DoubleVector(bitsets.classDistribution(root.rowMask));
+                } else {
+                    root.countClasses();
                 }
                 phantomRoots.offer(root);
+                this.leafPhantomRootParents.put(curNode, root);
 
             } else {
                 branchStringBuilder.append(",");
@@ -375,21 +1179,42 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         return phantomRoots;
     }
 
-    private void addInstancesToLeaves(ArrayDeque<Instance> instanceStore) {
-        for (Instance inst : instanceStore) {
-            filter(super.treeRoot, inst);
+    private Map<Node, int[]> addInstancesToLeaves(int[] rows) {
+        // first pass counts the rows per leaf, second pass fills the row slices
+        Node[] rowLeaves = new Node[rows.length];
+        Map<Node, int[]> leafRowCounts = new IdentityHashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            rowLeaves[i] = filter(super.treeRoot, rows[i]);
+            if (rowLeaves[i] == null) continue;
+            int[] count = leafRowCounts.get(rowLeaves[i]);
+            if (count == null) {
+                count = new int[1];
+                leafRowCounts.put(rowLeaves[i], count);
+            }
+            count[0]++;
+        }
+
+        Map<Node, int[]> leafRows = new IdentityHashMap<>();
+        for (Map.Entry<Node, int[]> entry : leafRowCounts.entrySet()) {
+            leafRows.put(entry.getKey(), new int[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
         }
+        for (int i = 0; i < rows.length; i++) {
+            if (rowLeaves[i] == null) continue;
+            int[] count = leafRowCounts.get(rowLeaves[i]);
+            leafRows.get(rowLeaves[i])[count[0]++] = rows[i];
+        }
+        return leafRows;
     }
 
-    private void filter(Node node, Instance inst) {
+    private Node filter(Node node, int row) {
         if (node instanceof LearningNode) {
-            node.instanceStore.offer(inst);
-            return;
+            return node;
         }
-        int childIndex = ((SplitNode) node).instanceChildIndex(inst);
-        if (childIndex < 0) return;
+        int childIndex = this.columnarStore.branchForRow(((SplitNode) node).getSplitTest(), row);
+        if (childIndex < 0) return null;
         Node child = ((SplitNode) node).getChild(childIndex);
-        filter(child, inst);
+        return filter(child, row);
     }
 
     public void printPhantomBranches(ArrayDeque<PhantomNode> phantomLeaves) {
@@ -455,25 +1280,51 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         super.resetLearningImpl();
         this.leafpredictionOption.setChosenLabel("MC");
         this.binarySplitsOption.setValue(true);
-        this.instanceStore = new ArrayDeque<>();
+        this.instanceStore = newInstanceStore();
+        this.columnarStore = null;
+        this.columnarStoreRows = null;
+        this.splitCache = null;
 
         this.avgPhantomBranchDepth = -1;
         this.minPhantomBranchDepth = -1;
         this.maxPhantomBranchDepth = -1;
+        this.phantomBranchDepthInterval = -1;
+        this.numGrownPhantomBranch = 0;
+        this.phantomBranchPrefixes = new ArrayList<>();
+        this.phantomGrowthTime = 0;
+        this.numPhantomGrowths = 0;
+        this.phantomRootParents = null;
+        this.leafPhantomRootParents = null;
+        this.phantomRoots = null;
+        this.phantomBranches = null;
+        this.nodePhantomBranches = null;
+        this.oldestWindowRow = 0;
+        this.numRegrownPhantomBranches = 0;
     }
 
     public double getConstructionComplexity(ArrayList<Instance> instances) {
-        for (Instance inst : instances) {
-            super.trainOnInstanceImpl(inst);
-            this.instanceStore.offer(inst);
+        int[] rows = new int[instances.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
         }
+        return getConstructionComplexity(new ColumnarInstanceStore(instances), rows,
+                new PhantomSplitCache(this.splitCacheSizeOption.getValue()));
+    }
 
-        System.out.println("MOA description:");
-        StringBuilder description = new StringBuilder();
-        this.treeRoot.describeSubtree(this, description, 4);
-        System.out.println(description.toString());
+    /**
+     * Measures the construction complexity over the given sorted rows of a store, or over a subsample of them.
+     * Phantom trees measured over rows of the same store can share their split results through the split cache.
+     */
+    public double getConstructionComplexity(ColumnarInstanceStore store, int[] rows, PhantomSplitCache splitCache) {
+        rows = subsampleRows(rows);
+        this.columnarStore = store;
+        this.columnarStoreRows = rows;
+        this.splitCache = splitCache;
+        for (int row : rows) {
+            super.trainOnInstanceImpl(store.instance(row));
+        }
 
-        ArrayDeque<PhantomNode> phantomLeaves = growPhantomBranches();
+        ArrayDeque<PhantomNode> phantomLeaves = growPhantomBranchesAndNotify();
         double depth_sum = 0.0;
         for (PhantomNode phantomLeaf : phantomLeaves) {
             depth_sum += phantomLeaf.depth;
@@ -486,40 +1337,86 @@ public class PhantomTree extends HoeffdingTree implements MultiClassClassifier,
         return depth_sum / phantomLeaves.size();
     }
 
+    /**
+     * Trains the tree and keeps the instances of the observation period. The phantom branches are grown on them
+     * once the period is over, then regrown on every growthPeriod instances if periodic; in between, the last
+     * growth is cached and the tree learns as a Hoeffding tree. With a sliding window, the observation period
+     * becomes the window and the phantom branches are maintained on every instance instead.
+     */
     @Override
     public void trainOnInstanceImpl(Instance inst) {
-        if (this.trainingWeightSeenByModel <= this.obsPeriodOption.getValue()) {
-            super.trainOnInstanceImpl(inst);
-            this.instanceStore.offer(inst);
-
-        } else if (this.trainingWeightSeenByModel > this.obsPeriodOption.getValue()
-                    || inst == null) {
-            System.out.println("train: MOA description:");
-            StringBuilder description = new StringBuilder();
-            this.treeRoot.describeSubtree(this, description, 4);
-            System.out.println(description.toString());
-
-            ArrayDeque<PhantomNode> phantomNodes = growPhantomBranches();
-            // printPhantomBranches(phantomNodes);
-
-            // printTree();
-        } else if (this.trainingWeightSeenByModel == 99999) {
-            instanceStore.offer(inst);
-            System.out.println("train: MOA description:");
-            StringBuilder description = new StringBuilder();
-            this.treeRoot.describeSubtree(this, description, 4);
-            System.out.println(description.toString());
-        } else {
-            super.trainOnInstanceImpl(inst);
+        int growthPeriod = this.growthPeriodOption.getValue();
+        boolean isSliding = this.slidingWindowOption.isSet();
+        boolean isGrowthDue = this.numPhantomGrowths == 0
+                ? this.trainingWeightSeenByModel > this.obsPeriodOption.getValue()
+                : !isSliding && growthPeriod > 0 && this.instanceStore.size() >= growthPeriod;
+        if (isGrowthDue && !this.instanceStore.isEmpty()) {
+            if (isSliding) {
+                // rows are overwritten as the window slides, so split results are not cached
+                this.columnarStore = new ColumnarInstanceStore(this.instanceStore, true);
+                this.columnarStoreRows = new int[this.instanceStore.size()];
+                for (int row = 0; row < this.columnarStoreRows.length; row++) {
+                    this.columnarStoreRows[row] = row;
+                }
+                this.splitCache = new PhantomSplitCache(0);
+                growPhantomBranchesAndNotify();
+            } else {
+                growPhantomBranchesAndNotify();
+                // the instances are only kept until the branches have been grown on them
+                if (this.instanceStore instanceof OffHeapInstanceStore) {
+                    ((OffHeapInstanceStore) this.instanceStore).close();
+                }
+                this.instanceStore = newInstanceStore();
+                this.columnarStore = null;
+                this.columnarStoreRows = null;
+                this.splitCache = null;
+            }
+        }
+
+        super.trainOnInstanceImpl(inst);
+        if (isSliding && this.numPhantomGrowths > 0) {
+            slidePhantomWindow(inst);
+        } else if (this.numPhantomGrowths == 0 || growthPeriod > 0) {
+            this.instanceStore.add(inst);
         }
     }
 
-    // public void getModelDescription(StringBuilder out, int indent) {
-    // }
+    /**
+     * A store for the instances of an observation period, off the heap if a size is set.
+     */
+    protected List<Instance> newInstanceStore() {
+        int offHeapStoreSize = this.offHeapStoreSizeOption.getValue();
+        return offHeapStoreSize < 0
+                ? new ArrayList<Instance>()
+                : new OffHeapInstanceStore(offHeapStoreSize * (1L << 20));
+    }
+
+    @Override
+    public void getModelDescription(StringBuilder out, int indent) {
+        super.getModelDescription(out, indent);
+        for (int i = 0; i < this.phantomBranchPrefixes.size(); i++) {
+            StringUtils.appendIndented(out, indent, "Phantom branch " + i + ": " + this.phantomBranchPrefixes.get(i));
+            StringUtils.appendNewline(out);
+        }
+    }
 
-    // protected moa.core.Measurement[] getModelMeasurementsImpl() {
-    //     return null;
-    // }
+    @Override
+    protected Measurement[] getModelMeasurementsImpl() {
+        Measurement[] treeMeasurements = super.getModelMeasurementsImpl();
+        Measurement[] phantomMeasurements = new Measurement[]{
+                new Measurement("phantom growths", this.numPhantomGrowths),
+                new Measurement("phantom branches", this.numGrownPhantomBranch),
+                new Measurement("phantom branch depth avg", this.avgPhantomBranchDepth),
+                new Measurement("phantom branch depth min", this.minPhantomBranchDepth),
+                new Measurement("phantom branch depth max", this.maxPhantomBranchDepth),
+                new Measurement("phantom branch depth interval", this.phantomBranchDepthInterval),
+                new Measurement("phantom growth time (ms)", this.phantomGrowthTime / 1e6),
+                new Measurement("regrown phantom branches", this.numRegrownPhantomBranches)};
+        Measurement[] measurements = Arrays.copyOf(treeMeasurements,
+                treeMeasurements.length + phantomMeasurements.length);
+        System.arraycopy(phantomMeasurements, 0, measurements, treeMeasurements.length, phantomMeasurements.length);
+        return measurements;
+    }
 
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
@@ -0,0 +1,12 @@
+package moa.classifiers.transfer;
+
+import java.util.EventListener;
+
+/**
+ * Notified every time a PhantomTree has grown its phantom branches.
+ */
+public interface PhantomTreeListener extends EventListener {
+
+    void phantomBranchesGrown(PhantomGrowthEvent e);
+
+}
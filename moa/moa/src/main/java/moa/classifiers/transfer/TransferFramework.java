@@ -3,6 +3,7 @@ package moa.classifiers.transfer;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
 import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
@@ -13,15 +14,37 @@ import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
 import moa.classifiers.core.driftdetection.ChangeDetector;
-import moa.core.AutoExpandVector;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.core.BitSlidingWindow;
+import moa.core.DoubleSlidingWindow;
 import moa.core.Measurement;
+import moa.core.OffHeapInstanceStore;
 import moa.core.Utils;
 import moa.options.ClassOption;
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.AugmentedInstance;
+import com.yahoo.labs.samoa.instances.AugmentedInstancesHeader;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
 
+import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class TransferFramework extends AbstractClassifier implements MultiClassClassifier, CapabilitiesHandler {
     @Override
@@ -62,18 +85,82 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
 
     public FlagOption disablePatchingOption = new FlagOption("disablePatching", 'x', "Force disable patching");
 
-    protected AutoExpandVector<Classifier> classifierRepo;
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for measuring the region complexities (-1 = as much as possible, 0 = do not use multithreading)",
+            3, -1, Integer.MAX_VALUE);
+
+    public FlagOption asyncComplexityOption = new FlagOption("asyncComplexity", 'y',
+            "Keep training and predicting with the transferred classifier while the region complexities are measured");
+
+    public FlagOption backgroundReplayOption = new FlagOption("backgroundReplay", 'r',
+            "Replay the observation window into the transfer classifiers in the background, one thread per classifier, while the current classifier keeps predicting");
+
+    public FlagOption parallelComponentTrainingOption = new FlagOption("parallelComponentTraining", 'p',
+            "Train the patch and new classifiers on their own threads while the transferred classifier is trained");
+
+    public IntOption componentBatchSizeOption = new IntOption("componentBatchSize", 'u',
+            "The number of instances the patch and new classifiers are trained on at once with parallel component training. They are always brought up to date before predicting.",
+            1, 1, Integer.MAX_VALUE);
+
+    public StringOption repositoryDirectoryOption = new StringOption("repositoryDirectory", 'g',
+            "Directory the models stored at drifts are kept in, so that later runs can transfer them to other streams. Empty to keep them in memory.",
+            "");
+
+    public IntOption repositorySizeOption = new IntOption("repositorySize", 'G',
+            "The maximum number of models kept in the repository, the oldest ones being dropped first (-1 = no maximum).",
+            100, -1, Integer.MAX_VALUE);
+
+    public IntOption fingerprintWindowSizeOption = new IntOption("fingerprintWindowSize", 'w',
+            "The number of most recent instances the fingerprints of the stored and the observed concepts are computed on.",
+            1000, 1, Integer.MAX_VALUE);
+
+    public IntOption offHeapStoreSizeOption = new IntOption("offHeapStoreSize", 'z',
+            "Store the instances of the observation period off the heap, in up to this many MB of direct memory before spilling to a memory-mapped temporary file (-1 = on the heap).",
+            -1, -1, Integer.MAX_VALUE);
+
+    protected static final int SINGLE_THREAD = 0;
+
+    // idle time after which the threads of parallel component training end
+    protected static final long COMPONENT_THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    // models stored at drifts, the source of a transfer is the one with the nearest fingerprint
+    protected ModelRepository classifierRepo;
+    // the most recent instances, the fingerprint of the current model is computed on them at a drift
+    protected ArrayDeque<Instance> recentInstances;
+    // repository index of the model transferred last, -1 before the first drift
+    protected int sourceModelIndex;
     protected Classifier classifier;
     protected ChangeDetector driftDetectionMethod;
-    protected ArrayList<Instance> obsInstanceStore;
+    protected List<Instance> obsInstanceStore;
     protected ArrayList<Integer> obsPredictionResults;
-    protected ArrayList<Instance> errorRegionInstanceStore;
-    protected ArrayList<Instance> aproposRegionInstanceStore;
+    // the error and apropos regions are the rows of the observation store the source model misclassifies and
+    // classifies correctly, by obsPredictionResults; only their sizes are kept
+    protected int errorRegionSize;
+    protected int aproposRegionSize;
     protected TrueError trueError;
 
     protected Classifier errorRegionClassifier;
     protected Classifier patchClassifier;
     protected Classifier newClassifier;
+    // the error region classifier sees the class value as first attribute and whether the transferred
+    // classifier was wrong as class
+    protected AugmentedInstancesHeader errorRegionHeader;
+    // reused for every prediction of the error region classifier
+    protected AugmentedInstance errorRegionInstance;
+
+    protected ComponentLearner transferredLearner;
+    protected ComponentLearner patchLearner;
+    protected ComponentLearner newLearner;
+    protected ComponentLearner errorRegionLearner;
+    // replay of the observation window still running in the background, only set in background replay mode
+    protected transient ObservationReplay backgroundReplay;
+    // threads the patch and new classifiers are trained on with parallel component training
+    protected transient ExecutorService patchExecutor;
+    protected transient ExecutorService newExecutor;
+    // instances the patch and new classifiers have not been trained on yet, with the errors of the transferred
+    // classifier
+    protected ArrayList<Instance> pendingComponentInstances;
+    protected ArrayList<Integer> pendingComponentErrorCounts;
 
     int patchCount;
     int classifierCount;
@@ -81,20 +168,24 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
     int maxErrRegionStoreSize;
     int maxAprRegionStoreSize;
     double switchToNewClassifierPos;
+    long splitCacheHitCount;
 
     protected Classifier emptyClassifier;
 
     InstanceStoreComplexity obsInstanceStoreComplexity;
     InstanceStoreComplexity errorInstanceStoreComplexity;
     InstanceStoreComplexity aproposInstanceStoreComplexity;
+    // region complexities still being measured in the background, only set in asynchronous mode
+    protected transient RegionComplexityMeasurement pendingComplexityMeasurement;
+    // in asynchronous mode, the classifier at the end of the observation, which the transfer starts from while
+    // the current classifier keeps learning, and the instances arriving until the complexities are measured
+    protected Classifier observedClassifier;
+    protected ArrayList<Instance> pendingTransferInstances;
 
     // track performances for both the patch learner and the transferred model
-    protected ArrayDeque<Integer> patchErrorWindow;
-    protected ArrayDeque<Integer> transErrorWindow;
-    protected ArrayDeque<Integer> newErrorWindow;
-    protected double patchErrorWindowSum;
-    protected double transErrorWindowSum;
-    protected double newErrorWindowSum;
+    protected BitSlidingWindow patchErrorWindow;
+    protected BitSlidingWindow transErrorWindow;
+    protected BitSlidingWindow newErrorWindow;
 
     public boolean isRandomizable() { return true; }
 
@@ -103,6 +194,9 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         if (this.patchClassifier == null) {
             return this.classifier.getVotesForInstance(inst);
         }
+        if (!this.pendingComponentInstances.isEmpty()) {
+            trainPendingComponents();
+        }
 
         // new classifier
         if (switchToNewClassifier()) {
@@ -110,10 +204,9 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         }
 
         // patch on/off with transferred model
-        Instance newInstance = inst.copy();
-        newInstance.insertAttributeAt(0);
-        newInstance.setValue(0, inst.classValue());
-        if (Utils.maxIndex(this.errorRegionClassifier.getVotesForInstance(newInstance)) == 1) {
+        this.errorRegionInstance.setInstance(inst);
+        this.errorRegionInstance.setValue(0, inst.classValue());
+        if (Utils.maxIndex(this.errorRegionClassifier.getVotesForInstance(this.errorRegionInstance)) == 1) {
             // in error region, check patch performance
             if (turnOnPatchPrediction()) {
                 this.patchCount++;
@@ -126,12 +219,7 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
     }
 
     private boolean switchToNewClassifier() {
-        if (this.newErrorWindow.size() < this.perfWindowSizeOption.getValue()) {
-            return false;
-        }
-
-        if (this.newErrorWindowSum < this.patchErrorWindowSum
-                && this.newErrorWindowSum < this.transErrorWindowSum) {
+        if (isNewClassifierBetter()) {
             this.switchToNewClassifierPos = this.trainingWeightSeenByModel();
             return true;
         }
@@ -139,12 +227,21 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         return false;
     }
 
+    private boolean isNewClassifierBetter() {
+        if (this.newErrorWindow.size() < this.perfWindowSizeOption.getValue()) {
+            return false;
+        }
+
+        return this.newErrorWindow.sum() < this.patchErrorWindow.sum()
+                && this.newErrorWindow.sum() < this.transErrorWindow.sum();
+    }
+
     private boolean turnOnPatchPrediction() {
         if (this.patchErrorWindow.size() < this.perfWindowSizeOption.getValue()) {
             return true;
         }
 
-        if (this.patchErrorWindowSum < this.transErrorWindowSum) {
+        if (this.patchErrorWindow.sum() < this.transErrorWindow.sum()) {
             return true;
         }
 
@@ -158,16 +255,31 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
             this.emptyClassifier = this.classifier.copy();
         }
         this.classifier.resetLearning();
-        this.classifierRepo = new AutoExpandVector<>();
+        String repositoryDirectory = this.repositoryDirectoryOption.getValue();
+        int repositorySize = this.repositorySizeOption.getValue();
+        this.classifierRepo = repositoryDirectory.isEmpty()
+                ? new ModelRepository(repositorySize) : new ModelRepository(new File(repositoryDirectory), repositorySize);
+        this.recentInstances = new ArrayDeque<>();
+        this.sourceModelIndex = -1;
         this.driftDetectionMethod = ((ChangeDetector) getPreparedClassOption(this.driftDetectionMethodOption)).copy();
         this.obsInstanceStore = null;
         this.obsPredictionResults = null;
-        this.errorRegionInstanceStore = null;
-        this.aproposRegionInstanceStore = null;
+        this.errorRegionSize = 0;
+        this.aproposRegionSize = 0;
         this.trueError = null;
 
         this.errorRegionClassifier = null;
+        this.errorRegionHeader = null;
+        this.errorRegionInstance = null;
         this.patchClassifier = null;
+        this.transferredLearner = null;
+        this.patchLearner = null;
+        this.newLearner = null;
+        this.errorRegionLearner = null;
+        this.backgroundReplay = null;
+        shutdownComponentExecutors();
+        this.pendingComponentInstances = new ArrayList<>();
+        this.pendingComponentErrorCounts = new ArrayList<>();
 
         this.patchCount = 0;
         this.classifierCount = 0;
@@ -175,18 +287,20 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         this.maxErrRegionStoreSize = 0;
         this.maxAprRegionStoreSize = 0;
         this.switchToNewClassifierPos = 0;
+        this.splitCacheHitCount = 0;
 
         this.obsInstanceStoreComplexity = new InstanceStoreComplexity();
         this.errorInstanceStoreComplexity = new InstanceStoreComplexity();
         this.aproposInstanceStoreComplexity = new InstanceStoreComplexity();
+        this.pendingComplexityMeasurement = null;
+        this.observedClassifier = null;
+        this.pendingTransferInstances = new ArrayList<>();
 
         // patch related
-        this.patchErrorWindow = new ArrayDeque<>();
-        this.transErrorWindow = new ArrayDeque<>();
-        this.newErrorWindow = new ArrayDeque<>();
-        this.patchErrorWindowSum = 0;
-        this.transErrorWindowSum = 0;
-        this.newErrorWindowSum = 0;
+        // each window holds the last perfWindowSize + 1 errors
+        this.patchErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
+        this.transErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
+        this.newErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
 
     }
 
@@ -198,45 +312,33 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
 
         int errorCount = this.classifier.correctlyClassifies(inst) ? 0 : 1;
         handleDrift(errorCount);
+        if (this.recentInstances.size() == this.fingerprintWindowSizeOption.getValue()) {
+            this.recentInstances.removeFirst();
+        }
+        this.recentInstances.addLast(inst);
 
         if (this.patchClassifier != null) {
-            // train transferred model
-            this.classifier.trainOnInstance(inst);
-            // update transferred model performance
-            if (this.transErrorWindow.size() > this.perfWindowSizeOption.getValue()){
-                this.transErrorWindowSum -= this.transErrorWindow.pollFirst();
+            learnComponents(inst, errorCount);
+
+        } else if (this.backgroundReplay != null) {
+            // the current classifier keeps predicting until the replayed classifiers have caught up
+            this.backgroundReplay.arrive(inst);
+            if (this.backgroundReplay.isDone()) {
+                this.backgroundReplay.finish();
+                this.backgroundReplay = null;
+                publishComponents();
             }
-            this.transErrorWindow.offerLast(errorCount);
-            this.transErrorWindowSum += errorCount;
 
-            // train patch
-            int patchErrorCount = errorCount;
-            if (errorCount == 1) {
-                // keep track of patch to either turn on/off patch prediction
-                if (!this.patchClassifier.correctlyClassifies(inst)) {
-                    patchErrorCount = 1;
-                }
-
-                this.patchClassifier.trainOnInstance(inst);
-            }
-
-            // update patch performance
-            if (this.patchErrorWindow.size() > this.perfWindowSizeOption.getValue()){
-                this.patchErrorWindowSum -= this.patchErrorWindow.pollFirst();
-            }
-            this.patchErrorWindow.offerLast(patchErrorCount);
-            this.patchErrorWindowSum += patchErrorCount;
-
-
-            // train new classifier
-            int newErrorCount = this.newClassifier.correctlyClassifies(inst) ? 0 : 1;
-            this.newClassifier.trainOnInstance(inst);
-            // update new classifier performance
-            if (this.newErrorWindow.size() > this.perfWindowSizeOption.getValue()){
-                this.newErrorWindowSum -= this.newErrorWindow.pollFirst();
+        } else if (this.pendingComplexityMeasurement != null) {
+            // the stream keeps flowing on the transferred classifier until the region complexities are measured,
+            // the components of the transfer learn from the instances once they have been replayed into
+            this.classifier.trainOnInstance(inst);
+            this.pendingTransferInstances.add(inst);
+            if (this.pendingComplexityMeasurement.isDone()) {
+                this.pendingComplexityMeasurement.collect();
+                this.pendingComplexityMeasurement = null;
+                endObservation(true);
             }
-            this.newErrorWindow.offerLast(newErrorCount);
-            this.newErrorWindowSum += newErrorCount;
 
         } else if (this.obsInstanceStore == null) {
             // either from source or a new model in target
@@ -248,11 +350,11 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
 
             this.obsPredictionResults.add(errorCount);
             if (errorCount == 1) {
-                this.errorRegionInstanceStore.add(inst);
-                this.maxErrRegionStoreSize = Math.max(this.maxErrRegionStoreSize, this.errorRegionInstanceStore.size());
+                this.errorRegionSize++;
+                this.maxErrRegionStoreSize = Math.max(this.maxErrRegionStoreSize, this.errorRegionSize);
             } else {
-                this.aproposRegionInstanceStore.add(inst);
-                this.maxAprRegionStoreSize = Math.max(this.maxAprRegionStoreSize, this.aproposRegionInstanceStore.size());
+                this.aproposRegionSize++;
+                this.maxAprRegionStoreSize = Math.max(this.maxAprRegionStoreSize, this.aproposRegionSize);
             }
 
             if (!this.trueError.isStable(errorCount)) {
@@ -271,46 +373,200 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
 
             } else {
                 enableTransfer = true;
-                measureComplexities();
+                if (this.classifierRepo.size() > 1) {
+                    selectSourceModel();
+                }
+                RegionComplexityMeasurement complexityMeasurement = measureComplexities();
+                if (this.asyncComplexityOption.isSet()) {
+                    this.pendingComplexityMeasurement = complexityMeasurement;
+                    this.observedClassifier = fork(this.classifier);
+                    return;
+                }
+                complexityMeasurement.collect();
             }
 
-            if (enableTransfer) {
-                this.errorRegionClassifier = this.emptyClassifier.copy();
-                this.patchClassifier = this.emptyClassifier.copy();
-                this.newClassifier = this.emptyClassifier.copy();
-
-                for (int idx = 0; idx < this.obsInstanceStore.size(); idx++) {
-                    Instance obsInstance = this.obsInstanceStore.get(idx);
-                    this.newClassifier.trainOnInstance(obsInstance);
-
-                    Instance newInstance = obsInstance.copy();
-                    newInstance.insertAttributeAt(0);
-                    newInstance.setValue(0, obsInstance.classValue());
-
-                    this.classifier.trainOnInstance(obsInstance);
-                    if (this.obsPredictionResults.get(idx) == 1) {
-                        this.patchClassifier.trainOnInstance(obsInstance);
-                        newInstance.setClassValue(1);
-                    } else  {
-                        newInstance.setClassValue(0);
-                    }
+            endObservation(enableTransfer);
+        }
+    }
 
-                    this.errorRegionClassifier.trainOnInstance(newInstance);
+    private void endObservation(boolean enableTransfer) {
+        if (enableTransfer) {
+            this.errorRegionHeader = newErrorRegionHeader(this.obsInstanceStore.get(0).dataset());
+            this.errorRegionInstance = new AugmentedInstance(this.errorRegionHeader);
+            Classifier errorRegionClassifier = this.emptyClassifier.copy();
+            errorRegionClassifier.setModelContext(this.errorRegionHeader);
+
+            // in background mode the current classifier keeps predicting, so its copy is replayed into
+            boolean isBackground = this.backgroundReplayOption.isSet();
+            Classifier transferredClassifier = this.observedClassifier != null ? this.observedClassifier
+                    : isBackground ? fork(this.classifier) : this.classifier;
+            this.transferredLearner = new TransferredLearner(transferredClassifier, this.transErrorWindow);
+            this.patchLearner = new PatchLearner(this.emptyClassifier.copy(), this.patchErrorWindow);
+            this.newLearner = new NewLearner(this.emptyClassifier.copy(), this.newErrorWindow);
+            this.errorRegionLearner = new ErrorRegionLearner(errorRegionClassifier);
+
+            ObservationReplay replay = new ObservationReplay(this.transferredLearner, Arrays.asList(
+                    this.newLearner, this.transferredLearner, this.patchLearner, this.errorRegionLearner));
+            if (isBackground) {
+                replay.start();
+                for (Instance pendingInstance : this.pendingTransferInstances) {
+                    replay.arrive(pendingInstance);
                 }
+                this.backgroundReplay = replay;
             } else {
-                this.classifier = this.emptyClassifier.copy();
-                for (int idx = 0; idx < this.obsInstanceStore.size(); idx++) {
-                    Instance obsInstance = this.obsInstanceStore.get(idx);
-                    this.classifier.trainOnInstance(obsInstance);
+                replay.run();
+                publishComponents();
+                // the errors are those of the transferred classifier as it catches up, as they would have been
+                // had the complexities been measured in place
+                for (Instance pendingInstance : this.pendingTransferInstances) {
+                    learnComponents(pendingInstance, this.classifier.correctlyClassifies(pendingInstance) ? 0 : 1);
                 }
             }
+            this.observedClassifier = null;
+            this.pendingTransferInstances.clear();
+        } else {
+            this.classifier = this.emptyClassifier.copy();
+            for (int idx = 0; idx < this.obsInstanceStore.size(); idx++) {
+                Instance obsInstance = this.obsInstanceStore.get(idx);
+                this.classifier.trainOnInstance(obsInstance);
+            }
+        }
+
+        // in background mode the replay still reads the observation store, and closes it once it is done
+        if (this.backgroundReplay == null) {
+            closeInstanceStore(this.obsInstanceStore);
+        }
+        this.obsInstanceStore = null;
+        this.errorRegionSize = 0;
+        this.aproposRegionSize = 0;
+    }
+
+    /**
+     * A store for the instances of an observation period, off the heap if a size is set.
+     */
+    protected List<Instance> newInstanceStore() {
+        int offHeapStoreSize = this.offHeapStoreSizeOption.getValue();
+        return offHeapStoreSize < 0
+                ? new ArrayList<Instance>()
+                : new OffHeapInstanceStore(offHeapStoreSize * (1L << 20));
+    }
 
-            this.obsInstanceStore = null;
-            this.errorRegionInstanceStore = null;
-            this.aproposRegionInstanceStore = null;
+    /**
+     * Frees the buffers and deletes the temporary file of an off-heap store. The views of its instances that
+     * classifiers keep remain readable.
+     */
+    protected static void closeInstanceStore(List<Instance> instanceStore) {
+        if (instanceStore instanceof OffHeapInstanceStore) {
+            ((OffHeapInstanceStore) instanceStore).close();
         }
     }
 
+    /**
+     * Trains the components of the transfer on an instance of the stream.
+     *
+     * @param errorCount 1 if the transferred classifier was wrong on inst
+     */
+    private void learnComponents(Instance inst, int errorCount) {
+        if (this.parallelComponentTrainingOption.isSet()) {
+            this.pendingComponentInstances.add(inst);
+            this.pendingComponentErrorCounts.add(errorCount);
+            if (this.pendingComponentInstances.size() >= this.componentBatchSizeOption.getValue()) {
+                trainPendingComponents(inst, errorCount);
+            } else {
+                // the next error count depends on the transferred classifier, it is never batched
+                this.transferredLearner.learn(inst, errorCount);
+            }
+        } else {
+            this.transferredLearner.learn(inst, errorCount);
+            this.patchLearner.learn(inst, errorCount);
+            this.newLearner.learn(inst, errorCount);
+        }
+    }
+
+    private void trainPendingComponents() {
+        trainPendingComponents(null, 0);
+    }
+
+    /**
+     * Trains the patch and new classifiers on the pending instances, each on its own thread, while the
+     * transferred classifier learns from the given instance on the training thread. Every classifier sees the
+     * instances in stream order, so the models and error windows are the same as with sequential training.
+     *
+     * @param inst instance for the transferred classifier, or null
+     * @param errorCount 1 if the transferred classifier was wrong on inst
+     */
+    private void trainPendingComponents(Instance inst, int errorCount) {
+        if (this.patchExecutor == null) {
+            this.patchExecutor = newComponentExecutor();
+            this.newExecutor = newComponentExecutor();
+        }
+        Future<?> patchTraining = this.patchExecutor.submit(() -> learnPendingInstances(this.patchLearner));
+        Future<?> newTraining = this.newExecutor.submit(() -> learnPendingInstances(this.newLearner));
+        if (inst != null) {
+            this.transferredLearner.learn(inst, errorCount);
+        }
+        try {
+            patchTraining.get();
+            newTraining.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not train the patch and new classifiers.", e);
+        }
+        this.pendingComponentInstances.clear();
+        this.pendingComponentErrorCounts.clear();
+    }
+
+    private void learnPendingInstances(ComponentLearner component) {
+        for (int idx = 0; idx < this.pendingComponentInstances.size(); idx++) {
+            component.learn(this.pendingComponentInstances.get(idx), this.pendingComponentErrorCounts.get(idx));
+        }
+    }
+
+    private static ExecutorService newComponentExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                COMPONENT_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable);
+                    // does not keep the JVM alive once the stream has been processed
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // the thread also ends if the stream stops in the middle of a transfer
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private void shutdownComponentExecutors() {
+        if (this.patchExecutor != null) {
+            this.patchExecutor.shutdown();
+            this.patchExecutor = null;
+        }
+        if (this.newExecutor != null) {
+            this.newExecutor.shutdown();
+            this.newExecutor = null;
+        }
+    }
+
+    private void publishComponents() {
+        this.classifier = this.transferredLearner.learner;
+        this.newClassifier = this.newLearner.learner;
+        this.errorRegionClassifier = this.errorRegionLearner.learner;
+        // set last, getVotesForInstance only uses the components once the patch is set
+        this.patchClassifier = this.patchLearner.learner;
+    }
+
+    private AugmentedInstancesHeader newErrorRegionHeader(Instances dataset) {
+        InstancesHeader header = dataset instanceof InstancesHeader
+                ? (InstancesHeader) dataset
+                : new InstancesHeader(dataset);
+        Attribute baseClassAttribute = new Attribute("baseClass",
+                header.classAttribute().getAttributeValues());
+        Attribute errorRegionAttribute = new Attribute("errorRegion", Arrays.asList("0", "1"));
+        return new AugmentedInstancesHeader(header,
+                Collections.singletonList(baseClassAttribute),
+                Collections.<Attribute>emptyList(),
+                errorRegionAttribute);
+    }
+
     private void handleDrift(int errorCount) {
         if (this.driftLocationOption.getValue() == -1) {
             this.driftDetectionMethod.input(errorCount);
@@ -324,33 +580,458 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
             }
         }
 
-        this.classifierRepo.add(this.classifier);
-        this.obsInstanceStore = new ArrayList<>();
+        if (this.obsInstanceStore != null || this.pendingComplexityMeasurement != null
+                || this.backgroundReplay != null) {
+            // a transfer is under way, its observation is not restarted
+            return;
+        }
+
+        if (this.patchClassifier != null) {
+            // the transfer of the previous drift ends, the model that predicts best goes on alone
+            if (!this.pendingComponentInstances.isEmpty()) {
+                trainPendingComponents();
+            }
+            Classifier model = isNewClassifierBetter() ? this.newClassifier : this.classifier;
+            endTransfer();
+            this.classifier = model;
+        }
+        InstancesHeader header = this.recentInstances.isEmpty()
+                ? getModelContext() : new InstancesHeader(this.recentInstances.getLast().dataset());
+        this.classifierRepo.add(this.classifier, header, fingerprint(new ArrayList<>(this.recentInstances)));
+        // the current model stays in place during the observation, unless a nearer source model is found
+        this.sourceModelIndex = this.classifierRepo.size() - 1;
+        this.obsInstanceStore = newInstanceStore();
         this.obsPredictionResults = new ArrayList<>();
-        this.errorRegionInstanceStore = new ArrayList<>();
-        this.aproposRegionInstanceStore = new ArrayList<>();
+        this.errorRegionSize = 0;
+        this.aproposRegionSize = 0;
 
         this.trueError = new TrueError(
                 this.obsWindowSizeOption.getValue(),
                 this.convDeltaOption.getValue(),
                 this.convThresholdOption.getValue(),
                 this.classifierRandom);
+    }
 
-        if (this.classifierRepo.size() == 1) {
-            // hack; classifier is the transferred model
+    /**
+     * Copy of a classifier that is only read from now on. Hoeffding trees are forked instead of copied, the fork
+     * then only copies the nodes it trains.
+     */
+    private static Classifier fork(Classifier classifier) {
+        if (classifier instanceof HoeffdingTree) {
+            return ((HoeffdingTree) classifier).snapshot();
+        }
+        return classifier.copy();
+    }
 
-        } else {
-            // TODO
-            throw new NullPointerException("Not supporting cross stream transfer yet.");
+    private void endTransfer() {
+        this.patchClassifier = null;
+        this.newClassifier = null;
+        this.errorRegionClassifier = null;
+        this.errorRegionHeader = null;
+        this.errorRegionInstance = null;
+        this.transferredLearner = null;
+        this.patchLearner = null;
+        this.newLearner = null;
+        this.errorRegionLearner = null;
+        // the next transfer trains its components on threads of its own
+        shutdownComponentExecutors();
+        this.patchErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
+        this.transErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
+        this.newErrorWindow = new BitSlidingWindow(this.perfWindowSizeOption.getValue() + 1);
+    }
+
+    private ModelFingerprint fingerprint(List<Instance> instances) {
+        int windowSize = this.fingerprintWindowSizeOption.getValue();
+        List<Instance> window = instances.subList(Math.max(0, instances.size() - windowSize), instances.size());
+        return ModelFingerprint.of(window, (PhantomTree) getPreparedClassOption(this.phantomTreeOption));
+    }
+
+    /**
+     * Transfers the stored model whose fingerprint is nearest to the fingerprint of the observation window, among
+     * those trained on streams with the attributes of this one. The error and apropos regions are then those of
+     * that model.
+     */
+    private void selectSourceModel() {
+        int nearest = this.classifierRepo.nearest(fingerprint(this.obsInstanceStore),
+                new InstancesHeader(this.obsInstanceStore.get(0).dataset()));
+        if (nearest == -1 || nearest == this.sourceModelIndex) {
+            // the model in place during the observation, its errors are already known
+            return;
+        }
+        this.sourceModelIndex = nearest;
+        this.classifier = this.classifierRepo.get(nearest);
+
+        this.obsPredictionResults = new ArrayList<>();
+        this.errorRegionSize = 0;
+        this.aproposRegionSize = 0;
+        for (Instance obsInstance : this.obsInstanceStore) {
+            int errorCount = this.classifier.correctlyClassifies(obsInstance) ? 0 : 1;
+            this.obsPredictionResults.add(errorCount);
+            if (errorCount == 1) {
+                this.errorRegionSize++;
+            } else {
+                this.aproposRegionSize++;
+            }
         }
-        // }
+        this.maxErrRegionStoreSize = Math.max(this.maxErrRegionStoreSize, this.errorRegionSize);
+        this.maxAprRegionStoreSize = Math.max(this.maxAprRegionStoreSize, this.aproposRegionSize);
     }
 
-    private void measureComplexities() {
+    private RegionComplexityMeasurement measureComplexities() {
         PhantomTree emptyPhantomTree = (PhantomTree) getPreparedClassOption(this.phantomTreeOption);
-        this.obsInstanceStoreComplexity.measure(this.obsInstanceStore, (PhantomTree) emptyPhantomTree.copy());
-        this.errorInstanceStoreComplexity.measure(this.errorRegionInstanceStore, (PhantomTree) emptyPhantomTree.copy());
-        this.aproposInstanceStoreComplexity.measure(this.aproposRegionInstanceStore, (PhantomTree) emptyPhantomTree.copy());
+
+        // both regions are subsets of the observation store, so all three phantom trees are grown on rows of
+        // one columnar view of the observation store and share one split cache. The view reads an off-heap
+        // store in place
+        ColumnarInstanceStore obsStore = new ColumnarInstanceStore(this.obsInstanceStore);
+        int[] obsRows = new int[this.obsInstanceStore.size()];
+        int[] errorRows = new int[this.errorRegionSize];
+        int[] aproposRows = new int[this.aproposRegionSize];
+        int errorIdx = 0;
+        int aproposIdx = 0;
+        for (int idx = 0; idx < this.obsInstanceStore.size(); idx++) {
+            obsRows[idx] = idx;
+            if (this.obsPredictionResults.get(idx) == 1) {
+                errorRows[errorIdx++] = idx;
+            } else {
+                aproposRows[aproposIdx++] = idx;
+            }
+        }
+        PhantomSplitCache splitCache = new PhantomSplitCache(emptyPhantomTree.splitCacheSizeOption.getValue());
+
+        List<Callable<InstanceStoreComplexity>> measurements = new ArrayList<>();
+        measurements.add(new InstanceStoreComplexityMeasurement(obsStore, obsRows,
+                (PhantomTree) emptyPhantomTree.copy(), splitCache));
+        measurements.add(new InstanceStoreComplexityMeasurement(obsStore, errorRows,
+                (PhantomTree) emptyPhantomTree.copy(), splitCache));
+        measurements.add(new InstanceStoreComplexityMeasurement(obsStore, aproposRows,
+                (PhantomTree) emptyPhantomTree.copy(), splitCache));
+
+        int numberOfJobs;
+        if (this.numberOfJobsOption.getValue() == -1)
+            numberOfJobs = Runtime.getRuntime().availableProcessors();
+        else
+            numberOfJobs = Math.min(this.numberOfJobsOption.getValue(), measurements.size());
+
+        List<Future<InstanceStoreComplexity>> futures = new ArrayList<>();
+        if ((numberOfJobs == TransferFramework.SINGLE_THREAD || numberOfJobs == 1)
+                && !this.asyncComplexityOption.isSet()) {
+            // SINGLE_THREAD and requesting for only 1 thread are equivalent, measured in place
+            for (Callable<InstanceStoreComplexity> measurement : measurements) {
+                FutureTask<InstanceStoreComplexity> future = new FutureTask<>(measurement);
+                future.run();
+                futures.add(future);
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(numberOfJobs, 1));
+            for (Callable<InstanceStoreComplexity> measurement : measurements) {
+                futures.add(executor.submit(measurement));
+            }
+            // submitted measurements still run after shutdown, the threads end once they are done
+            executor.shutdown();
+        }
+        return new RegionComplexityMeasurement(futures, splitCache);
+    }
+
+    /**
+     * A classifier of the transfer with the window of its recent errors. The observation window is replayed into
+     * it once the stream has converged, then it learns from every instance of the stream.
+     */
+    abstract class ComponentLearner implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        Classifier learner;
+        BitSlidingWindow errorWindow;
+
+        public ComponentLearner(Classifier learner, BitSlidingWindow errorWindow) {
+            this.learner = learner;
+            this.errorWindow = errorWindow;
+        }
+
+        /**
+         * @param obsPredictionResult 1 if the classifier in place during the observation period was wrong
+         */
+        abstract void replay(Instance obsInstance, int obsPredictionResult);
+
+        /**
+         * @param errorCount 1 if the transferred classifier was wrong
+         */
+        abstract void learn(Instance inst, int errorCount);
+    }
+
+    class TransferredLearner extends ComponentLearner {
+
+        private static final long serialVersionUID = 1L;
+
+        public TransferredLearner(Classifier learner, BitSlidingWindow errorWindow) {
+            super(learner, errorWindow);
+        }
+
+        void replay(Instance obsInstance, int obsPredictionResult) {
+            this.learner.trainOnInstance(obsInstance);
+        }
+
+        void learn(Instance inst, int errorCount) {
+            // train transferred model
+            this.learner.trainOnInstance(inst);
+            // update transferred model performance
+            this.errorWindow.add(errorCount);
+        }
+    }
+
+    class PatchLearner extends ComponentLearner {
+
+        private static final long serialVersionUID = 1L;
+
+        public PatchLearner(Classifier learner, BitSlidingWindow errorWindow) {
+            super(learner, errorWindow);
+        }
+
+        void replay(Instance obsInstance, int obsPredictionResult) {
+            if (obsPredictionResult == 1) {
+                this.learner.trainOnInstance(obsInstance);
+            }
+        }
+
+        void learn(Instance inst, int errorCount) {
+            // train patch
+            int patchErrorCount = errorCount;
+            if (errorCount == 1) {
+                // keep track of patch to either turn on/off patch prediction
+                if (!this.learner.correctlyClassifies(inst)) {
+                    patchErrorCount = 1;
+                }
+
+                this.learner.trainOnInstance(inst);
+            }
+
+            // update patch performance
+            this.errorWindow.add(patchErrorCount);
+        }
+    }
+
+    class NewLearner extends ComponentLearner {
+
+        private static final long serialVersionUID = 1L;
+
+        public NewLearner(Classifier learner, BitSlidingWindow errorWindow) {
+            super(learner, errorWindow);
+        }
+
+        void replay(Instance obsInstance, int obsPredictionResult) {
+            this.learner.trainOnInstance(obsInstance);
+        }
+
+        void learn(Instance inst, int errorCount) {
+            // train new classifier
+            int newErrorCount = this.learner.correctlyClassifies(inst) ? 0 : 1;
+            this.learner.trainOnInstance(inst);
+            // update new classifier performance
+            this.errorWindow.add(newErrorCount);
+        }
+    }
+
+    class ErrorRegionLearner extends ComponentLearner {
+
+        private static final long serialVersionUID = 1L;
+
+        public ErrorRegionLearner(Classifier learner) {
+            super(learner, null);
+        }
+
+        void replay(Instance obsInstance, int obsPredictionResult) {
+            // one view per instance, as the error region classifier may keep what it is trained on
+            Instance newInstance = new AugmentedInstance(errorRegionHeader, obsInstance);
+            newInstance.setValue(0, obsInstance.classValue());
+            newInstance.setClassValue(obsPredictionResult);
+            this.learner.trainOnInstance(newInstance);
+        }
+
+        void learn(Instance inst, int errorCount) {
+            // only learns from the observation window
+        }
+    }
+
+    /**
+     * Replays the observation window into the components of the transfer. In background mode every component
+     * is replayed on its own thread; the instances arriving meanwhile are buffered and each component catches
+     * up on them, so the components are up to date with the stream when they are published. The errors the
+     * components catch up with are those of the transferred classifier, each taken just before it learns the
+     * instance as in sequential mode, so the other components only catch up as far as the transferred one.
+     */
+    class ObservationReplay {
+        List<Instance> obsInstances;
+        List<Integer> obsPredictionResults;
+        ComponentLearner transferredLearner;
+        List<ComponentLearner> components;
+        // instances that arrived during a background replay
+        List<Instance> arrivedInstances;
+        // errors of the transferred classifier on the arrived instances it has learnt from
+        List<Integer> transferredErrorCounts;
+        // per component, the number of arrived instances it has learnt from
+        int[] numCaughtUp;
+        List<Future<?>> futures;
+
+        public ObservationReplay(ComponentLearner transferredLearner, List<ComponentLearner> components) {
+            this.obsInstances = TransferFramework.this.obsInstanceStore;
+            this.obsPredictionResults = TransferFramework.this.obsPredictionResults;
+            this.transferredLearner = transferredLearner;
+            this.components = components;
+            this.arrivedInstances = new ArrayList<>();
+            this.transferredErrorCounts = new ArrayList<>();
+            this.numCaughtUp = new int[components.size()];
+            this.futures = new ArrayList<>();
+        }
+
+        public void run() {
+            for (int i = 0; i < this.components.size(); i++) {
+                replay(i);
+            }
+        }
+
+        public void start() {
+            ExecutorService executor = Executors.newFixedThreadPool(this.components.size());
+            for (int i = 0; i < this.components.size(); i++) {
+                final int componentIdx = i;
+                this.futures.add(executor.submit(() -> replay(componentIdx)));
+            }
+            // submitted replays still run after shutdown, the threads end once they are done
+            executor.shutdown();
+        }
+
+        private void replay(int componentIdx) {
+            ComponentLearner component = this.components.get(componentIdx);
+            for (int idx = 0; idx < this.obsInstances.size(); idx++) {
+                component.replay(this.obsInstances.get(idx), this.obsPredictionResults.get(idx));
+            }
+            // bounded, a component slower than the stream would never catch up; finish() learns the rest
+            catchUp(componentIdx, this.obsInstances.size());
+        }
+
+        private void catchUp(int componentIdx, int maxInstances) {
+            ComponentLearner component = this.components.get(componentIdx);
+            boolean isTransferred = component == this.transferredLearner;
+            for (int i = 0; i < maxInstances; i++) {
+                int idx = this.numCaughtUp[componentIdx];
+                Instance inst;
+                int errorCount = 0;
+                synchronized (this) {
+                    if (idx == (isTransferred ? this.arrivedInstances.size() : this.transferredErrorCounts.size())) {
+                        return;
+                    }
+                    inst = this.arrivedInstances.get(idx);
+                    if (!isTransferred) {
+                        errorCount = this.transferredErrorCounts.get(idx);
+                    }
+                }
+                if (isTransferred) {
+                    errorCount = component.learner.correctlyClassifies(inst) ? 0 : 1;
+                }
+                component.learn(inst, errorCount);
+                if (isTransferred) {
+                    synchronized (this) {
+                        this.transferredErrorCounts.add(errorCount);
+                    }
+                }
+                this.numCaughtUp[componentIdx]++;
+            }
+        }
+
+        public synchronized void arrive(Instance inst) {
+            this.arrivedInstances.add(inst);
+        }
+
+        public boolean isDone() {
+            for (Future<?> future : this.futures) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Waits for the replays, then has every component learn from the arrived instances it has not caught up
+         * on, and closes the observation store.
+         */
+        public void finish() {
+            try {
+                for (Future<?> future : this.futures) {
+                    future.get();
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Could not replay the observation window.", e);
+            }
+            // the other components catch up with the errors of the transferred classifier
+            catchUp(this.components.indexOf(this.transferredLearner), Integer.MAX_VALUE);
+            for (int i = 0; i < this.components.size(); i++) {
+                catchUp(i, Integer.MAX_VALUE);
+            }
+            closeInstanceStore(this.obsInstances);
+        }
+    }
+
+    /**
+     * Complexities of the full, error and apropos regions, in this order, as measured by the submitted phantom
+     * trees.
+     */
+    class RegionComplexityMeasurement {
+        List<Future<InstanceStoreComplexity>> futures;
+        PhantomSplitCache splitCache;
+
+        public RegionComplexityMeasurement(List<Future<InstanceStoreComplexity>> futures,
+                                           PhantomSplitCache splitCache) {
+            this.futures = futures;
+            this.splitCache = splitCache;
+        }
+
+        public boolean isDone() {
+            for (Future<InstanceStoreComplexity> future : this.futures) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Waits for the measurements and publishes them.
+         */
+        public void collect() {
+            try {
+                obsInstanceStoreComplexity = this.futures.get(0).get();
+                errorInstanceStoreComplexity = this.futures.get(1).get();
+                aproposInstanceStoreComplexity = this.futures.get(2).get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Could not measure the region complexities.", e);
+            }
+            splitCacheHitCount = this.splitCache.getHitCount();
+        }
+    }
+
+    class InstanceStoreComplexityMeasurement implements Callable<InstanceStoreComplexity> {
+        ColumnarInstanceStore instanceStore;
+        int[] rows;
+        PhantomTree phantomTree;
+        PhantomSplitCache splitCache;
+
+        public InstanceStoreComplexityMeasurement(ColumnarInstanceStore instanceStore,
+                                                  int[] rows,
+                                                  PhantomTree phantomTree,
+                                                  PhantomSplitCache splitCache) {
+            this.instanceStore = instanceStore;
+            this.rows = rows;
+            this.phantomTree = phantomTree;
+            this.splitCache = splitCache;
+        }
+
+        @Override
+        public InstanceStoreComplexity call() {
+            InstanceStoreComplexity complexity = new InstanceStoreComplexity();
+            complexity.measure(this.instanceStore, this.rows, this.phantomTree, this.splitCache);
+            return complexity;
+        }
     }
 
     class InstanceStoreComplexity {
@@ -358,22 +1039,32 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         double avgDepth;
         double minDepth;
         double maxDepth;
+        // half width of the confidence interval of avgDepth
+        double depthInterval;
+        int numBranches;
 
         public InstanceStoreComplexity() {
             this.time = -1;
             this.avgDepth = -1;
             this.minDepth = -1;
             this.maxDepth = -1;
+            this.depthInterval = -1;
+            this.numBranches = -1;
         }
 
-        public void measure(ArrayList<Instance> instanceStore, PhantomTree phantomTree) {
+        public void measure(ColumnarInstanceStore instanceStore,
+                            int[] rows,
+                            PhantomTree phantomTree,
+                            PhantomSplitCache splitCache) {
             long startTime = System.nanoTime();
-            phantomTree.getConstructionComplexity(instanceStore);
+            phantomTree.getConstructionComplexity(instanceStore, rows, splitCache);
             this.time = System.nanoTime() - startTime;
 
             this.avgDepth = phantomTree.avgPhantomBranchDepth;
             this.minDepth = phantomTree.minPhantomBranchDepth;
             this.maxDepth = phantomTree.maxPhantomBranchDepth;
+            this.depthInterval = phantomTree.phantomBranchDepthInterval;
+            this.numBranches = phantomTree.numGrownPhantomBranch;
         }
     }
 
@@ -384,9 +1075,8 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
         double errorCount;
         double delta;
         double convThreshold;
-        double windowSum;
         Random classifierRandom;
-        ArrayDeque<Double> window;
+        DoubleSlidingWindow window;
 
         public TrueError(
                 int windowSize,
@@ -400,30 +1090,19 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
             this.errorCount = 0;
             this.delta = delta;
             this.convThreshold = convThreshold;
-            this.windowSum = 0;
             this.classifierRandom = classifierRandom;
-            this.window = new ArrayDeque<>();
+            this.window = new DoubleSlidingWindow(Math.max(windowSize, 1));
         }
 
         private boolean isStable(int error) {
             double trueError = getTrueError(error);
             this.window.add(trueError);
-            this.windowSum += trueError;
 
             if (this.window.size() < this.windowSize) {
                 return false;
             }
 
-            if (this.window.size() > this.windowSize) {
-                double val = this.window.pop();
-                this.windowSum -= val;
-            }
-
-            double mean = this.windowSum / this.window.size();
-            double numerator = 0;
-            for (double err : window) {
-                numerator += Math.sqrt(Math.abs(err - mean));
-            }
+            double numerator = this.window.sumOfSqrtAbsDeviations();
 
             double convVal = Math.sqrt(numerator / (this.window.size() - 1));
            //  System.out.println(convVal);
@@ -467,6 +1146,8 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
     protected moa.core.Measurement[] getModelMeasurementsImpl() {
         return new Measurement[]{
                 new Measurement("instance store size", this.maxObsPeriodLen),
+                new Measurement("model repository size", this.classifierRepo == null ? 0 : this.classifierRepo.size()),
+                new Measurement("source model index", this.sourceModelIndex),
                 new Measurement("error region instance store size",
                         this.maxErrRegionStoreSize),
                 new Measurement("apropos region instance store size",
@@ -500,6 +1181,22 @@ public class TransferFramework extends AbstractClassifier implements MultiClassC
                 new Measurement("apropos region depth max",
                         this.aproposInstanceStoreComplexity.maxDepth),
 
+                new Measurement("full region depth interval",
+                        this.obsInstanceStoreComplexity.depthInterval),
+                new Measurement("error region depth interval",
+                        this.errorInstanceStoreComplexity.depthInterval),
+                new Measurement("apropos region depth interval",
+                        this.aproposInstanceStoreComplexity.depthInterval),
+
+                new Measurement("full region phantom branches",
+                        this.obsInstanceStoreComplexity.numBranches),
+                new Measurement("error region phantom branches",
+                        this.errorInstanceStoreComplexity.numBranches),
+                new Measurement("apropos region phantom branches",
+                        this.aproposInstanceStoreComplexity.numBranches),
+                new Measurement("phantom split cache hits",
+                        this.splitCacheHitCount),
+
                 new Measurement("patch count",
                         this.patchCount),
                 new Measurement("base classifier count",
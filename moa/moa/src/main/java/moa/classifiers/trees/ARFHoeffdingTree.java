@@ -101,6 +101,23 @@ public class ARFHoeffdingTree extends HoeffdingTree {
                 obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
             }
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != RandomLearningNode.class) {
+                return null;
+            }
+            RandomLearningNode copy = new RandomLearningNode(this.observedClassDistribution.getArrayRef(),
+                    this.numAttributes);
+            copyStatisticsTo(copy);
+            return copy;
+        }
+
+        @Override
+        protected void copyStatisticsTo(ActiveLearningNode copy) {
+            super.copyStatisticsTo(copy);
+            ((RandomLearningNode) copy).listAttributes = this.listAttributes == null ? null : this.listAttributes.clone();
+        }
     }
 
     public static class LearningNodeNB extends RandomLearningNode {
@@ -125,6 +142,16 @@ public class ARFHoeffdingTree extends HoeffdingTree {
         public void disableAttribute(int attIndex) {
             // should not disable poor atts - they are used in NB calc
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != LearningNodeNB.class) {
+                return null;
+            }
+            LearningNodeNB copy = new LearningNodeNB(this.observedClassDistribution.getArrayRef(), this.numAttributes);
+            copyStatisticsTo(copy);
+            return copy;
+        }
     }
 
     public static class LearningNodeNBAdaptive extends LearningNodeNB {
@@ -160,11 +187,39 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             return NaiveBayes.doNaiveBayesPrediction(inst,
                     this.observedClassDistribution, this.attributeObservers);
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != LearningNodeNBAdaptive.class) {
+                return null;
+            }
+            LearningNodeNBAdaptive copy = new LearningNodeNBAdaptive(this.observedClassDistribution.getArrayRef(),
+                    this.numAttributes);
+            copyStatisticsTo(copy);
+            return copy;
+        }
+
+        @Override
+        protected void copyStatisticsTo(ActiveLearningNode copy) {
+            super.copyStatisticsTo(copy);
+            ((LearningNodeNBAdaptive) copy).mcCorrectWeight = this.mcCorrectWeight;
+            ((LearningNodeNBAdaptive) copy).nbCorrectWeight = this.nbCorrectWeight;
+        }
     }
 
     public ARFHoeffdingTree() {
         this.removePoorAttsOption = null;
     }
+
+    @Override
+    protected boolean isCopyOnWriteSupported() {
+        return getClass() == ARFHoeffdingTree.class;
+    }
+
+    @Override
+    protected boolean isStructuralCopySupported() {
+        return getClass() == ARFHoeffdingTree.class;
+    }
     
     @Override
     protected LearningNode newLearningNode(double[] initialClassObservations) {
@@ -59,6 +59,7 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.SplitSuggestionRanker;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
@@ -147,6 +148,10 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
   public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
     "Disable pre-pruning.");
 
+  public IntOption splitEvaluationJobsOption = new IntOption("splitEvaluationJobs", 'J',
+    "Number of attribute chunks evaluated concurrently when attempting a split, for wide data (-1 = as much as possible, 0 or 1 = do not use multithreading)",
+    1, -1, Integer.MAX_VALUE);
+
   public MultiChoiceOption leafpredictionOption = new MultiChoiceOption(
     "leafprediction", 'l', "Leaf prediction to use.", new String[]{
     "MC", "NB", "NBAdaptive"}, new String[]{
@@ -162,6 +167,15 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
 
   protected Node treeRoot = null;
 
+  protected transient SplitSuggestionRanker splitSuggestionRanker;
+
+  public SplitSuggestionRanker getSplitSuggestionRanker() {
+    if (this.splitSuggestionRanker == null) {
+      this.splitSuggestionRanker = new SplitSuggestionRanker(this.splitEvaluationJobsOption.getValue());
+    }
+    return this.splitSuggestionRanker;
+  }
+
   protected int decisionNodeCount;
 
   protected int activeLeafNodeCount;
@@ -201,6 +215,7 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
   @Override
   public void resetLearningImpl() {
     this.treeRoot = null;
+    this.splitSuggestionRanker = null;
     this.decisionNodeCount = 0;
     this.activeLeafNodeCount = 0;
     this.inactiveLeafNodeCount = 0;
@@ -431,7 +446,6 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
 
       SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
       AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
-      Arrays.sort(bestSplitSuggestions);
       boolean shouldSplit = false;
 
       for (AttributeSplitSuggestion bestSplitSuggestion : bestSplitSuggestions) {
@@ -928,25 +942,17 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
     // DRY Don't Repeat Yourself... code duplicated from ActiveLearningNode in VFDT.java. However, this is the most practical way to share stand-alone.
     public AttributeSplitSuggestion[] getBestSplitSuggestions(
       SplitCriterion criterion, EFDT ht) {
-      List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<>();
       double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
+      AttributeSplitSuggestion nullSplit = null;
       if (!ht.noPrePruneOption.isSet()) {
 	// add null split as an option
-	bestSuggestions.add(new AttributeSplitSuggestion(null,
+	nullSplit = new AttributeSplitSuggestion(null,
 	  new double[0][], criterion.getMeritOfSplit(
-	  preSplitDist, new double[][]{preSplitDist})));
+	  preSplitDist, new double[][]{preSplitDist}));
       }
-      for (int i = 0; i < this.attributeObservers.size(); i++) {
-	AttributeClassObserver obs = this.attributeObservers.get(i);
-	if (obs != null) {
-	  AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-	    preSplitDist, i, ht.binarySplitsOption.isSet());
-	  if (bestSuggestion != null) {
-	    bestSuggestions.add(bestSuggestion);
-	  }
-	}
-      }
-      return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
+      // sorted by ascending merit
+      return ht.getSplitSuggestionRanker().getBestSplitSuggestions(this.attributeObservers, criterion,
+	preSplitDist, ht.binarySplitsOption.isSet(), nullSplit, SplitSuggestionRanker.ALL);
     }
 
 
@@ -1011,7 +1017,6 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
 
       // get best split suggestions
       AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, EFDT.this);
-      Arrays.sort(bestSplitSuggestions);
 
       // get the best suggestion
       AttributeSplitSuggestion bestSuggestion = bestSplitSuggestions[bestSplitSuggestions.length - 1];
@@ -1296,25 +1301,17 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
 
     public AttributeSplitSuggestion[] getBestSplitSuggestions(
       SplitCriterion criterion, EFDT ht) {
-      List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<>();
       double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
+      AttributeSplitSuggestion nullSplit = null;
       if (!ht.noPrePruneOption.isSet()) {
 	// add null split as an option
-	bestSuggestions.add(new AttributeSplitSuggestion(null,
+	nullSplit = new AttributeSplitSuggestion(null,
 	  new double[0][], criterion.getMeritOfSplit(
-	  preSplitDist, new double[][]{preSplitDist})));
-      }
-      for (int i = 0; i < this.attributeObservers.size(); i++) {
-	AttributeClassObserver obs = this.attributeObservers.get(i);
-	if (obs != null) {
-	  AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-	    preSplitDist, i, ht.binarySplitsOption.isSet());
-	  if (bestSuggestion != null) {
-	    bestSuggestions.add(bestSuggestion);
-	  }
-	}
+	  preSplitDist, new double[][]{preSplitDist}));
       }
-      return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
+      // sorted by ascending merit
+      return ht.getSplitSuggestionRanker().getBestSplitSuggestions(this.attributeObservers, criterion,
+	preSplitDist, ht.binarySplitsOption.isSet(), nullSplit, SplitSuggestionRanker.ALL);
     }
 
     public void disableAttribute(int attIndex) {
@@ -1393,7 +1390,6 @@ public class EFDT extends AbstractClassifier implements MultiClassClassifier {
 	SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
 	AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
 
-	Arrays.sort(bestSplitSuggestions);
 	boolean shouldSplit = false;
 
 	for (int i = 0; i < bestSplitSuggestions.length; i++){
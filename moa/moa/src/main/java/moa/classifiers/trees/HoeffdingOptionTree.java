@@ -41,6 +41,7 @@ import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.SplitSuggestionRanker;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
@@ -174,6 +175,10 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public IntOption splitEvaluationJobsOption = new IntOption("splitEvaluationJobs", 'J',
+            "Number of attribute chunks evaluated concurrently when attempting a split, for wide data (-1 = as much as possible, 0 or 1 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
     public FileOption dumpFileOption = new FileOption("dumpFile", 'f',
             "File to append option table to.", null, "csv", true);
 
@@ -573,26 +578,25 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
 
         public AttributeSplitSuggestion[] getBestSplitSuggestions(
                 SplitCriterion criterion, HoeffdingOptionTree ht) {
-            List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<AttributeSplitSuggestion>();
+            return getBestSplitSuggestions(criterion, ht, SplitSuggestionRanker.ALL);
+        }
+
+        /**
+         * The k best split suggestions, null split included, sorted by ascending merit.
+         */
+        public AttributeSplitSuggestion[] getBestSplitSuggestions(
+                SplitCriterion criterion, HoeffdingOptionTree ht, int k) {
             double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
+            AttributeSplitSuggestion nullSplit = null;
             if (!ht.noPrePruneOption.isSet()) {
                 // add null split as an option
-                bestSuggestions.add(new AttributeSplitSuggestion(null,
+                nullSplit = new AttributeSplitSuggestion(null,
                         new double[0][], criterion.getMeritOfSplit(
                         preSplitDist,
-                        new double[][]{preSplitDist})));
-            }
-            for (int i = 0; i < this.attributeObservers.size(); i++) {
-                AttributeClassObserver obs = this.attributeObservers.get(i);
-                if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-                            preSplitDist, i, ht.binarySplitsOption.isSet());
-                    if (bestSuggestion != null) {
-                        bestSuggestions.add(bestSuggestion);
-                    }
-                }
+                        new double[][]{preSplitDist}));
             }
-            return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
+            return ht.getSplitSuggestionRanker().getBestSplitSuggestions(this.attributeObservers, criterion,
+                    preSplitDist, ht.binarySplitsOption.isSet(), nullSplit, k);
         }
 
         public void disableAttribute(int attIndex) {
@@ -603,6 +607,8 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
 
     protected Node treeRoot;
 
+    protected transient SplitSuggestionRanker splitSuggestionRanker;
+
     protected int decisionNodeCount;
 
     protected int activeLeafNodeCount;
@@ -632,6 +638,7 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
 
     @Override
     public void resetLearningImpl() {
+        this.splitSuggestionRanker = null;
         this.treeRoot = null;
         this.decisionNodeCount = 0;
         this.activeLeafNodeCount = 0;
@@ -767,12 +774,21 @@ public class HoeffdingOptionTree extends AbstractClassifier implements MultiClas
         return (AttributeClassObserver) numericClassObserver.copy();
     }
 
+    public SplitSuggestionRanker getSplitSuggestionRanker() {
+        if (this.splitSuggestionRanker == null) {
+            this.splitSuggestionRanker = new SplitSuggestionRanker(this.splitEvaluationJobsOption.getValue());
+        }
+        return this.splitSuggestionRanker;
+    }
+
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
         if (!node.observedClassDistributionIsPure()) {
             SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
-            AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
-            Arrays.sort(bestSplitSuggestions);
+            // the best two decide, poor attributes are found among all of them
+            boolean isRemovingPoorAtts = (this.removePoorAttsOption != null) && this.removePoorAttsOption.isSet();
+            AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this,
+                    isRemovingPoorAtts ? SplitSuggestionRanker.ALL : 2);
             boolean shouldSplit = false;
             if (parentIndex != -999) {
                 if (bestSplitSuggestions.length < 2) {
@@ -30,9 +30,11 @@ import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.SplitSuggestionRanker;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.DiscreteAttributeClassObserver;
 import moa.classifiers.core.attributeclassobservers.NullAttributeClassObserver;
@@ -47,6 +49,7 @@ import moa.core.StringUtils;
 import moa.core.Utils;
 import moa.options.ClassOption;
 import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
 
 /**
  * Hoeffding Tree or VFDT.
@@ -93,7 +96,7 @@ import com.yahoo.labs.samoa.instances.Instance;
  * @version $Revision: 7 $
  */
 public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier,
-                                                                 CapabilitiesHandler {
+                                                                 CapabilitiesHandler, Cloneable {
 
     private static final long serialVersionUID = 1L;
 
@@ -163,6 +166,10 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public IntOption splitEvaluationJobsOption = new IntOption("splitEvaluationJobs", 'J',
+            "Number of attribute chunks evaluated concurrently when attempting a split, for wide data (-1 = as much as possible, 0 or 1 = do not use multithreading)",
+            1, -1, Integer.MAX_VALUE);
+
     public static class FoundNode {
 
         public Node node;
@@ -182,10 +189,11 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
         private static final long serialVersionUID = 1L;
 
-        public ArrayDeque<Instance> instanceStore = new ArrayDeque<>();
-
         public DoubleVector observedClassDistribution;
 
+        // whether the node may be reachable from more than one tree, see HoeffdingTree.snapshot()
+        protected boolean shared;
+
         public Node(double[] classObservations) {
             this.observedClassDistribution = new DoubleVector(classObservations);
         }
@@ -249,6 +257,29 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         public void getDescription(StringBuilder sb, int indent) {
             describeSubtree(null, sb, indent);
         }
+
+        /**
+         * Copies the subtree rooted at this node without serializing it. Node classes implement this for their own
+         * class only, so that subclasses adding state are not copied as their parent class.
+         *
+         * @return a copy of the subtree, or null if a node of the subtree does not implement this
+         */
+        public Node copySubtree() {
+            if (getClass() != Node.class) {
+                return null;
+            }
+            return new Node(this.observedClassDistribution.getArrayRef());
+        }
+
+        /**
+         * Copies this node for a tree about to modify it while it is shared. The copy of a split node shares the
+         * children, which are shared from then on.
+         *
+         * @return a copy of the node, or null if the class of the node does not implement this
+         */
+        public Node copyForWrite() {
+            return copySubtree();
+        }
     }
 
     public static class SplitNode extends Node {
@@ -382,6 +413,45 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             }
             return maxChildDepth + 1;
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != SplitNode.class) {
+                return null;
+            }
+            // split tests are never modified, the copy shares them
+            SplitNode copy = new SplitNode(this.splitTest, this.observedClassDistribution.getArrayRef(),
+                    this.children.size());
+            List<Node> childCopies = new ArrayList<Node>(this.children.size());
+            for (Node child : this.children) {
+                Node childCopy = null;
+                if (child != null) {
+                    childCopy = child.copySubtree();
+                    if (childCopy == null) {
+                        return null;
+                    }
+                }
+                childCopies.add(childCopy);
+            }
+            copy.children.addAll(childCopies);
+            return copy;
+        }
+
+        @Override
+        public Node copyForWrite() {
+            if (getClass() != SplitNode.class) {
+                return null;
+            }
+            SplitNode copy = new SplitNode(this.splitTest, this.observedClassDistribution.getArrayRef(),
+                    this.children.size());
+            for (Node child : this.children) {
+                if (child != null) {
+                    child.shared = true;
+                }
+            }
+            copy.children.addAll(this.children);
+            return copy;
+        }
     }
 
     public static abstract class LearningNode extends Node {
@@ -408,6 +478,14 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.observedClassDistribution.addToValue((int) inst.classValue(),
                     inst.weight());
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != InactiveLearningNode.class) {
+                return null;
+            }
+            return new InactiveLearningNode(this.observedClassDistribution.getArrayRef());
+        }
     }
 
     public static class ActiveLearningNode extends LearningNode {
@@ -465,36 +543,60 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
         public AttributeSplitSuggestion[] getBestSplitSuggestions(
                 SplitCriterion criterion, HoeffdingTree ht) {
-            List<AttributeSplitSuggestion> bestSuggestions = new LinkedList<AttributeSplitSuggestion>();
+            return getBestSplitSuggestions(criterion, ht, SplitSuggestionRanker.ALL);
+        }
+
+        /**
+         * The k best split suggestions, null split included, sorted by ascending merit.
+         */
+        public AttributeSplitSuggestion[] getBestSplitSuggestions(
+                SplitCriterion criterion, HoeffdingTree ht, int k) {
             double[] preSplitDist = this.observedClassDistribution.getArrayCopy();
+            AttributeSplitSuggestion nullSplit = null;
             if (!ht.noPrePruneOption.isSet()) {
                 // add null split as an option
-                bestSuggestions.add(new AttributeSplitSuggestion(null,
+                nullSplit = new AttributeSplitSuggestion(null,
                         new double[0][], criterion.getMeritOfSplit(
                         preSplitDist,
-                        new double[][]{preSplitDist})));
+                        new double[][]{preSplitDist}));
             }
-            for (int i = 0; i < this.attributeObservers.size(); i++) {
-                AttributeClassObserver obs = this.attributeObservers.get(i);
-                if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-                            preSplitDist, i, ht.binarySplitsOption.isSet());
-                    if (bestSuggestion != null) {
-                        bestSuggestions.add(bestSuggestion);
-                    }
-                }
-            }
-            return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
+            return ht.getSplitSuggestionRanker().getBestSplitSuggestions(this.attributeObservers, criterion,
+                    preSplitDist, ht.binarySplitsOption.isSet(), nullSplit, k);
         }
 
         public void disableAttribute(int attIndex) {
             this.attributeObservers.set(attIndex,
                     new NullAttributeClassObserver());
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != ActiveLearningNode.class) {
+                return null;
+            }
+            ActiveLearningNode copy = new ActiveLearningNode(this.observedClassDistribution.getArrayRef());
+            copyStatisticsTo(copy);
+            return copy;
+        }
+
+        /**
+         * Copies the statistics gathered by this node, other than its class distribution, to a new node of the
+         * same class.
+         */
+        protected void copyStatisticsTo(ActiveLearningNode copy) {
+            copy.weightSeenAtLastSplitEvaluation = this.weightSeenAtLastSplitEvaluation;
+            copy.attributeObservers = this.attributeObservers.copyElements();
+            copy.isInitialized = this.isInitialized;
+        }
     }
 
     protected Node treeRoot;
 
+    protected transient SplitSuggestionRanker splitSuggestionRanker;
+
+    // whether the tree may share nodes with a snapshot, in which case it copies them before modifying them
+    protected boolean copyOnWrite;
+
     protected int decisionNodeCount;
 
     protected int activeLeafNodeCount;
@@ -530,9 +632,145 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         return calcByteSize();
     }
 
+    /**
+     * Copies the tree node by node and serializes only the rest of the classifier. A tree holding nodes that do
+     * not implement {@link Node#copySubtree()}, or whose class does not support structural copies, is serialized
+     * as a whole.
+     *
+     * @see #isStructuralCopySupported()
+     */
+    @Override
+    public Classifier copy() {
+        if (!isStructuralCopySupported()) {
+            return super.copy();
+        }
+        Node treeRootCopy = this.treeRoot == null ? null : this.treeRoot.copySubtree();
+        if (this.treeRoot != null && treeRootCopy == null) {
+            return super.copy();
+        }
+        HoeffdingTree copy = copyWithoutTree();
+        copy.treeRoot = treeRootCopy;
+        // the copied nodes are not shared with any other tree
+        copy.copyOnWrite = false;
+        return copy;
+    }
+
+    /**
+     * Forks this tree without copying its nodes. The fork and this tree share the nodes, and each copies a shared
+     * node, with the path leading to it, before modifying it. Forking thus costs memory in the depth of the tree
+     * rather than in its size, and the trees only grow apart by the leaves they train. Trees that do not support
+     * this are copied instead.
+     *
+     * @return a fork of this tree
+     * @see #isCopyOnWriteSupported()
+     */
+    public HoeffdingTree snapshot() {
+        if (!isCopyOnWriteSupported()) {
+            return (HoeffdingTree) copy();
+        }
+        HoeffdingTree snapshot = copyWithoutTree();
+        if (this.treeRoot != null) {
+            this.treeRoot.shared = true;
+            this.copyOnWrite = true;
+            snapshot.treeRoot = this.treeRoot;
+            snapshot.copyOnWrite = true;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Whether snapshot() may share the nodes of this tree: the tree must be trained by this class and its nodes
+     * must implement {@link Node#copyForWrite()}. Subclasses that meet both override this.
+     */
+    protected boolean isCopyOnWriteSupported() {
+        return getClass() == HoeffdingTree.class;
+    }
+
+    /**
+     * Whether copy() may copy the tree node by node: the classifier must not keep state of its own that refers to
+     * the nodes, as such state would be serialized apart from the copied nodes. Subclasses that meet this override
+     * it.
+     */
+    protected boolean isStructuralCopySupported() {
+        return getClass() == HoeffdingTree.class;
+    }
+
+    private HoeffdingTree copyWithoutTree() {
+        HoeffdingTree withoutTree = (HoeffdingTree) shallowCopy();
+        withoutTree.treeRoot = null;
+        return (HoeffdingTree) AbstractMOAObject.copy(withoutTree);
+    }
+
+    private static Node copyForWrite(Node node) {
+        Node copy = node.copyForWrite();
+        if (copy == null) {
+            throw new IllegalStateException("Could not copy a shared " + node.getClass().getName() + " on write.");
+        }
+        return copy;
+    }
+
+    /**
+     * Sorts an instance to its leaf as {@link Node#filterInstanceToLeaf} does, copying the shared nodes on the way,
+     * so that the nodes of the path and the leaf belong to this tree only.
+     */
+    protected FoundNode filterInstanceToOwnedLeaf(Instance inst) {
+        if (this.treeRoot.shared) {
+            this.treeRoot = copyForWrite(this.treeRoot);
+        }
+        Node node = this.treeRoot;
+        SplitNode parent = null;
+        int parentBranch = -1;
+        while (node instanceof SplitNode) {
+            SplitNode splitNode = (SplitNode) node;
+            int childIndex = splitNode.instanceChildIndex(inst);
+            if (childIndex < 0) {
+                break;
+            }
+            Node child = splitNode.getChild(childIndex);
+            if (child == null) {
+                return new FoundNode(null, splitNode, childIndex);
+            }
+            if (child.shared) {
+                child = copyForWrite(child);
+                splitNode.setChild(childIndex, child);
+            }
+            parent = splitNode;
+            parentBranch = childIndex;
+            node = child;
+        }
+        return new FoundNode(node, parent, parentBranch);
+    }
+
+    /**
+     * Copies the shared split nodes, so that leaves can be replaced anywhere in the tree. The leaves stay shared.
+     */
+    protected void ownSplitNodes() {
+        if (this.treeRoot instanceof SplitNode) {
+            if (this.treeRoot.shared) {
+                this.treeRoot = copyForWrite(this.treeRoot);
+            }
+            ownSplitNodes((SplitNode) this.treeRoot);
+        }
+    }
+
+    private void ownSplitNodes(SplitNode splitNode) {
+        for (int i = 0; i < splitNode.numChildren(); i++) {
+            Node child = splitNode.getChild(i);
+            if (child instanceof SplitNode) {
+                if (child.shared) {
+                    child = copyForWrite(child);
+                    splitNode.setChild(i, child);
+                }
+                ownSplitNodes((SplitNode) child);
+            }
+        }
+    }
+
     @Override
     public void resetLearningImpl() {
         this.treeRoot = null;
+        this.splitSuggestionRanker = null;
+        this.copyOnWrite = false;
         this.decisionNodeCount = 0;
         this.activeLeafNodeCount = 0;
         this.inactiveLeafNodeCount = 0;
@@ -551,11 +789,26 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
         }
-        FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst, null, -1);
+        FoundNode foundNode = this.copyOnWrite ? filterInstanceToOwnedLeaf(inst)
+                : this.treeRoot.filterInstanceToLeaf(inst, null, -1);
+        learnAtFoundNode(inst, foundNode);
+        if (this.trainingWeightSeenByModel
+                % this.memoryEstimatePeriodOption.getValue() == 0) {
+            estimateModelByteSizes();
+        }
+    }
+
+    /**
+     * Trains the leaf an instance was sorted to, creating the leaf if missing, and attempts to split it.
+     *
+     * @return true if the leaf was replaced, by a split node or an inactive leaf
+     */
+    private boolean learnAtFoundNode(Instance inst, FoundNode foundNode) {
         Node leafNode = foundNode.node;
         if (leafNode == null) {
             leafNode = newLearningNode();
             foundNode.parent.setChild(foundNode.parentBranch, leafNode);
+            foundNode.node = leafNode;
             this.activeLeafNodeCount++;
         }
         if (leafNode instanceof LearningNode) {
@@ -570,12 +823,139 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     attemptToSplit(activeLearningNode, foundNode.parent,
                             foundNode.parentBranch);
                     activeLearningNode.setWeightSeenAtLastSplitEvaluation(weightSeen);
+                    Node node = foundNode.parent == null ? this.treeRoot
+                            : foundNode.parent.getChild(foundNode.parentBranch);
+                    return node != leafNode;
                 }
             }
         }
-        if (this.trainingWeightSeenByModel
-                % this.memoryEstimatePeriodOption.getValue() == 0) {
-            estimateModelByteSizes();
+        return false;
+    }
+
+    /**
+     * Whether batches can be trained and predicted leaf by leaf, which requires training and predicting as this
+     * class does.
+     */
+    protected boolean isLeafBatchingSupported() {
+        return getClass() == HoeffdingTree.class;
+    }
+
+    /**
+     * Trains on a batch leaf by leaf: the instances are sorted to their leaves first, then each leaf learns from its
+     * instances in their order. A leaf only depends on the instances it learns from, so the tree ends as if trained
+     * on each instance in turn. Once a leaf is replaced, its remaining instances are sorted one by one. Batches
+     * during which the model size is estimated are trained one instance at a time, as the estimate depends on all
+     * the leaves.
+     */
+    @Override
+    public void trainOnInstances(Instances batch) {
+        if (!isLeafBatchingSupported() || this.copyOnWrite) {
+            super.trainOnInstances(batch);
+            return;
+        }
+        int numInstances = batch.numInstances();
+        int[] rows = new int[numInstances];
+        int numRows = 0;
+        double weightSeen = this.trainingWeightSeenByModel;
+        for (int i = 0; i < numInstances; i++) {
+            Instance inst = batch.instance(i);
+            if (isTrainingInstance(inst)) {
+                weightSeen += inst.weight();
+                if (weightSeen % this.memoryEstimatePeriodOption.getValue() == 0) {
+                    super.trainOnInstances(batch);
+                    return;
+                }
+                rows[numRows++] = i;
+            }
+        }
+        if (numRows == 0) {
+            return;
+        }
+        this.trainingWeightSeenByModel = weightSeen;
+        if (this.treeRoot == null) {
+            this.treeRoot = newLearningNode();
+            this.activeLeafNodeCount = 1;
+        }
+        for (LeafRows leafRows : sortToLeaves(batch, rows, numRows, true)) {
+            int j = 0;
+            boolean isReplaced = false;
+            while (j < leafRows.numRows && !isReplaced) {
+                isReplaced = learnAtFoundNode(batch.instance(leafRows.rows[j++]), leafRows.foundNode);
+            }
+            for (; j < leafRows.numRows; j++) {
+                Instance inst = batch.instance(leafRows.rows[j]);
+                learnAtFoundNode(inst, this.treeRoot.filterInstanceToLeaf(inst, null, -1));
+            }
+        }
+    }
+
+    /**
+     * Predicts a batch leaf by leaf, each leaf voting on the instances sorted to it.
+     */
+    @Override
+    public void getVotesForInstances(Instances batch, double[][] votes) {
+        if (!isLeafBatchingSupported() || this.treeRoot == null) {
+            super.getVotesForInstances(batch, votes);
+            return;
+        }
+        int[] rows = new int[batch.numInstances()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        for (LeafRows leafRows : sortToLeaves(batch, rows, rows.length, false)) {
+            Node leafNode = leafRows.foundNode.node != null ? leafRows.foundNode.node : leafRows.foundNode.parent;
+            for (int j = 0; j < leafRows.numRows; j++) {
+                int row = leafRows.rows[j];
+                votes[row] = leafNode.getClassVotes(batch.instance(row), this);
+            }
+        }
+    }
+
+    /**
+     * Sorts rows of a batch to their leaves, in the order of the first row of each leaf.
+     *
+     * @param isCreatingLeaves whether the missing leaves rows are sorted to are created, as training creates them
+     */
+    private List<LeafRows> sortToLeaves(Instances batch, int[] rows, int numRows, boolean isCreatingLeaves) {
+        List<LeafRows> leaves = new ArrayList<LeafRows>();
+        Map<Node, LeafRows> leafRowsByNode = new IdentityHashMap<Node, LeafRows>();
+        for (int i = 0; i < numRows; i++) {
+            FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(batch.instance(rows[i]), null, -1);
+            if (foundNode.node == null && isCreatingLeaves) {
+                foundNode.node = newLearningNode();
+                foundNode.parent.setChild(foundNode.parentBranch, foundNode.node);
+                this.activeLeafNodeCount++;
+            }
+            // the parent votes on the rows sorted to a missing leaf
+            Node node = foundNode.node != null ? foundNode.node : foundNode.parent;
+            LeafRows leafRows = leafRowsByNode.get(node);
+            if (leafRows == null) {
+                leafRows = new LeafRows(foundNode);
+                leafRowsByNode.put(node, leafRows);
+                leaves.add(leafRows);
+            }
+            leafRows.add(rows[i]);
+        }
+        return leaves;
+    }
+
+    private static class LeafRows {
+
+        final FoundNode foundNode;
+
+        int[] rows = new int[8];
+
+        int numRows;
+
+        LeafRows(FoundNode foundNode) {
+            this.foundNode = foundNode;
+        }
+
+        void add(int row) {
+            if (this.numRows == this.rows.length) {
+                this.rows = Arrays.copyOf(this.rows, this.numRows * 2);
+            }
+            this.rows[this.numRows++] = row;
         }
     }
 
@@ -659,12 +1039,21 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         return (AttributeClassObserver) numericClassObserver.copy();
     }
 
+    public SplitSuggestionRanker getSplitSuggestionRanker() {
+        if (this.splitSuggestionRanker == null) {
+            this.splitSuggestionRanker = new SplitSuggestionRanker(this.splitEvaluationJobsOption.getValue());
+        }
+        return this.splitSuggestionRanker;
+    }
+
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
         if (!node.observedClassDistributionIsPure()) {
             SplitCriterion splitCriterion = (SplitCriterion) getPreparedClassOption(this.splitCriterionOption);
-            AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this);
-            Arrays.sort(bestSplitSuggestions);
+            // the best two decide, poor attributes are found among all of them
+            boolean isRemovingPoorAtts = (this.removePoorAttsOption != null) && this.removePoorAttsOption.isSet();
+            AttributeSplitSuggestion[] bestSplitSuggestions = node.getBestSplitSuggestions(splitCriterion, this,
+                    isRemovingPoorAtts ? SplitSuggestionRanker.ALL : 2);
             boolean shouldSplit = false;
             if (bestSplitSuggestions.length < 2) {
                 shouldSplit = bestSplitSuggestions.length > 0;
@@ -746,6 +1135,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 this.growthAllowed = false;
                 return;
             }
+            if (this.copyOnWrite) {
+                ownSplitNodes();
+            }
             FoundNode[] learningNodes = findLearningNodes();
             Arrays.sort(learningNodes, new Comparator<FoundNode>() {
 
@@ -815,6 +1207,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     }
 
     public void deactivateAllLeaves() {
+        if (this.copyOnWrite) {
+            ownSplitNodes();
+        }
         FoundNode[] learningNodes = findLearningNodes();
         for (int i = 0; i < learningNodes.length; i++) {
             if (learningNodes[i].node instanceof ActiveLearningNode) {
@@ -906,6 +1301,16 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         public void disableAttribute(int attIndex) {
             // should not disable poor atts - they are used in NB calc
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != LearningNodeNB.class) {
+                return null;
+            }
+            LearningNodeNB copy = new LearningNodeNB(this.observedClassDistribution.getArrayRef());
+            copyStatisticsTo(copy);
+            return copy;
+        }
     }
 
     public static class LearningNodeNBAdaptive extends LearningNodeNB {
@@ -941,6 +1346,23 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             return NaiveBayes.doNaiveBayesPrediction(inst,
                     this.observedClassDistribution, this.attributeObservers);
         }
+
+        @Override
+        public Node copySubtree() {
+            if (getClass() != LearningNodeNBAdaptive.class) {
+                return null;
+            }
+            LearningNodeNBAdaptive copy = new LearningNodeNBAdaptive(this.observedClassDistribution.getArrayRef());
+            copyStatisticsTo(copy);
+            return copy;
+        }
+
+        @Override
+        protected void copyStatisticsTo(ActiveLearningNode copy) {
+            super.copyStatisticsTo(copy);
+            ((LearningNodeNBAdaptive) copy).mcCorrectWeight = this.mcCorrectWeight;
+            ((LearningNodeNBAdaptive) copy).nbCorrectWeight = this.nbCorrectWeight;
+        }
     }
 
     protected LearningNode newLearningNode() {
@@ -21,6 +21,7 @@ package moa.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import moa.AbstractMOAObject;
 import moa.MOAObject;
@@ -120,6 +121,23 @@ public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
         return AbstractMOAObject.copy(this);
     }
 
+    /**
+     * Copies this vector element by element with the copy methods of the elements, which must be MOA objects,
+     * instead of serializing it as a whole. Null elements stay null.
+     *
+     * @return a copy of this vector
+     */
+    @SuppressWarnings("unchecked")
+    public AutoExpandVector<T> copyElements() {
+        List<T> elements = new ArrayList<T>(size());
+        for (T element : this) {
+            elements.add(element == null ? null : (T) ((MOAObject) element).copy());
+        }
+        AutoExpandVector<T> copy = new AutoExpandVector<T>();
+        copy.addAll(elements);
+        return copy;
+    }
+
     @Override
     public int measureByteSize() {
         return AbstractMOAObject.measureByteSize(this);
@@ -0,0 +1,131 @@
+/*
+ *    BitSlidingWindow.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import moa.AbstractMOAObject;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the last bits (e.g. 0/1 prediction errors) of a stream,
+ * packed into a ring of longs. Adding a bit and reading the number of ones in
+ * the window take constant time and allocate nothing.
+ *
+ * @version $Revision: 7 $
+ */
+public class BitSlidingWindow extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    protected long[] words;
+
+    protected int capacity;
+
+    // position of the oldest bit
+    protected int head;
+
+    protected int size;
+
+    protected int numOnes;
+
+    public BitSlidingWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Window capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.words = new long[(capacity + 63) >>> 6];
+        clear();
+    }
+
+    /**
+     * Appends a bit, dropping the oldest one if the window is full.
+     *
+     * @param bit 0 or 1
+     */
+    public void add(int bit) {
+        int pos;
+        if (this.size == this.capacity) {
+            pos = this.head;
+            this.numOnes -= get(pos);
+            this.head = this.head + 1 == this.capacity ? 0 : this.head + 1;
+        } else {
+            pos = this.head + this.size;
+            if (pos >= this.capacity) {
+                pos -= this.capacity;
+            }
+            this.size++;
+        }
+        if (bit != 0) {
+            this.words[pos >>> 6] |= 1L << pos;
+            this.numOnes++;
+        } else {
+            this.words[pos >>> 6] &= ~(1L << pos);
+        }
+    }
+
+    private int get(int pos) {
+        return (int) (this.words[pos >>> 6] >>> pos) & 1;
+    }
+
+    /**
+     * Returns the i-th bit of the window, 0 being the oldest.
+     */
+    public int getBit(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + this.size);
+        }
+        int pos = this.head + i;
+        return get(pos >= this.capacity ? pos - this.capacity : pos);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    /**
+     * Returns the number of ones in the window.
+     */
+    public int sum() {
+        return this.numOnes;
+    }
+
+    public double mean() {
+        return this.size == 0 ? 0.0 : (double) this.numOnes / this.size;
+    }
+
+    public void clear() {
+        Arrays.fill(this.words, 0L);
+        this.head = 0;
+        this.size = 0;
+        this.numOnes = 0;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append(this.numOnes).append('/').append(this.size);
+    }
+}
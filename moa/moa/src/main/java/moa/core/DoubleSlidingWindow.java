@@ -0,0 +1,124 @@
+/*
+ *    DoubleSlidingWindow.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *    
+ */
+package moa.core;
+
+import moa.AbstractMOAObject;
+
+/**
+ * Sliding window of the last values of a stream, kept in a ring of doubles.
+ * The sum of the window is updated incrementally, so adding a value and
+ * reading the sum or mean take constant time and allocate nothing.
+ *
+ * @version $Revision: 7 $
+ */
+public class DoubleSlidingWindow extends AbstractMOAObject {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double[] values;
+
+    // position of the oldest value
+    protected int head;
+
+    protected int size;
+
+    protected double sum;
+
+    public DoubleSlidingWindow(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Window capacity must be positive: " + capacity);
+        }
+        this.values = new double[capacity];
+        clear();
+    }
+
+    /**
+     * Appends a value, dropping the oldest one if the window is full.
+     */
+    public void add(double value) {
+        int capacity = this.values.length;
+        this.sum += value;
+        if (this.size == capacity) {
+            this.sum -= this.values[this.head];
+            this.values[this.head] = value;
+            this.head = this.head + 1 == capacity ? 0 : this.head + 1;
+        } else {
+            int pos = this.head + this.size;
+            this.values[pos >= capacity ? pos - capacity : pos] = value;
+            this.size++;
+        }
+    }
+
+    /**
+     * Returns the i-th value of the window, 0 being the oldest.
+     */
+    public double get(int i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + this.size);
+        }
+        int pos = this.head + i;
+        return this.values[pos >= this.values.length ? pos - this.values.length : pos];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.values.length;
+    }
+
+    public boolean isFull() {
+        return this.size == this.values.length;
+    }
+
+    public double sum() {
+        return this.sum;
+    }
+
+    public double mean() {
+        return this.size == 0 ? 0.0 : this.sum / this.size;
+    }
+
+    /**
+     * Returns the sum of the square roots of the absolute deviations from the
+     * window mean, oldest value first.
+     */
+    public double sumOfSqrtAbsDeviations() {
+        double mean = mean();
+        double total = 0;
+        int pos = this.head;
+        for (int i = 0; i < this.size; i++) {
+            total += Math.sqrt(Math.abs(this.values[pos] - mean));
+            pos = pos + 1 == this.values.length ? 0 : pos + 1;
+        }
+        return total;
+    }
+
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+        this.sum = 0;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append(mean()).append(" (").append(this.size).append(')');
+    }
+}
@@ -20,6 +20,7 @@
 package moa.core;
 
 import moa.AbstractMOAObject;
+import moa.MOAObject;
 
 /**
  * Vector of double numbers with some utilities.
@@ -199,4 +200,12 @@ public class DoubleVector extends AbstractMOAObject {
     public void getDescription(StringBuilder sb, int indent) {
         getSingleLineDescription(sb);
     }
+
+    @Override
+    public MOAObject copy() {
+        if (getClass() != DoubleVector.class) {
+            return super.copy();
+        }
+        return new DoubleVector(this);
+    }
 }
@@ -20,6 +20,7 @@
 package moa.core;
 
 import moa.AbstractMOAObject;
+import moa.MOAObject;
 
 /**
  * Gaussian incremental estimator that uses incremental method that is more resistant to floating point imprecision.
@@ -119,4 +120,16 @@ public class GaussianEstimator extends AbstractMOAObject {
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public MOAObject copy() {
+        if (getClass() != GaussianEstimator.class) {
+            return super.copy();
+        }
+        GaussianEstimator copy = new GaussianEstimator();
+        copy.weightSum = this.weightSum;
+        copy.mean = this.mean;
+        copy.varianceSum = this.varianceSum;
+        return copy;
+    }
 }
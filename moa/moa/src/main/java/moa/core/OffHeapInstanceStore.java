@@ -0,0 +1,380 @@
+/*
+ *    OffHeapInstanceStore.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.DenseInstanceData;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstanceData;
+import com.yahoo.labs.samoa.instances.InstanceImpl;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import moa.streams.BinaryInstanceFormat;
+
+/**
+ * List of instances stored off the heap, so that long windows of instances do not slow down the garbage collection.
+ *
+ * The instances are written as rows of the {@link BinaryInstanceFormat} into direct byte buffers of a fixed size.
+ * Once the direct buffers take a given number of bytes, the next ones are mapped from a temporary file instead, so
+ * the operating system can page them out. The file is deleted when the store is closed.
+ *
+ * {@link #get(int)} returns a read-only view of a row, created on each call, that reads its values from the
+ * buffers. Copy a view to modify it. Sparse instances are stored dense. All instances must have the header of the
+ * first one, and nominal attributes can only get as many labels as fit in their column: 256 while they have at
+ * most 256 labels when the first instance is added, 65536 while they have at most 65536.
+ */
+public class OffHeapInstanceStore extends AbstractList<Instance> implements RandomAccess, Closeable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+    // bytes of direct buffers before spilling, negative to never spill
+    protected final long maxDirectBytes;
+
+    protected final int pageSize;
+
+    protected InstancesHeader header;
+
+    protected int size;
+
+    protected transient BinaryInstanceFormat format;
+
+    protected transient int rowsPerPage;
+
+    protected transient List<ByteBuffer> pages;
+
+    protected transient long directBytes;
+
+    protected transient FileChannel spillChannel;
+
+    protected transient long spillBytes;
+
+    /**
+     * Store that never spills.
+     */
+    public OffHeapInstanceStore() {
+        this(-1);
+    }
+
+    /**
+     * @param maxDirectBytes the bytes of direct buffers after which buffers are mapped from a temporary file,
+     *                       negative to never spill
+     */
+    public OffHeapInstanceStore(long maxDirectBytes) {
+        this(maxDirectBytes, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param maxDirectBytes the bytes of direct buffers after which buffers are mapped from a temporary file,
+     *                       negative to never spill
+     * @param pageSize the size of the buffers, rounded down to whole rows but holding at least one
+     */
+    public OffHeapInstanceStore(long maxDirectBytes, int pageSize) {
+        this.maxDirectBytes = maxDirectBytes;
+        this.pageSize = pageSize;
+        this.pages = new ArrayList<>();
+    }
+
+    protected void initFormat(InstancesHeader header) {
+        this.header = header;
+        this.format = BinaryInstanceFormat.of(header);
+        this.rowsPerPage = Math.max(1, this.pageSize / this.format.getRowSize());
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean add(Instance inst) {
+        if (this.format == null) {
+            initFormat(inst.dataset() instanceof InstancesHeader
+                    ? (InstancesHeader) inst.dataset()
+                    : new InstancesHeader(inst.dataset()));
+        }
+        if (this.size == this.pages.size() * this.rowsPerPage) {
+            this.pages.add(newPage());
+        }
+        writeRow(this.size, inst);
+        this.size++;
+        this.modCount++;
+        return true;
+    }
+
+    protected ByteBuffer newPage() {
+        int pageBytes = this.rowsPerPage * this.format.getRowSize();
+        ByteBuffer page;
+        if (this.maxDirectBytes < 0 || this.directBytes + pageBytes <= this.maxDirectBytes) {
+            page = ByteBuffer.allocateDirect(pageBytes);
+            this.directBytes += pageBytes;
+        } else {
+            try {
+                if (this.spillChannel == null) {
+                    Path spillFile = Files.createTempFile("moa-instances", ".pages");
+                    this.spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                }
+                // mapping past the end of the file extends it
+                page = this.spillChannel.map(FileChannel.MapMode.READ_WRITE, this.spillBytes, pageBytes);
+                this.spillBytes += pageBytes;
+            } catch (IOException ioe) {
+                throw new RuntimeException("OffHeapInstanceStore failed to spill to a temporary file.", ioe);
+            }
+        }
+        return page.order(BinaryInstanceFormat.BYTE_ORDER);
+    }
+
+    protected void writeRow(int row, Instance inst) {
+        ByteBuffer page = this.pages.get(row / this.rowsPerPage);
+        page.position((row % this.rowsPerPage) * this.format.getRowSize());
+        this.format.writeRow(page, inst);
+    }
+
+    @Override
+    public Instance get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return new RowView(this, this.pages.get(index / this.rowsPerPage),
+                (index % this.rowsPerPage) * this.format.getRowSize());
+    }
+
+    /**
+     * Reads one value of a stored row without creating a view of it. The index is not checked.
+     *
+     * @return the value, NaN if missing
+     */
+    public double value(int index, int attIndex) {
+        return this.format.readValue(this.pages.get(index / this.rowsPerPage),
+                (index % this.rowsPerPage) * this.format.getRowSize(), attIndex);
+    }
+
+    /**
+     * Overwrites a row, which views of it then show.
+     *
+     * @return a copy of the replaced instance
+     */
+    @Override
+    public Instance set(int index, Instance inst) {
+        Instance previous = get(index).copy();
+        writeRow(index, inst);
+        return previous;
+    }
+
+    /**
+     * Removes all instances, keeping the buffers to store the next ones.
+     */
+    @Override
+    public void clear() {
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Releases the buffers and deletes the temporary file. The buffers are freed once no view uses them.
+     */
+    @Override
+    public void close() {
+        this.size = 0;
+        this.pages = new ArrayList<>();
+        this.directBytes = 0;
+        this.spillBytes = 0;
+        if (this.spillChannel != null) {
+            try {
+                this.spillChannel.close();
+            } catch (IOException ioe) {
+                throw new RuntimeException("OffHeapInstanceStore failed to delete its temporary file.", ioe);
+            } finally {
+                this.spillChannel = null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes of the direct buffers
+     */
+    public long getDirectBytes() {
+        return this.directBytes;
+    }
+
+    /**
+     * @return the number of bytes of the buffers mapped from the temporary file
+     */
+    public long getSpilledBytes() {
+        return this.spillBytes;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] row = this.format == null ? null : new byte[this.format.getRowSize()];
+        for (int i = 0; i < this.size; i++) {
+            ByteBuffer page = this.pages.get(i / this.rowsPerPage).duplicate();
+            page.position((i % this.rowsPerPage) * row.length);
+            page.get(row);
+            out.write(row);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.pages = new ArrayList<>();
+        if (this.header == null) {
+            return;
+        }
+        initFormat(this.header);
+        byte[] row = new byte[this.format.getRowSize()];
+        for (int i = 0; i < this.size; i++) {
+            if (i == this.pages.size() * this.rowsPerPage) {
+                this.pages.add(newPage());
+            }
+            in.readFully(row);
+            ByteBuffer page = this.pages.get(i / this.rowsPerPage);
+            page.position((i % this.rowsPerPage) * row.length);
+            page.put(row);
+        }
+    }
+
+    /**
+     * View of a stored row.
+     */
+    protected static class RowView extends InstanceImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        public RowView(OffHeapInstanceStore store, ByteBuffer page, int offset) {
+            super(store.format.readWeight(page, offset), new RowData(store.format, page, offset));
+            this.instanceHeader = store.header;
+        }
+
+        @Override
+        public void setWeight(double weight) {
+            throw new UnsupportedOperationException("Stored instances are read only, copy them to modify them.");
+        }
+
+        /**
+         * @return a dense instance with the values of the row, independent of the store
+         */
+        @Override
+        public Instance copy() {
+            Instance copy = new DenseInstance(weight(), toDoubleArray());
+            copy.setDataset(this.instanceHeader);
+            return copy;
+        }
+    }
+
+    /**
+     * The values of a stored row.
+     */
+    protected static class RowData implements InstanceData {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final transient BinaryInstanceFormat format;
+
+        protected final transient ByteBuffer page;
+
+        protected final int offset;
+
+        public RowData(BinaryInstanceFormat format, ByteBuffer page, int offset) {
+            this.format = format;
+            this.page = page;
+            this.offset = offset;
+        }
+
+        @Override
+        public int numAttributes() {
+            return this.format.numAttributes();
+        }
+
+        @Override
+        public double value(int instAttIndex) {
+            return this.format.readValue(this.page, this.offset, instAttIndex);
+        }
+
+        @Override
+        public boolean isMissing(int instAttIndex) {
+            return Double.isNaN(value(instAttIndex));
+        }
+
+        @Override
+        public int numValues() {
+            return numAttributes();
+        }
+
+        @Override
+        public int index(int i) {
+            return i;
+        }
+
+        @Override
+        public double valueSparse(int i) {
+            return value(i);
+        }
+
+        @Override
+        public boolean isMissingSparse(int p1) {
+            return isMissing(p1);
+        }
+
+        @Override
+        public double[] toDoubleArray() {
+            double[] values = new double[numAttributes()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = value(i);
+            }
+            return values;
+        }
+
+        @Override
+        public void setValue(int m_numAttributes, double d) {
+            throw new UnsupportedOperationException("Stored instances are read only, copy them to modify them.");
+        }
+
+        @Override
+        public void deleteAttributeAt(int index) {
+            throw new UnsupportedOperationException("Stored instances are read only, copy them to modify them.");
+        }
+
+        @Override
+        public void insertAttributeAt(int index) {
+            throw new UnsupportedOperationException("Stored instances are read only, copy them to modify them.");
+        }
+
+        @Override
+        public InstanceData copy() {
+            return new DenseInstanceData(toDoubleArray());
+        }
+    }
+}
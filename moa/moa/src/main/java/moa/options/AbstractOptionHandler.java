@@ -110,6 +110,26 @@ public abstract class AbstractOptionHandler extends AbstractMOAObject implements
         return (OptionHandler) super.copy();
     }
 
+    /**
+     * Produces a shallow copy of this object whose options are handled by the copy. Subclasses implementing
+     * <code>Cloneable</code> use it in <code>copy</code> to serialize themselves without the state they copy
+     * faster by other means.
+     *
+     * @return a shallow copy of this object
+     */
+    protected AbstractOptionHandler shallowCopy() {
+        AbstractOptionHandler copy;
+        try {
+            copy = (AbstractOptionHandler) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException("Object copy failed.", e);
+        }
+        if (this.config != null) {
+            copy.config = this.config.copyFor(copy);
+        }
+        return copy;
+    }
+
     /**
      * Gets the options of this class via reflection.
      *
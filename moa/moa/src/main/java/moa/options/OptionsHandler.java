@@ -68,6 +68,19 @@ public class OptionsHandler extends JavaCLIParser {
         prepareForUse(new NullMonitor(), null);
     }
 
+    /**
+     * Copy of this options handler for another object, sharing the options and the prepared objects.
+     *
+     * @param handler the object whose options the copy handles
+     * @return the copy of this options handler
+     */
+    public OptionsHandler copyFor(Object handler) {
+        OptionsHandler copy = new OptionsHandler(handler, "");
+        copy.options = this.options;
+        copy.classOptionNamesToPreparedObjects = this.classOptionNamesToPreparedObjects;
+        return copy;
+    }
+
     public void prepareForUse(TaskMonitor monitor, ObjectRepository repository) {
         prepareClassOptions(monitor, repository);
         //prepareForUseImpl(monitor, repository);
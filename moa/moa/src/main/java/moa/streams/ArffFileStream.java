@@ -20,7 +20,9 @@
 package moa.streams;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.ByteArffLoader;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
@@ -29,6 +31,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 import moa.capabilities.CapabilitiesHandler;
@@ -67,10 +71,16 @@ public class ArffFileStream extends AbstractOptionHandler implements
             "Class index of data. 0 for none or -1 for last attribute in file.",
             -1, -1, Integer.MAX_VALUE);
 
+    public FlagOption byteParserOption = new FlagOption("byteParser", 'b',
+            "Parse the data on the bytes of the file instead of through a character tokenizer, which is faster on large files.");
+
     protected Instances instances;
 
     protected Reader fileReader;
 
+    // only used with the byte parser, instead of the file reader
+    protected ByteArffLoader byteLoader;
+
     protected boolean hitEndOfFile;
 
     protected InstanceExample lastInstanceRead;
@@ -101,7 +111,8 @@ public class ArffFileStream extends AbstractOptionHandler implements
 
     @Override
     public long estimatedRemainingInstances() {
-        double progressFraction = this.fileProgressMonitor.getProgressFraction();
+        double progressFraction = this.byteLoader != null ? this.byteLoader.getProgressFraction()
+                : this.fileProgressMonitor.getProgressFraction();
         if ((progressFraction > 0.0) && (this.numInstancesRead > 0)) {
             return (long) ((this.numInstancesRead / progressFraction) - this.numInstancesRead);
         }
@@ -131,13 +142,25 @@ public class ArffFileStream extends AbstractOptionHandler implements
             if (this.fileReader != null) {
                 this.fileReader.close();
             }
-            InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
-            this.fileProgressMonitor = new InputStreamProgressMonitor(
-                    fileStream);
-            this.fileReader = new BufferedReader(new InputStreamReader(
-                    this.fileProgressMonitor));
+            if (this.byteLoader != null) {
+                this.byteLoader.close();
+            }
             int classIndex = this.classIndexOption.getValue();
-            this.instances = new Instances(this.fileReader, 1, classIndex);
+            if (this.byteParserOption.isSet()) {
+                this.fileReader = null;
+                this.fileProgressMonitor = null;
+                this.byteLoader = new ByteArffLoader(FileChannel.open(
+                        this.arffFileOption.getFile().toPath(), StandardOpenOption.READ), classIndex);
+                this.instances = new Instances(this.byteLoader);
+            } else {
+                this.byteLoader = null;
+                InputStream fileStream = new FileInputStream(this.arffFileOption.getFile());
+                this.fileProgressMonitor = new InputStreamProgressMonitor(
+                        fileStream);
+                this.fileReader = new BufferedReader(new InputStreamReader(
+                        this.fileProgressMonitor));
+                this.instances = new Instances(this.fileReader, 1, classIndex);
+            }
             if (classIndex < 0) {
 		this.instances.setClassIndex(this.instances.numAttributes() - 1);
             } else if (this.classIndexOption.getValue() > 0) {
@@ -164,6 +187,10 @@ public class ArffFileStream extends AbstractOptionHandler implements
                 this.fileReader.close();
                 this.fileReader = null;
             }
+            if (this.byteLoader != null) {
+                // kept for the progress, closing it again does nothing
+                this.byteLoader.close();
+            }
             return false;
         } catch (IOException ioe) {
             throw new RuntimeException(
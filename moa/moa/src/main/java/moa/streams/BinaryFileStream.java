@@ -0,0 +1,181 @@
+/*
+ *    BinaryFileStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import moa.capabilities.CapabilitiesHandler;
+import moa.capabilities.Capability;
+import moa.capabilities.ImmutableCapabilities;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream reader of the binary files written by {@link moa.tasks.WriteStreamToBinaryFile}.
+ *
+ * The rows are memory-mapped and materialized without parsing. All rows have the same size, so restarting the
+ * stream only resets the index of the next row.
+ */
+public class BinaryFileStream extends AbstractOptionHandler implements
+        InstanceStream, CapabilitiesHandler {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a binary stream file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary stream file to load.", null, "moab", false);
+
+    protected InstancesHeader header;
+
+    // read from the file again with the mappings
+    protected transient BinaryInstanceFormat format;
+
+    // the rows, split in mappings of whole rows as a mapping holds at most 2GB
+    protected transient MappedByteBuffer[] segments;
+
+    protected int rowsPerSegment;
+
+    protected long numInstances;
+
+    protected long nextRow;
+
+    public BinaryFileStream() {
+    }
+
+    public BinaryFileStream(String binaryFileName) {
+        this.binaryFileOption.setValue(binaryFileName);
+        open();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        open();
+        this.nextRow = 0;
+    }
+
+    /**
+     * Reads the header of the file and maps its rows, keeping the index of the next row.
+     */
+    protected void open() {
+        try (FileChannel channel = FileChannel.open(this.binaryFileOption.getFile().toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer preamble = read(channel, 0, BinaryInstanceFormat.WIDTHS_OFFSET);
+            int numAttributes = preamble.getInt(BinaryInstanceFormat.WIDTHS_OFFSET - 4);
+            if (numAttributes < 0 || BinaryInstanceFormat.WIDTHS_OFFSET + numAttributes > channel.size()) {
+                throw new IOException("Not a binary stream file.");
+            }
+            preamble = read(channel, 0, BinaryInstanceFormat.WIDTHS_OFFSET + numAttributes);
+            this.format = BinaryInstanceFormat.readPreamble(preamble);
+            this.numInstances = BinaryInstanceFormat.readNumInstances(preamble);
+            long headerOffset = BinaryInstanceFormat.readHeaderOffset(preamble);
+            if (headerOffset <= 0) {
+                throw new IOException("The binary stream file was not written completely.");
+            }
+            this.header = BinaryInstanceFormat.deserializeHeader(
+                    read(channel, headerOffset, (int) (channel.size() - headerOffset)).array());
+
+            int rowSize = this.format.getRowSize();
+            this.rowsPerSegment = Integer.MAX_VALUE / rowSize;
+            int numSegments = (int) ((this.numInstances + this.rowsPerSegment - 1) / this.rowsPerSegment);
+            this.segments = new MappedByteBuffer[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                long firstRow = (long) i * this.rowsPerSegment;
+                long numRows = Math.min(this.rowsPerSegment, this.numInstances - firstRow);
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        this.format.getDataOffset() + firstRow * rowSize, numRows * rowSize);
+                this.segments[i].order(BinaryInstanceFormat.BYTE_ORDER);
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("BinaryFileStream failed to open " + this.binaryFileOption.getFile(), ioe);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(BinaryInstanceFormat.BYTE_ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The binary stream file is truncated.");
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numInstances - this.nextRow;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.nextRow < this.numInstances;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        if (this.segments == null) {
+            // mappings are not serialized, a copy of the stream maps the file again where it left off
+            open();
+        }
+        int segment = (int) (this.nextRow / this.rowsPerSegment);
+        int offset = (int) (this.nextRow - (long) segment * this.rowsPerSegment) * this.format.getRowSize();
+        this.nextRow++;
+        return new InstanceExample(this.format.readRow(this.segments[segment], offset, this.header));
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        this.nextRow = 0;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+
+    @Override
+    public ImmutableCapabilities defineImmutableCapabilities() {
+        if (this.getClass() == BinaryFileStream.class)
+            return new ImmutableCapabilities(Capability.VIEW_STANDARD, Capability.VIEW_LITE);
+        else
+            return new ImmutableCapabilities(Capability.VIEW_STANDARD);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ *    BinaryInstanceFormat.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary stream files written by {@link moa.tasks.WriteStreamToBinaryFile} and read by
+ * {@link BinaryFileStream}.
+ *
+ * A file starts with a preamble: the magic number, the format version, the number of instances, the offset of the
+ * header, the number of attributes and the width of each attribute value in bytes. The rows follow, all of the
+ * same size: the weight, a bitmap of the missing values, and the values. Numeric values are doubles, nominal values
+ * are the index of their label in the header, in 1, 2 or 4 bytes depending on the number of labels. The header,
+ * which holds the labels, is serialized after the rows, so labels added while the stream is written are kept.
+ * Everything is little-endian.
+ */
+public class BinaryInstanceFormat {
+
+    public static final int MAGIC = 0x42414F4D; // "MOAB"
+
+    public static final int VERSION = 1;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    public static final int NUM_INSTANCES_OFFSET = 8;
+
+    protected static final int HEADER_OFFSET_OFFSET = 16;
+
+    public static final int WIDTHS_OFFSET = 28;
+
+    protected final int[] widths;
+
+    protected final int bitmapSize;
+
+    protected final int rowSize;
+
+    // offset of each value from the start of its row
+    protected final int[] valueOffsets;
+
+    protected BinaryInstanceFormat(int[] widths) {
+        this.widths = widths;
+        this.bitmapSize = (widths.length + 7) / 8;
+        this.valueOffsets = new int[widths.length];
+        int rowSize = 8 + this.bitmapSize;
+        for (int i = 0; i < widths.length; i++) {
+            this.valueOffsets[i] = rowSize;
+            rowSize += widths[i];
+        }
+        this.rowSize = rowSize;
+    }
+
+    /**
+     * The layout of the rows of a stream: numeric values take 8 bytes, nominal ones the fewest bytes that hold the
+     * indices of the labels in the header.
+     */
+    public static BinaryInstanceFormat of(InstancesHeader header) {
+        int[] widths = new int[header.numAttributes()];
+        for (int i = 0; i < widths.length; i++) {
+            if (header.attribute(i).isNominal()) {
+                int numLabels = header.attribute(i).numValues();
+                widths[i] = numLabels <= 1 << 8 ? 1 : numLabels <= 1 << 16 ? 2 : 4;
+            } else {
+                widths[i] = 8;
+            }
+        }
+        return new BinaryInstanceFormat(widths);
+    }
+
+    public int getRowSize() {
+        return this.rowSize;
+    }
+
+    public int numAttributes() {
+        return this.widths.length;
+    }
+
+    /**
+     * Offset of the first row.
+     */
+    public int getDataOffset() {
+        // rows start on 8 bytes
+        return (WIDTHS_OFFSET + this.widths.length + 7) & ~7;
+    }
+
+    /**
+     * Writes the preamble, with the number of instances and the offset of the header to be filled in by
+     * the {@link #trailer}.
+     */
+    public void writePreamble(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(0);
+        buffer.putLong(0);
+        buffer.putInt(this.widths.length);
+        for (int width : this.widths) {
+            buffer.put((byte) width);
+        }
+        while (buffer.position() - start < getDataOffset()) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Reads the layout from a preamble.
+     *
+     * @throws IOException if the buffer does not start with a preamble of this version
+     */
+    public static BinaryInstanceFormat readPreamble(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < WIDTHS_OFFSET || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary stream file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported binary stream file version " + buffer.getInt(4) + ".");
+        }
+        int[] widths = new int[buffer.getInt(WIDTHS_OFFSET - 4)];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = buffer.get(WIDTHS_OFFSET + i);
+        }
+        return new BinaryInstanceFormat(widths);
+    }
+
+    public static long readNumInstances(ByteBuffer preamble) {
+        return preamble.getLong(NUM_INSTANCES_OFFSET);
+    }
+
+    public static long readHeaderOffset(ByteBuffer preamble) {
+        return preamble.getLong(HEADER_OFFSET_OFFSET);
+    }
+
+    /**
+     * The number of instances and the offset of the header, in the order they are found from
+     * {@link #NUM_INSTANCES_OFFSET} on.
+     */
+    public static ByteBuffer trailer(long numInstances, long headerOffset) {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(BYTE_ORDER);
+        buffer.putLong(numInstances);
+        buffer.putLong(headerOffset);
+        buffer.flip();
+        return buffer;
+    }
+
+    public static byte[] serializeHeader(InstancesHeader header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(header);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static InstancesHeader deserializeHeader(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (InstancesHeader) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Could not read the header.", e);
+        }
+    }
+
+    /**
+     * Appends the row of an instance at the position of the buffer. Sparse instances are written dense.
+     */
+    public void writeRow(ByteBuffer buffer, Instance instance) {
+        int start = buffer.position();
+        buffer.putDouble(instance.weight());
+        for (int i = 0; i < this.bitmapSize; i++) {
+            buffer.put((byte) 0);
+        }
+        for (int i = 0; i < this.widths.length; i++) {
+            double value = instance.value(i);
+            if (Double.isNaN(value)) {
+                int bitmapIndex = start + 8 + (i >>> 3);
+                buffer.put(bitmapIndex, (byte) (buffer.get(bitmapIndex) | (1 << (i & 7))));
+                value = 0;
+            }
+            switch (this.widths[i]) {
+                case 1:
+                    checkLabelIndex(instance, i, value, 0xFF);
+                    buffer.put((byte) value);
+                    break;
+                case 2:
+                    checkLabelIndex(instance, i, value, 0xFFFF);
+                    buffer.putShort((short) value);
+                    break;
+                case 4:
+                    buffer.putInt((int) value);
+                    break;
+                default:
+                    buffer.putDouble(value);
+                    break;
+            }
+        }
+    }
+
+    private static void checkLabelIndex(Instance instance, int attributeIndex, double value, int maxIndex) {
+        if (value > maxIndex) {
+            throw new IllegalStateException("Attribute " + instance.attribute(attributeIndex).name()
+                    + " has more labels than when the stream started, they no longer fit in its column.");
+        }
+    }
+
+    /**
+     * Reads the weight of the row starting at an offset of the buffer, leaving its position as is.
+     */
+    public double readWeight(ByteBuffer buffer, int offset) {
+        return buffer.getDouble(offset);
+    }
+
+    /**
+     * Reads one value of the row starting at an offset of the buffer, leaving its position as is.
+     *
+     * @return the value, NaN if missing
+     */
+    public double readValue(ByteBuffer buffer, int offset, int attributeIndex) {
+        if ((buffer.get(offset + 8 + (attributeIndex >>> 3)) & (1 << (attributeIndex & 7))) != 0) {
+            return Double.NaN;
+        }
+        int valueOffset = offset + this.valueOffsets[attributeIndex];
+        switch (this.widths[attributeIndex]) {
+            case 1:
+                return buffer.get(valueOffset) & 0xFF;
+            case 2:
+                return buffer.getShort(valueOffset) & 0xFFFF;
+            case 4:
+                return buffer.getInt(valueOffset);
+            default:
+                return buffer.getDouble(valueOffset);
+        }
+    }
+
+    /**
+     * Materializes the row starting at an offset of the buffer, leaving its position as is.
+     */
+    public Instance readRow(ByteBuffer buffer, int offset, InstancesHeader header) {
+        double[] values = new double[this.widths.length];
+        int bitmapOffset = offset + 8;
+        int valueOffset = bitmapOffset + this.bitmapSize;
+        for (int i = 0; i < values.length; i++) {
+            switch (this.widths[i]) {
+                case 1:
+                    values[i] = buffer.get(valueOffset) & 0xFF;
+                    break;
+                case 2:
+                    values[i] = buffer.getShort(valueOffset) & 0xFFFF;
+                    break;
+                case 4:
+                    values[i] = buffer.getInt(valueOffset);
+                    break;
+                default:
+                    values[i] = buffer.getDouble(valueOffset);
+                    break;
+            }
+            valueOffset += this.widths[i];
+        }
+        for (int i = 0; i < this.bitmapSize; i++) {
+            int missing = buffer.get(bitmapOffset + i) & 0xFF;
+            while (missing != 0) {
+                int bit = Integer.numberOfTrailingZeros(missing);
+                values[(i << 3) + bit] = Double.NaN;
+                missing &= missing - 1;
+            }
+        }
+        Instance instance = new DenseInstance(buffer.getDouble(offset), values);
+        instance.setDataset(header);
+        return instance;
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ *    PrefetchingStream.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import moa.core.Example;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.options.ClassOption;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream that reads the examples of another stream ahead on its own thread, so that reading or generating them
+ * overlaps with learning from them.
+ *
+ * The examples are passed through a bounded single-producer single-consumer ring buffer without locks. The
+ * producer thread parks while the buffer is full and the consumer parks while it is empty, each being unparked by
+ * the other once there is room or an example. The wrapped stream is only used by the producer thread once
+ * prefetching has started, and must return a new example on every call. The producer ends when the stream is
+ * restarted, or once the prefetching stream is no longer referenced.
+ */
+public class PrefetchingStream extends AbstractOptionHandler implements
+        ExampleStream {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read ahead on another thread.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    // waits are spins first, then parks until the other thread signals
+    protected static final int NUM_SPINS = 100;
+
+    // longest park, after which a parked producer checks whether it is still used
+    protected static final long MAX_PARK_NANOS = 100000000L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to read ahead.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption depthOption = new IntOption("depth", 'd',
+            "The number of examples read ahead, rounded up to a power of two.", 1024, 1, 1 << 24);
+
+    protected ExampleStream stream;
+
+    protected InstancesHeader header;
+
+    protected transient Prefetcher prefetcher;
+
+    /**
+     * The ring buffer and the producer reading the wrapped stream into it. The producer only holds a weak
+     * reference to the prefetching stream, so that it notices when the stream is abandoned.
+     */
+    protected static class Prefetcher implements Runnable {
+
+        final ExampleStream stream;
+
+        final WeakReference<PrefetchingStream> owner;
+
+        final Example[] buffer;
+
+        // number of examples put in the buffer by the producer
+        final AtomicLong writeIndex = new AtomicLong();
+
+        // number of examples taken from the buffer by the consumer
+        final AtomicLong readIndex = new AtomicLong();
+
+        // estimated remaining instances of the wrapped stream, read by the producer after each example, -1 until
+        // the producer has read it
+        volatile long remainingInstances = -1;
+
+        volatile boolean endOfStream;
+
+        volatile Throwable producerError;
+
+        volatile boolean stopped;
+
+        volatile boolean isProducerParked;
+
+        volatile boolean isConsumerParked;
+
+        final Thread producer;
+
+        volatile Thread consumer;
+
+        Prefetcher(PrefetchingStream owner, int depth) {
+            this.stream = owner.stream;
+            this.owner = new WeakReference<PrefetchingStream>(owner);
+            this.buffer = new Example[Integer.highestOneBit(depth * 2 - 1)];
+            this.producer = new Thread(this, "PrefetchingStream");
+            this.producer.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Example[] buffer = this.buffer;
+            int mask = buffer.length - 1;
+            try {
+                long write = this.writeIndex.get();
+                this.remainingInstances = this.stream.estimatedRemainingInstances();
+                while (!this.stopped && this.stream.hasMoreInstances()) {
+                    Example example = this.stream.nextInstance();
+                    // back-pressure: wait for the consumer to free a slot
+                    for (int i = 0; write - this.readIndex.get() == buffer.length; i++) {
+                        if (this.stopped || this.owner.get() == null) {
+                            return;
+                        }
+                        if (i < NUM_SPINS) {
+                            Thread.yield();
+                        } else {
+                            this.isProducerParked = true;
+                            if (write - this.readIndex.get() == buffer.length) {
+                                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                            }
+                            this.isProducerParked = false;
+                        }
+                    }
+                    buffer[(int) write & mask] = example;
+                    write++;
+                    // publishes the example to the consumer
+                    this.writeIndex.set(write);
+                    this.remainingInstances = this.stream.estimatedRemainingInstances();
+                    if (this.isConsumerParked) {
+                        LockSupport.unpark(this.consumer);
+                    }
+                }
+            } catch (Throwable t) {
+                this.producerError = t;
+            } finally {
+                this.endOfStream = true;
+                Thread consumer = this.consumer;
+                if (consumer != null) {
+                    LockSupport.unpark(consumer);
+                }
+            }
+        }
+
+        /**
+         * Waits until there is an example to read.
+         *
+         * @return false if the stream has ended
+         */
+        boolean awaitExample() {
+            long read = this.readIndex.get();
+            for (int i = 0; read == this.writeIndex.get(); i++) {
+                if (this.endOfStream) {
+                    // the producer may have published its last example before ending
+                    if (read != this.writeIndex.get()) {
+                        break;
+                    }
+                    if (this.producerError != null) {
+                        throw new RuntimeException("PrefetchingStream failed to read the wrapped stream.",
+                                this.producerError);
+                    }
+                    return false;
+                }
+                if (i < NUM_SPINS) {
+                    Thread.yield();
+                } else {
+                    this.consumer = Thread.currentThread();
+                    this.isConsumerParked = true;
+                    if (read == this.writeIndex.get() && !this.endOfStream) {
+                        LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    }
+                    this.isConsumerParked = false;
+                }
+            }
+            return true;
+        }
+
+        Example take() {
+            long read = this.readIndex.get();
+            int slot = (int) read & (this.buffer.length - 1);
+            Example example = this.buffer[slot];
+            this.buffer[slot] = null;
+            // frees the slot for the producer
+            this.readIndex.set(read + 1);
+            if (this.isProducerParked) {
+                LockSupport.unpark(this.producer);
+            }
+            return example;
+        }
+
+        long estimatedRemainingInstances() {
+            // the count of the producer, so only an estimate
+            long remaining = this.remainingInstances;
+            return remaining < 0 ? -1 : remaining + this.writeIndex.get() - this.readIndex.get();
+        }
+
+        void stop() {
+            this.stopped = true;
+            LockSupport.unpark(this.producer);
+            try {
+                this.producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while stopping the prefetching thread.", e);
+            }
+        }
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        stopProducer();
+        this.stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        this.header = this.stream.getHeader();
+    }
+
+    /**
+     * Starts the producer thread on the first use, so that streams which are prepared but never read do not start
+     * a thread.
+     */
+    protected Prefetcher ensureStarted() {
+        if (this.prefetcher == null) {
+            this.prefetcher = new Prefetcher(this, this.depthOption.getValue());
+            this.prefetcher.producer.start();
+        }
+        return this.prefetcher;
+    }
+
+    /**
+     * Stops the producer thread, after which the wrapped stream can be used again from this thread.
+     */
+    protected void stopProducer() {
+        if (this.prefetcher != null) {
+            this.prefetcher.stop();
+            this.prefetcher = null;
+        }
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return ensureStarted().awaitExample();
+    }
+
+    @Override
+    public Example nextInstance() {
+        if (!hasMoreInstances()) {
+            return null;
+        }
+        return this.prefetcher.take();
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return ensureStarted().estimatedRemainingInstances();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return this.stream.isRestartable();
+    }
+
+    @Override
+    public void restart() {
+        stopProducer();
+        this.stream.restart();
+        this.header = this.stream.getHeader();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        // TODO Auto-generated method stub
+    }
+}
@@ -197,7 +197,16 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 			
 			////Testing
 			long testStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
-			if(!firstChunk)
+			if(!firstChunk && learner instanceof Classifier)
+			{
+				// classifiers can predict the chunk as a whole
+				double[][] predictions = new double[chunkInstances.numInstances()][];
+				((Classifier) learner).getVotesForInstances(chunkInstances, predictions);
+				for (int i=0; i< chunkInstances.numInstances(); i++) {
+					evaluator.addResult(new InstanceExample(chunkInstances.instance(i)), predictions[i]);
+				}
+			}
+			else if(!firstChunk)
 			{
 				for (int i=0; i< chunkInstances.numInstances(); i++) {
 					Example testInst = new InstanceExample((Instance) chunkInstances.instance(i));
@@ -216,10 +225,16 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 			////Training
 			long trainStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
 			
-			for (int i=0; i< chunkInstances.numInstances(); i++) {
-				learner.trainOnInstance(new InstanceExample(chunkInstances.instance(i)));
-				instancesProcessed++;
-		    }
+			if (learner instanceof Classifier) {
+				((Classifier) learner).trainOnInstances(chunkInstances);
+				instancesProcessed += chunkInstances.numInstances();
+			}
+			else {
+				for (int i=0; i< chunkInstances.numInstances(); i++) {
+					learner.trainOnInstance(new InstanceExample(chunkInstances.instance(i)));
+					instancesProcessed++;
+				}
+			}
 			
 			sampleTrainTime += TimingUtils.getNanoCPUTimeOfCurrentThread() - trainStartTime;
 			
@@ -0,0 +1,190 @@
+/*
+ *    MeasureConstructionComplexity.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.transfer.PhantomGrowthEvent;
+import moa.classifiers.transfer.PhantomTree;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.streams.ExampleStream;
+
+/**
+ * Task for measuring the construction complexity of a stream over time: the depths of the phantom branches a
+ * PhantomTree grows on successive windows of the stream.
+ *
+ * The stream is read once. The windows are tumbling when the window step is the window size, sliding when it is
+ * smaller. Each window is measured on its own copy of the phantom tree by a pool of threads while the stream is
+ * read further, and one csv row per window is written in stream order. A final window smaller than the window
+ * size is not measured.
+ */
+public class MeasureConstructionComplexity extends ClassificationMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures the construction complexity of a stream over tumbling or sliding windows.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to measure.", ExampleStream.class,
+            "generators.RandomTreeGenerator");
+
+    public ClassOption phantomTreeOption = new ClassOption("phantomTree", 't',
+            "Phantom Tree for measuring construction complexity.", PhantomTree.class,
+            "moa.classifiers.transfer.PhantomTree");
+
+    public IntOption windowSizeOption = new IntOption("windowSize", 'w',
+            "Number of instances in each window.", 1000, 1, Integer.MAX_VALUE);
+
+    public IntOption windowStepOption = new IntOption("windowStep", 'p',
+            "Number of instances between the starts of two windows (0 = window size, i.e. tumbling windows).",
+            0, 0, Integer.MAX_VALUE);
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Maximum number of instances to read (-1 = no limit).",
+            100000, -1, Integer.MAX_VALUE);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of windows measured concurrently (-1 = as much as possible).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
+            "File to write the csv results of the windows to.", null, "csv", true);
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+
+    /**
+     * The phantom branches grown on a window.
+     */
+    protected static class WindowComplexity {
+
+        protected long windowStart;
+
+        protected long windowEnd;
+
+        protected PhantomGrowthEvent growth;
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        File dumpFile = this.dumpFileOption.getFile();
+        if (dumpFile == null) {
+            throw new IllegalArgumentException("No destination file to write to.");
+        }
+        ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
+        PhantomTree emptyPhantomTree = (PhantomTree) getPreparedClassOption(this.phantomTreeOption);
+        int windowSize = this.windowSizeOption.getValue();
+        int windowStep = this.windowStepOption.getValue() == 0 ? windowSize : this.windowStepOption.getValue();
+        int maxInstances = this.instanceLimitOption.getValue();
+        int numberOfJobs = this.numberOfJobsOption.getValue() == -1
+                ? Runtime.getRuntime().availableProcessors() : Math.max(1, this.numberOfJobsOption.getValue());
+
+        ExecutorService pool = Executors.newFixedThreadPool(numberOfJobs);
+        // windows being measured, oldest first; bounded so that reading does not run far ahead of the measuring
+        ArrayDeque<Future<WindowComplexity>> pending = new ArrayDeque<>();
+        ArrayDeque<Instance> window = new ArrayDeque<>(windowSize);
+        long instancesRead = 0;
+        int numWindows = 0;
+        monitor.setCurrentActivity("Measuring construction complexity...", -1.0);
+        try (Writer w = new BufferedWriter(new FileWriter(dumpFile))) {
+            w.write("window start,window end,depth avg,depth min,depth max,depth interval,"
+                    + "phantom branches,growth time (seconds)\n");
+            while (stream.hasMoreInstances() && ((maxInstances < 0) || (instancesRead < maxInstances))) {
+                if (window.size() == windowSize) {
+                    window.removeFirst();
+                }
+                window.addLast((Instance) stream.nextInstance().getData());
+                instancesRead++;
+
+                if (window.size() == windowSize && (instancesRead - windowSize) % windowStep == 0) {
+                    final ArrayList<Instance> instances = new ArrayList<>(window);
+                    final PhantomTree phantomTree = (PhantomTree) emptyPhantomTree.copy();
+                    final long windowEnd = instancesRead;
+                    pending.addLast(pool.submit(() -> measure(phantomTree, instances, windowEnd)));
+                    numWindows++;
+                    while (pending.size() > 2 * numberOfJobs) {
+                        writeWindow(w, pending.removeFirst().get());
+                    }
+                }
+                if (instancesRead % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                    if (monitor.taskShouldAbort()) {
+                        return null;
+                    }
+                    long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                    if (maxInstances > 0) {
+                        long maxRemaining = maxInstances - instancesRead;
+                        if ((estimatedRemainingInstances < 0)
+                                || (maxRemaining < estimatedRemainingInstances)) {
+                            estimatedRemainingInstances = maxRemaining;
+                        }
+                    }
+                    monitor.setCurrentActivityFractionComplete(estimatedRemainingInstances < 0 ? -1.0
+                            : (double) instancesRead / (double) (instancesRead + estimatedRemainingInstances));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeWindow(w, pending.removeFirst().get());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed writing to file " + dumpFile, ex);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not measure the construction complexity.", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        return "Construction complexity of " + numWindows + " windows written to csv file " + dumpFile;
+    }
+
+    protected static WindowComplexity measure(PhantomTree phantomTree, ArrayList<Instance> instances,
+                                              long windowEnd) {
+        final WindowComplexity complexity = new WindowComplexity();
+        complexity.windowStart = windowEnd - instances.size();
+        complexity.windowEnd = windowEnd;
+        phantomTree.addPhantomTreeListener(e -> complexity.growth = e);
+        phantomTree.getConstructionComplexity(instances);
+        return complexity;
+    }
+
+    protected static void writeWindow(Writer w, WindowComplexity complexity) throws IOException {
+        PhantomGrowthEvent growth = complexity.growth;
+        w.write(complexity.windowStart + "," + complexity.windowEnd + ","
+                + growth.getAvgDepth() + "," + growth.getMinDepth() + "," + growth.getMaxDepth() + ","
+                + (growth.getDepthInterval() < 0 ? "?" : Double.toString(growth.getDepthInterval())) + ","
+                + growth.getNumBranches() + "," + growth.getTime() / 1e9 + "\n");
+    }
+}
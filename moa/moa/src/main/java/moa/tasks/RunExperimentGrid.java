@@ -0,0 +1,418 @@
+/*
+ *    RunExperimentGrid.java
+ *    Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.ListOption;
+import com.github.javacliparser.Option;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.ColumnarInstances;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.classifiers.Classifier;
+import moa.classifiers.MultiClassClassifier;
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.TimingUtils;
+import moa.evaluation.LearningEvaluation;
+import moa.evaluation.LearningPerformanceEvaluator;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.CachedInstancesStream;
+import moa.streams.InstanceStream;
+
+/**
+ * Task for evaluating every combination of streams, learners and learner parameter values in a single JVM.
+ *
+ * Each stream is read once into memory, and all the cells of the grid then replay the same cached instances, so
+ * the streams are neither parsed again nor regenerated per cell. The cells are evaluated prequentially on a
+ * bounded work stealing pool, and their learning curves are written to a single csv file: one row per sample,
+ * preceded by the stream, the learner and the parameter values of its cell. The cached instances are shared
+ * between the cells, so each cell learns from its own copies of them: learners may modify the instances they
+ * are given.
+ *
+ * The parameter grid lists the varied parameters separated by semicolons, each as an option path followed by
+ * its comma separated values. A path names the options by command line character or by name, with nested class
+ * options separated by dots. For instance, "t.k=5,10,30;o=500,1000" varies the number of phantom branches of the
+ * PhantomTree of a TransferFramework and its performance window. A learner that has no option at a path is
+ * not varied along it.
+ */
+public class RunExperimentGrid extends ClassificationMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Evaluates every combination of streams, learners and parameter values prequentially in a single JVM.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ListOption streamsOption = new ListOption("streams", 's',
+            "Streams to learn from, each cached in memory once.",
+            new ClassOption("stream", ' ', "", InstanceStream.class, "generators.RandomTreeGenerator"),
+            new Option[]{
+                    new ClassOption("", ' ', "", InstanceStream.class, "generators.RandomTreeGenerator")
+            }, ',');
+
+    public ListOption learnersOption = new ListOption("learners", 'l',
+            "Learners to evaluate.",
+            new ClassOption("learner", ' ', "", MultiClassClassifier.class, "trees.HoeffdingTree"),
+            new Option[]{
+                    new ClassOption("", ' ', "", MultiClassClassifier.class, "trees.HoeffdingTree")
+            }, ',');
+
+    public StringOption parameterGridOption = new StringOption("parameterGrid", 'p',
+            "Learner parameters to vary, as path=value,value;path=value,... (e.g. randomSeed=1,2,3;t.k=5,10).", "");
+
+    public ClassOption evaluatorOption = new ClassOption("evaluator", 'e',
+            "Classification performance evaluation method.",
+            LearningPerformanceEvaluator.class,
+            "WindowClassificationPerformanceEvaluator");
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Maximum number of instances of each stream to test/train on  (-1 = no limit).",
+            100000000, -1, Integer.MAX_VALUE);
+
+    public IntOption sampleFrequencyOption = new IntOption("sampleFrequency",
+            'f',
+            "How many instances between samples of the learning performance.",
+            100000, 0, Integer.MAX_VALUE);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Number of cells evaluated concurrently (-1 = as much as possible).",
+            -1, -1, Integer.MAX_VALUE);
+
+    public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
+            "File to write the csv results of all the cells to.", null, "csv", true);
+
+    public FlagOption floatCacheOption = new FlagOption("floatCache", 'c',
+            "Cache numeric values as floats, halving their memory at the cost of precision.");
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+
+    /**
+     * A learner configuration of the grid evaluated on a cached stream.
+     */
+    protected static class Cell {
+
+        protected int streamIndex;
+
+        protected String learnerCLIString;
+
+        // value of each varied parameter, null where the learner has no such parameter
+        protected String[] parameterValues;
+
+        protected List<Measurement[]> samples = new ArrayList<>();
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        File dumpFile = this.dumpFileOption.getFile();
+        if (dumpFile == null) {
+            throw new IllegalArgumentException("No destination file to write to.");
+        }
+        int numberOfJobs = this.numberOfJobsOption.getValue() == -1
+                ? Runtime.getRuntime().availableProcessors() : this.numberOfJobsOption.getValue();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, numberOfJobs));
+        try {
+            final Option[] streamOptions = this.streamsOption.getList();
+            List<Callable<Instances>> caching = new ArrayList<>();
+            for (final Option streamOption : streamOptions) {
+                caching.add(() -> cacheStream((ClassOption) streamOption, monitor, repository));
+            }
+            monitor.setCurrentActivity("Caching streams...", -1.0);
+            List<Instances> caches = getAll(pool.invokeAll(caching));
+
+            String[] parameterPaths = parseParameterPaths(this.parameterGridOption.getValue());
+            String[][] parameterValues = parseParameterValues(this.parameterGridOption.getValue());
+            List<Cell> cells = new ArrayList<>();
+            for (int streamIndex = 0; streamIndex < caches.size(); streamIndex++) {
+                for (Option learnerOption : this.learnersOption.getList()) {
+                    cells.addAll(expandGrid(streamIndex,
+                            ((ClassOption) learnerOption).getValueAsCLIString(), parameterPaths, parameterValues));
+                }
+            }
+
+            final LearningPerformanceEvaluator<Example<Instance>> evaluator =
+                    newEvaluator(getPreparedClassOption(this.evaluatorOption));
+            List<Future<Cell>> results = new ArrayList<>();
+            for (final Cell cell : cells) {
+                results.add(pool.submit(() -> evaluateCell(cell, caches.get(cell.streamIndex),
+                        newEvaluator(evaluator.copy()), monitor)));
+            }
+            monitor.setCurrentActivity("Evaluating " + cells.size() + " cells...", 0.0);
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i).get();
+                monitor.setCurrentActivityFractionComplete((double) (i + 1) / results.size());
+                if (monitor.taskShouldAbort()) {
+                    return null;
+                }
+            }
+
+            writeResults(dumpFile, streamOptions, parameterPaths, cells);
+            return cells.size() + " cells of the experiment grid written to csv file " + dumpFile;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not evaluate the experiment grid.", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static LearningPerformanceEvaluator<Example<Instance>> newEvaluator(Object evaluator) {
+        return (LearningPerformanceEvaluator<Example<Instance>>) evaluator;
+    }
+
+    protected Instances cacheStream(ClassOption streamOption, TaskMonitor monitor, ObjectRepository repository) {
+        Object streamObject = streamOption.materializeObject(monitor, repository);
+        if (streamObject instanceof OptionHandler) {
+            // the configured stream is left untouched
+            streamObject = ((OptionHandler) streamObject).copy();
+            ((OptionHandler) streamObject).prepareForUse(monitor, repository);
+        }
+        InstanceStream stream = (InstanceStream) streamObject;
+        // one array per attribute rather than one object per instance
+        Instances cache = new ColumnarInstances(stream.getHeader(), 0, this.floatCacheOption.isSet());
+        int maxInstances = this.instanceLimitOption.getValue();
+        while (stream.hasMoreInstances() && ((maxInstances < 0) || (cache.numInstances() < maxInstances))) {
+            cache.add(stream.nextInstance().getData());
+        }
+        return cache;
+    }
+
+    /**
+     * The cells of a learner on a stream: one per combination of the values of the parameters the learner has.
+     */
+    protected List<Cell> expandGrid(int streamIndex, String learnerCLIString,
+                                    String[] parameterPaths, String[][] parameterValues) {
+        OptionHandler learner = createLearner(learnerCLIString);
+        boolean[] isVaried = new boolean[parameterPaths.length];
+        for (int i = 0; i < parameterPaths.length; i++) {
+            isVaried[i] = getOption(learner, parameterPaths[i]) != null;
+        }
+
+        List<Cell> cells = new ArrayList<>();
+        int[] valueIndices = new int[parameterPaths.length];
+        while (true) {
+            OptionHandler cellLearner = createLearner(learnerCLIString);
+            Cell cell = new Cell();
+            cell.streamIndex = streamIndex;
+            cell.parameterValues = new String[parameterPaths.length];
+            for (int i = 0; i < parameterPaths.length; i++) {
+                if (isVaried[i]) {
+                    cell.parameterValues[i] = parameterValues[i][valueIndices[i]];
+                    getOption(cellLearner, parameterPaths[i]).setValueViaCLIString(cell.parameterValues[i]);
+                }
+            }
+            cell.learnerCLIString = ClassOption.objectToCLIString(cellLearner, Classifier.class);
+            cells.add(cell);
+
+            // next combination, the last parameter varying fastest
+            int i = parameterPaths.length - 1;
+            while (i >= 0 && (!isVaried[i] || valueIndices[i] == parameterValues[i].length - 1)) {
+                valueIndices[i] = 0;
+                i--;
+            }
+            if (i < 0) {
+                return cells;
+            }
+            valueIndices[i]++;
+        }
+    }
+
+    protected Cell evaluateCell(Cell cell, Instances cache, LearningPerformanceEvaluator<Example<Instance>> evaluator,
+                                TaskMonitor monitor) {
+        Classifier learner = (Classifier) createLearner(cell.learnerCLIString);
+        learner.prepareForUse();
+        CachedInstancesStream stream = new CachedInstancesStream(cache);
+        learner.setModelContext(stream.getHeader());
+
+        boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
+        long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        long lastEvaluateStartTime = evaluateStartTime;
+        double RAMHours = 0.0;
+        long instancesProcessed = 0;
+        while (stream.hasMoreInstances()) {
+            // the cached instances, or the row views of a columnar cache, are shared with the other cells
+            InstanceExample trainInst = new InstanceExample(stream.nextInstance().getData().copy());
+            evaluator.addResult(trainInst, learner.getVotesForInstance(trainInst.getData()));
+            learner.trainOnInstance(trainInst.getData());
+            instancesProcessed++;
+            if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
+                    || stream.hasMoreInstances() == false) {
+                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
+                double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
+                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
+                RAMHours += RAMHoursIncrement;
+                lastEvaluateStartTime = evaluateTime;
+                cell.samples.add(new LearningEvaluation(
+                        new Measurement[]{
+                            new Measurement("learning evaluation instances", instancesProcessed),
+                            new Measurement("evaluation time (" + (preciseCPUTiming ? "cpu " : "") + "seconds)", time),
+                            new Measurement("model cost (RAM-Hours)", RAMHours)
+                        },
+                        evaluator, learner).getMeasurements());
+            }
+            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0 && monitor.taskShouldAbort()) {
+                break;
+            }
+        }
+        return cell;
+    }
+
+    protected void writeResults(File dumpFile, Option[] streamOptions, String[] parameterPaths, List<Cell> cells) {
+        // the learners of the grid may report different measurements: one column per measurement name
+        List<String> measurementNames = new ArrayList<>();
+        for (Cell cell : cells) {
+            for (Measurement[] sample : cell.samples) {
+                for (Measurement measurement : sample) {
+                    if (!measurementNames.contains(measurement.getName())) {
+                        measurementNames.add(measurement.getName());
+                    }
+                }
+            }
+        }
+
+        try (Writer w = new BufferedWriter(new FileWriter(dumpFile))) {
+            StringBuilder sb = new StringBuilder("stream,learner");
+            for (String path : parameterPaths) {
+                sb.append(',').append(csvField(path));
+            }
+            for (String name : measurementNames) {
+                sb.append(',').append(csvField(name));
+            }
+            w.write(sb.toString());
+            w.write("\n");
+
+            for (Cell cell : cells) {
+                String cellFields = csvField(((ClassOption) streamOptions[cell.streamIndex]).getValueAsCLIString())
+                        + "," + csvField(cell.learnerCLIString);
+                for (String value : cell.parameterValues) {
+                    cellFields += "," + (value == null ? "" : csvField(value));
+                }
+                for (Measurement[] sample : cell.samples) {
+                    sb = new StringBuilder(cellFields);
+                    for (String name : measurementNames) {
+                        Measurement measurement = Measurement.getMeasurementNamed(name, sample);
+                        sb.append(',');
+                        if ((measurement == null) || Double.isNaN(measurement.getValue())) {
+                            sb.append('?');
+                        } else {
+                            sb.append(Double.toString(measurement.getValue()));
+                        }
+                    }
+                    w.write(sb.toString());
+                    w.write("\n");
+                }
+            }
+        } catch (Exception ex) {
+            throw new RuntimeException("Failed writing to file " + dumpFile, ex);
+        }
+    }
+
+    protected static OptionHandler createLearner(String cliString) {
+        try {
+            return (OptionHandler) ClassOption.cliStringToObject(cliString, MultiClassClassifier.class, null);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Problems with learner: " + cliString, e);
+        }
+    }
+
+    /**
+     * The option at a path of option characters or names through nested class options, or null if there is none.
+     */
+    protected static Option getOption(OptionHandler handler, String path) {
+        String[] names = path.split("\\.");
+        for (int i = 0; ; i++) {
+            Option option = names[i].length() == 1
+                    ? handler.getOptions().getOption(names[i].charAt(0))
+                    : handler.getOptions().getOption(names[i]);
+            if (option == null || i == names.length - 1) {
+                return option;
+            }
+            if (!(option instanceof ClassOption)
+                    || !(((ClassOption) option).getPreMaterializedObject() instanceof OptionHandler)) {
+                return null;
+            }
+            handler = (OptionHandler) ((ClassOption) option).getPreMaterializedObject();
+        }
+    }
+
+    protected static String[] parseParameterPaths(String grid) {
+        List<String> paths = new ArrayList<>();
+        for (String parameter : grid.split(";")) {
+            if (parameter.trim().length() > 0) {
+                int equalsIndex = parameter.indexOf('=');
+                if (equalsIndex <= 0) {
+                    throw new IllegalArgumentException("Parameter without values in grid: " + parameter);
+                }
+                paths.add(parameter.substring(0, equalsIndex).trim());
+            }
+        }
+        return paths.toArray(new String[paths.size()]);
+    }
+
+    protected static String[][] parseParameterValues(String grid) {
+        List<String[]> values = new ArrayList<>();
+        for (String parameter : grid.split(";")) {
+            if (parameter.trim().length() > 0) {
+                String[] parameterValues = parameter.substring(parameter.indexOf('=') + 1).split(",");
+                for (int i = 0; i < parameterValues.length; i++) {
+                    parameterValues[i] = parameterValues[i].trim();
+                }
+                values.add(parameterValues);
+            }
+        }
+        return values.toArray(new String[values.size()][]);
+    }
+
+    protected static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures) throws InterruptedException, ExecutionException {
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *    WriteStreamToBinaryFile.java
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.streams.BinaryInstanceFormat;
+import moa.streams.InstanceStream;
+
+/**
+ * Task to output a stream to a binary stream file, to be read by {@link moa.streams.BinaryFileStream}.
+ *
+ * @see BinaryInstanceFormat
+ */
+public class WriteStreamToBinaryFile extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Outputs a stream to a binary stream file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int BUFFER_SIZE = 1 << 20;
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to write.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Destination binary stream file.", null, "moab", true);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to write to file.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        File destFile = this.binaryFileOption.getFile();
+        if (destFile != null) {
+            try (FileChannel channel = FileChannel.open(destFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                monitor.setCurrentActivityDescription("Writing stream to binary file");
+                InstancesHeader header = stream.getHeader();
+                BinaryInstanceFormat format = BinaryInstanceFormat.of(header);
+                ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE,
+                        Math.max(format.getDataOffset(), format.getRowSize())))
+                        .order(BinaryInstanceFormat.BYTE_ORDER);
+                format.writePreamble(buffer);
+                long numWritten = 0;
+                while ((numWritten < this.maxInstancesOption.getValue())
+                        && stream.hasMoreInstances()) {
+                    if (buffer.remaining() < format.getRowSize()) {
+                        flush(channel, buffer);
+                    }
+                    format.writeRow(buffer, stream.nextInstance().getData());
+                    numWritten++;
+                }
+                flush(channel, buffer);
+                // the header is written last, with the labels added while the stream was written
+                long headerOffset = channel.position();
+                ByteBuffer headerBytes = ByteBuffer.wrap(BinaryInstanceFormat.serializeHeader(stream.getHeader()));
+                while (headerBytes.hasRemaining()) {
+                    channel.write(headerBytes);
+                }
+                ByteBuffer trailer = BinaryInstanceFormat.trailer(numWritten, headerOffset);
+                while (trailer.hasRemaining()) {
+                    channel.write(trailer, BinaryInstanceFormat.NUM_INSTANCES_OFFSET + trailer.position());
+                }
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Failed writing to file " + destFile, ex);
+            }
+            return "Stream written to binary file " + destFile;
+        }
+        throw new IllegalArgumentException("No destination file to write to.");
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return String.class;
+    }
+}
@@ -0,0 +1,117 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test instances seen through an AugmentedInstance
+ */
+public class AugmentedInstanceTest {
+	private static double EPS=0.00000001;
+	private InstancesHeader header;
+	private Instance instance;
+
+	@Before
+	public void setUp() {
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("F1"));
+		attributes.add(new Attribute("N1", Arrays.asList("a", "b", "c")));
+		attributes.add(new Attribute("class", Arrays.asList("x", "y")));
+		Instances instances = new Instances("test", attributes, 0);
+		instances.setClassIndex(2);
+		header = new InstancesHeader(instances);
+		instance = new DenseInstance(2.0, new double[]{1.5, 2, 1});
+		instance.setDataset(header);
+	}
+
+	@Test
+	public void testPrependedAttribute() {
+		AugmentedInstancesHeader augmentedHeader = new AugmentedInstancesHeader(header,
+				Collections.singletonList(new Attribute("baseClass", Arrays.asList("x", "y"))),
+				Collections.<Attribute>emptyList(), null);
+		AugmentedInstance view = new AugmentedInstance(augmentedHeader, instance);
+		view.setValue(0, 0);
+
+		assertEquals(4, view.numAttributes());
+		assertEquals(3, view.numInputAttributes());
+		assertEquals(3, view.classIndex());
+		assertEquals(2, view.numClasses());
+		assertEquals(0, view.value(0), EPS);
+		assertEquals(1.5, view.value(1), EPS);
+		assertEquals(2, view.value(2), EPS);
+		assertEquals(1, view.classValue(), EPS);
+		assertEquals(2.0, view.weight(), EPS);
+		assertEquals("baseClass", view.attribute(0).name());
+		assertEquals("N1", view.inputAttribute(2).name());
+	}
+
+	@Test
+	public void testReplacedClassAndAppendedAttribute() {
+		AugmentedInstancesHeader augmentedHeader = new AugmentedInstancesHeader(header,
+				Collections.singletonList(new Attribute("baseClass", Arrays.asList("x", "y"))),
+				Collections.singletonList(new Attribute("extra")),
+				new Attribute("errorRegion", Arrays.asList("0", "1")));
+		AugmentedInstance view = new AugmentedInstance(augmentedHeader, instance);
+		view.setValue(0, instance.classValue());
+		view.setClassValue(0);
+		view.setValue(4, 7.5);
+
+		assertEquals(5, view.numAttributes());
+		assertEquals(3, view.classIndex());
+		assertEquals("errorRegion", view.classAttribute().name());
+		assertEquals(0, view.classValue(), EPS);
+		assertEquals(1, view.valueInputAttribute(0), EPS);
+		assertEquals(2, view.valueInputAttribute(2), EPS);
+		assertEquals(7.5, view.valueInputAttribute(3), EPS);
+		// the viewed instance is left untouched
+		assertEquals(1, instance.classValue(), EPS);
+		assertArrayEquals(new double[]{1.5, 2, 1}, instance.toDoubleArray(), EPS);
+	}
+
+	@Test
+	public void testSetInstance() {
+		AugmentedInstancesHeader augmentedHeader = new AugmentedInstancesHeader(header,
+				Collections.<Attribute>emptyList(),
+				Collections.singletonList(new Attribute("extra")), null);
+		AugmentedInstance view = new AugmentedInstance(augmentedHeader, instance);
+		view.setValue(3, -1);
+
+		Instance other = new DenseInstance(1.0, new double[]{-3, 0, 0});
+		other.setDataset(header);
+		view.setInstance(other);
+		assertEquals(-3, view.value(0), EPS);
+		assertEquals(0, view.classValue(), EPS);
+		assertEquals(-1, view.value(3), EPS);
+	}
+
+	@Test
+	public void testCopy() {
+		AugmentedInstancesHeader augmentedHeader = new AugmentedInstancesHeader(header,
+				Collections.singletonList(new Attribute("baseClass", Arrays.asList("x", "y"))),
+				Collections.<Attribute>emptyList(), null);
+		AugmentedInstance view = new AugmentedInstance(augmentedHeader, instance);
+		view.setValue(0, 1);
+
+		Instance copy = view.copy();
+		view.setValue(0, 0);
+		assertArrayEquals(new double[]{1, 1.5, 2, 1}, copy.toDoubleArray(), EPS);
+		assertEquals(1, copy.classValue(), EPS);
+		assertEquals(2.0, copy.weight(), EPS);
+		assertSame(augmentedHeader, copy.dataset());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testViewedValuesAreReadOnly() {
+		AugmentedInstancesHeader augmentedHeader = new AugmentedInstancesHeader(header,
+				Collections.singletonList(new Attribute("baseClass", Arrays.asList("x", "y"))),
+				Collections.<Attribute>emptyList(), null);
+		new AugmentedInstance(augmentedHeader, instance).setValue(1, 0);
+	}
+}
@@ -0,0 +1,141 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import moa.streams.ArffFileStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that instances parsed on bytes are the instances read by ArffLoader.
+ */
+public class ByteArffLoaderTest {
+
+	private static File resourceFile(String name) {
+		return new File(ClassLoader.getSystemResource(name).getPath());
+	}
+
+	private static File writeTmpFile(String contents) throws IOException {
+		File file = File.createTempFile("ByteArffLoaderTest", ".arff");
+		file.deleteOnExit();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(contents);
+		}
+		return file;
+	}
+
+	private static void assertSameInstances(File file, int classAttribute) throws IOException {
+		ArffLoader expected = new ArffLoader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8),
+				0, classAttribute);
+		int numInstances = 0;
+		try (ByteArffLoader actual = new ByteArffLoader(FileChannel.open(file.toPath(), StandardOpenOption.READ),
+				classAttribute)) {
+			assertEquals(expected.getStructure().numAttributes(), actual.getStructure().numAttributes());
+			assertEquals(expected.getStructure().classIndex(), actual.getStructure().classIndex());
+			Instance expectedInstance;
+			while ((expectedInstance = expected.readInstance()) != null) {
+				Instance actualInstance = actual.readInstance();
+				assertNotNull("instance " + numInstances, actualInstance);
+				assertEquals(expectedInstance.getClass(), actualInstance.getClass());
+				assertEquals(expectedInstance.numValues(), actualInstance.numValues());
+				for (int i = 0; i < expectedInstance.numValues(); i++) {
+					assertEquals(expectedInstance.index(i), actualInstance.index(i));
+					assertEquals("instance " + numInstances + " value " + i,
+							expectedInstance.valueSparse(i), actualInstance.valueSparse(i), 0.0);
+				}
+				numInstances++;
+			}
+			assertNull(actual.readInstance());
+			assertEquals(1.0, actual.getProgressFraction(), 0.0);
+			for (int i = 0; i < expected.getStructure().numAttributes(); i++) {
+				assertEquals(expected.getStructure().attribute(i).numValues(),
+						actual.getStructure().attribute(i).numValues());
+			}
+		}
+		assertTrue(numInstances > 0);
+	}
+
+	@Test
+	public void testDenseFiles() throws IOException {
+		assertSameInstances(resourceFile("moa/classifiers/data/small_classification.arff"), -1);
+		assertSameInstances(resourceFile("moa/classifiers/data/small_regression.arff"), 2);
+		assertSameInstances(resourceFile("moa/classifiers/data/regression.arff"), -1);
+	}
+
+	@Test
+	public void testTokens() throws IOException {
+		assertSameInstances(writeTmpFile("% comment\n"
+				+ "@relation 'quoted relation'\n"
+				+ "@attribute x numeric\n"
+				+ "@attribute 'y y' real\n"
+				+ "@attribute label {a, 'b c', \"d\", 1.0}\n"
+				+ "@DATA\n"
+				+ "% comment in the data\n"
+				+ "\n"
+				+ "1.5, -2e3, a\n"
+				+ "  0.1,1E-5,'b c' % trailing comment\r\n"
+				+ "?,-0,\"d\"\n"
+				+ "123456789012345678901234567890, .25, 1.0\n"
+				+ "0.30000000000000004,4.9e-324,?\n"
+				+ "1e308,NaN,unseen\n"
+				+ "7,8,unseen\n"
+				+ "9,10,'e\\'f'"), -1);
+	}
+
+	@Test
+	public void testSparseRows() throws IOException {
+		assertSameInstances(writeTmpFile("@relation sparse\n"
+				+ "@attribute a numeric\n"
+				+ "@attribute b numeric\n"
+				+ "@attribute c {x, y}\n"
+				+ "@attribute d numeric\n"
+				+ "@data\n"
+				+ "{0 1.5, 2 y}\n"
+				+ "{1 -3,3 4e2}\n"
+				+ "{}\n"
+				+ "{2 x, 3 5}"), -1);
+	}
+
+	@Test
+	public void testParseDouble() {
+		String[] numbers = {"0", "-0", "+1", "1.", ".5", "3.14159", "-2.5E-3", "1e22", "1e23", "9007199254740993",
+				"123456789012345", "0.1", "1.7976931348623157E308", "2.2250738585072014E-308", "00012.50"};
+		for (String number : numbers) {
+			byte[] bytes = ("," + number + ",").getBytes(StandardCharsets.US_ASCII);
+			assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+					Double.doubleToLongBits(ByteArffLoader.parseDouble(bytes, 1, bytes.length - 1)));
+		}
+	}
+
+	@Test
+	public void testArffFileStream() {
+		String fileName = resourceFile("moa/classifiers/data/small_classification.arff").getPath();
+		ArffFileStream expected = new ArffFileStream(fileName, -1);
+		ArffFileStream actual = new ArffFileStream();
+		actual.arffFileOption.setValue(fileName);
+		actual.byteParserOption.setValue(true);
+		actual.prepareForUse();
+		assertEquals(expected.getHeader().classIndex(), actual.getHeader().classIndex());
+		for (int pass = 0; pass < 2; pass++) {
+			while (expected.hasMoreInstances()) {
+				assertTrue(actual.hasMoreInstances());
+				assertArrayEquals(expected.nextInstance().getData().toDoubleArray(),
+						actual.nextInstance().getData().toDoubleArray(), 0.0);
+			}
+			assertFalse(actual.hasMoreInstances());
+			expected.restart();
+			actual.restart();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.yahoo.labs.samoa.instances;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that columnar instances hold the values of the instances added to them.
+ */
+public class ColumnarInstancesTest {
+
+	private static Instances generate(int numInstances) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNumericsOption.setValue(5);
+		stream.numNominalsOption.setValue(5);
+		stream.prepareForUse();
+		Instances instances = new Instances(stream.getHeader(), numInstances);
+		Random random = new Random(1);
+		for (int i = 0; i < numInstances; i++) {
+			Instance instance = stream.nextInstance().getData();
+			if (i % 7 == 0) {
+				instance.setMissing(random.nextInt(instance.numAttributes()));
+			}
+			if (i % 5 == 0) {
+				instance.setWeight(random.nextDouble());
+			}
+			instances.add(instance);
+		}
+		return instances;
+	}
+
+	private static void assertSameInstances(Instances expected, Instances actual, double delta) {
+		assertEquals(expected.numInstances(), actual.numInstances());
+		assertEquals(expected.classIndex(), actual.classIndex());
+		for (int i = 0; i < expected.numInstances(); i++) {
+			Instance expectedInstance = expected.instance(i);
+			Instance actualInstance = actual.instance(i);
+			assertEquals(expectedInstance.weight(), actualInstance.weight(), 0.0);
+			for (int j = 0; j < expectedInstance.numAttributes(); j++) {
+				assertEquals(expectedInstance.isMissing(j), actualInstance.isMissing(j));
+				assertEquals("instance " + i + " value " + j,
+						expectedInstance.value(j), actualInstance.value(j), delta);
+			}
+			assertEquals(expectedInstance.classValue(), actualInstance.classValue(), 0.0);
+			assertEquals(expectedInstance.numClasses(), actualInstance.numClasses());
+		}
+	}
+
+	@Test
+	public void testAdd() {
+		Instances expected = generate(1000);
+		ColumnarInstances actual = new ColumnarInstances(expected, 0);
+		for (int i = 0; i < expected.numInstances(); i++) {
+			actual.add(expected.instance(i));
+		}
+		assertSameInstances(expected, actual, 0.0);
+
+		Instance copy = actual.instance(3).copy();
+		assertArrayEquals(expected.instance(3).toDoubleArray(), copy.toDoubleArray(), 0.0);
+		actual.instance(3).setValue(0, -1.0);
+		actual.instance(3).setWeight(2.0);
+		assertEquals(-1.0, actual.value(3, 0), 0.0);
+		assertEquals(2.0, actual.weight(3), 0.0);
+		assertEquals(expected.instance(3).value(0), copy.value(0), 0.0);
+	}
+
+	@Test
+	public void testFloatNumerics() {
+		Instances expected = generate(500);
+		ColumnarInstances actual = new ColumnarInstances(expected, 0, true);
+		for (int i = 0; i < expected.numInstances(); i++) {
+			actual.add(expected.instance(i));
+		}
+		assertSameInstances(expected, actual, 1e-6);
+	}
+
+	@Test
+	public void testLabelsAddedToColumn() {
+		List<String> labels = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			labels.add("v" + i);
+		}
+		List<Attribute> attributes = Arrays.asList(new Attribute("x", labels), new Attribute("y"));
+		Instances expected = new Instances("labels", attributes, 0);
+		expected.setClassIndex(1);
+		ColumnarInstances actual = new ColumnarInstances(expected, 0);
+		for (int i = 0; i < 400; i++) {
+			Instance instance = new DenseInstance(1.0, new double[] {i, i * 0.5});
+			instance.setDataset(expected);
+			expected.add(instance);
+			// the column of x no longer fits a byte from 128 on
+			actual.add(instance);
+		}
+		Instance missing = new DenseInstance(1.0, new double[] {Double.NaN, 0.25});
+		missing.setDataset(expected);
+		expected.set(2, missing);
+		actual.set(2, missing);
+		assertSameInstances(expected, actual, 0.0);
+	}
+
+	@Test
+	public void testReorder() {
+		Instances expected = generate(300);
+		ColumnarInstances actual = new ColumnarInstances(expected, 0);
+		for (int i = 0; i < expected.numInstances(); i++) {
+			actual.add(expected.instance(i));
+		}
+		expected.randomize(new Random(7));
+		actual.randomize(new Random(7));
+		assertSameInstances(expected, actual, 0.0);
+
+		expected.delete(10);
+		actual.delete(10);
+		expected.delete(expected.numInstances() - 1);
+		actual.delete(actual.numInstances() - 1);
+		assertSameInstances(expected, actual, 0.0);
+
+		expected.stratify(4);
+		actual.stratify(4);
+		assertSameInstances(expected, actual, 0.0);
+
+		actual.delete();
+		assertEquals(0, actual.numInstances());
+		actual.add(expected.instance(0));
+		assertArrayEquals(expected.instance(0).toDoubleArray(), actual.instance(0).toDoubleArray(), 0.0);
+		assertEquals(expected.instance(0).weight(), actual.instance(0).weight(), 0.0);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * BatchLearningTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.ColumnarInstances;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that learning and predicting batches of instances gives the votes of learning and predicting each instance
+ * in turn.
+ */
+public class BatchLearningTest {
+
+	private static final int BATCH_SIZE = 250;
+
+	private static Classifier newClassifier(String cliString, RandomTreeGenerator stream) throws Exception {
+		Classifier classifier = (Classifier) ClassOption.cliStringToObject(cliString, Classifier.class, null);
+		classifier.prepareForUse();
+		classifier.setModelContext(stream.getHeader());
+		classifier.resetLearning();
+		return classifier;
+	}
+
+	/**
+	 * Tests then trains one classifier on batches and another on each instance, and checks that they vote alike.
+	 */
+	private static void assertBatchesLearntLikeInstances(String cliString, boolean isColumnar) throws Exception {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNumericsOption.setValue(5);
+		stream.numNominalsOption.setValue(5);
+		stream.prepareForUse();
+		Classifier batchLearner = newClassifier(cliString, stream);
+		Classifier instanceLearner = newClassifier(cliString, stream);
+		Random random = new Random(1);
+
+		for (int numBatches = 0; numBatches < 40; numBatches++) {
+			Instances batch = isColumnar ? new ColumnarInstances(stream.getHeader(), BATCH_SIZE)
+					: new Instances(stream.getHeader(), BATCH_SIZE);
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				Instance inst = stream.nextInstance().getData();
+				if (random.nextInt(20) == 0) {
+					inst.setMissing(random.nextInt(inst.numAttributes() - 1));
+				}
+				if (random.nextInt(20) == 0) {
+					inst.setWeight(random.nextInt(3));
+				}
+				batch.add(inst);
+			}
+
+			double[][] votes = new double[BATCH_SIZE][];
+			batchLearner.getVotesForInstances(batch, votes);
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				assertArrayEquals(cliString + " batch " + numBatches + " instance " + i,
+						instanceLearner.getVotesForInstance(batch.instance(i)), votes[i], 0.0);
+			}
+
+			batchLearner.trainOnInstances(batch);
+			for (int i = 0; i < BATCH_SIZE; i++) {
+				instanceLearner.trainOnInstance(batch.instance(i));
+			}
+		}
+	}
+
+	@Test
+	public void testHoeffdingTree() throws Exception {
+		assertBatchesLearntLikeInstances("trees.HoeffdingTree -g 50", false);
+		assertBatchesLearntLikeInstances("trees.HoeffdingTree -g 50 -b -l NB", true);
+	}
+
+	@Test
+	public void testNaiveBayes() throws Exception {
+		assertBatchesLearntLikeInstances("bayes.NaiveBayes", false);
+		assertBatchesLearntLikeInstances("bayes.NaiveBayes", true);
+	}
+
+	@Test
+	public void testSGD() throws Exception {
+		assertBatchesLearntLikeInstances("functions.SGD -o 1", false);
+	}
+
+	@Test
+	public void testOzaBag() throws Exception {
+		assertBatchesLearntLikeInstances("meta.OzaBag -s 5 -l (trees.HoeffdingTree -g 50)", false);
+		assertBatchesLearntLikeInstances("meta.OzaBag -s 5 -j 2 -l (trees.HoeffdingTree -g 50)", true);
+	}
+
+	@Test
+	public void testAdaptiveRandomForest() throws Exception {
+		assertBatchesLearntLikeInstances("meta.AdaptiveRandomForest -s 5 -j 2", false);
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ClassifierCopyTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.AbstractMOAObject;
+import moa.classifiers.core.driftdetection.ADWIN;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.core.Measurement;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that the copies made without serialization behave like the copies made by serialization.
+ */
+public class ClassifierCopyTest {
+
+	private static RandomTreeGenerator newStream() {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNumericsOption.setValue(5);
+		stream.numNominalsOption.setValue(5);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static Classifier trainedClassifier(String cliString, RandomTreeGenerator stream, int numInstances) throws Exception {
+		Classifier classifier = (Classifier) ClassOption.cliStringToObject(cliString, Classifier.class, null);
+		classifier.prepareForUse();
+		classifier.setModelContext(stream.getHeader());
+		classifier.resetLearning();
+		for (int i = 0; i < numInstances; i++) {
+			classifier.trainOnInstance(stream.nextInstance().getData());
+		}
+		return classifier;
+	}
+
+	/**
+	 * Trains the classifier, its copy and its serialized copy further, and checks that they keep voting alike.
+	 */
+	private static void assertCopyBehavesLikeSerializedCopy(String cliString) throws Exception {
+		RandomTreeGenerator stream = newStream();
+		Classifier original = trainedClassifier(cliString, stream, 5000);
+		Classifier copy = original.copy();
+		Classifier serializedCopy = (Classifier) AbstractMOAObject.copy(original);
+		assertNotSame(original, copy);
+		assertEquals(original.getClass(), copy.getClass());
+
+		// the copy learns on its own: the original and the serialized copy do not see these instances
+		RandomTreeGenerator otherStream = newStream();
+		otherStream.instanceRandomSeedOption.setValue(7);
+		otherStream.prepareForUse();
+		Classifier independentCopy = original.copy();
+		for (int i = 0; i < 1000; i++) {
+			independentCopy.trainOnInstance(otherStream.nextInstance().getData());
+		}
+
+		for (int i = 0; i < 2000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			double[] expected = serializedCopy.getVotesForInstance(inst);
+			assertArrayEquals(cliString, expected, original.getVotesForInstance(inst), 0.0);
+			assertArrayEquals(cliString, expected, copy.getVotesForInstance(inst), 0.0);
+			serializedCopy.trainOnInstance(inst);
+			original.trainOnInstance(inst);
+			copy.trainOnInstance(inst);
+		}
+	}
+
+	@Test
+	public void testHoeffdingTree() throws Exception {
+		assertCopyBehavesLikeSerializedCopy("trees.HoeffdingTree");
+		assertCopyBehavesLikeSerializedCopy("trees.HoeffdingTree -l MC -b");
+	}
+
+	@Test
+	public void testHoeffdingTreeSubclassFallsBackToSerialization() throws Exception {
+		assertCopyBehavesLikeSerializedCopy("trees.HoeffdingAdaptiveTree");
+	}
+
+	private static double measurement(Classifier classifier, String name) {
+		for (Measurement measurement : classifier.getModelMeasurements()) {
+			if (measurement.getName().equals(name)) {
+				return measurement.getValue();
+			}
+		}
+		throw new IllegalArgumentException("No measurement " + name);
+	}
+
+	@Test
+	public void testPhantomTreeWindowCopy() throws Exception {
+		// the sliding window phantom structure refers to the leaves of the tree
+		String cliString = "transfer.PhantomTree -S -o 300 -k 5 -g 100000";
+		RandomTreeGenerator stream = newStream();
+		Classifier original = trainedClassifier(cliString, stream, 1000);
+		Classifier copy = original.copy();
+		Classifier serializedCopy = (Classifier) AbstractMOAObject.copy(original);
+		for (int i = 0; i < 3000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			serializedCopy.trainOnInstance(inst);
+			original.trainOnInstance(inst);
+			copy.trainOnInstance(inst);
+		}
+		for (String name : new String[]{"regrown phantom branches", "phantom branch depth avg"}) {
+			double expected = measurement(serializedCopy, name);
+			assertEquals(name, expected, measurement(original, name), 0.0);
+			assertEquals(name, expected, measurement(copy, name), 0.0);
+		}
+		assertTrue(measurement(copy, "regrown phantom branches") > 0);
+	}
+
+	/**
+	 * Trains the classifier and its snapshot on different instances, and checks that both vote like serialized
+	 * copies trained on the same instances.
+	 */
+	private static void assertSnapshotBehavesLikeSerializedCopy(String cliString) throws Exception {
+		RandomTreeGenerator stream = newStream();
+		HoeffdingTree original = (HoeffdingTree) trainedClassifier(cliString, stream, 5000);
+		HoeffdingTree snapshot = original.snapshot();
+		Classifier serializedOriginal = (Classifier) AbstractMOAObject.copy(original);
+		Classifier serializedSnapshot = (Classifier) AbstractMOAObject.copy(original);
+		assertNotSame(original, snapshot);
+
+		RandomTreeGenerator otherStream = newStream();
+		otherStream.instanceRandomSeedOption.setValue(7);
+		otherStream.prepareForUse();
+		for (int i = 0; i < 5000; i++) {
+			Instance inst = stream.nextInstance().getData();
+			Instance otherInst = otherStream.nextInstance().getData();
+			assertArrayEquals(cliString, serializedOriginal.getVotesForInstance(inst),
+					original.getVotesForInstance(inst), 0.0);
+			assertArrayEquals(cliString, serializedSnapshot.getVotesForInstance(otherInst),
+					snapshot.getVotesForInstance(otherInst), 0.0);
+			serializedOriginal.trainOnInstance(inst);
+			original.trainOnInstance(inst);
+			serializedSnapshot.trainOnInstance(otherInst);
+			snapshot.trainOnInstance(otherInst);
+		}
+	}
+
+	@Test
+	public void testHoeffdingTreeSnapshot() throws Exception {
+		assertSnapshotBehavesLikeSerializedCopy("trees.HoeffdingTree");
+		assertSnapshotBehavesLikeSerializedCopy("trees.HoeffdingTree -l MC -g 50");
+		assertSnapshotBehavesLikeSerializedCopy("trees.HoeffdingTree -m 20000 -e 200");
+		assertSnapshotBehavesLikeSerializedCopy("trees.ARFHoeffdingTree -k 3");
+		assertSnapshotBehavesLikeSerializedCopy("trees.HoeffdingAdaptiveTree");
+	}
+
+	@Test
+	public void testOzaBag() throws Exception {
+		assertCopyBehavesLikeSerializedCopy("meta.OzaBag -s 5");
+		assertCopyBehavesLikeSerializedCopy("meta.OzaBagAdwin -s 5");
+	}
+
+	@Test
+	public void testAdaptiveRandomForest() throws Exception {
+		assertCopyBehavesLikeSerializedCopy("meta.AdaptiveRandomForest -s 5 -j 1");
+	}
+
+	@Test
+	public void testAdwin() {
+		Random random = new Random(1);
+		ADWIN adwin = new ADWIN();
+		for (int i = 0; i < 3000; i++) {
+			adwin.setInput(random.nextDouble() < (i < 1500 ? 0.2 : 0.6) ? 1 : 0);
+		}
+		ADWIN copy = (ADWIN) adwin.copy();
+		assertEquals(adwin.getWidth(), copy.getWidth());
+		for (int i = 0; i < 3000; i++) {
+			double value = random.nextDouble() < (i < 1000 ? 0.6 : 0.1) ? 1 : 0;
+			assertEquals(adwin.setInput(value), copy.setInput(value));
+			assertEquals(adwin.getEstimation(), copy.getEstimation(), 0.0);
+			assertEquals(adwin.getWidth(), copy.getWidth());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * SplitSuggestionRankerTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.core;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the top-k selection of the split suggestions against a full sort.
+ */
+public class SplitSuggestionRankerTest {
+
+	private static AttributeSplitSuggestion[] randomSuggestions(Random random, int numAttributes) {
+		AttributeSplitSuggestion[] suggestions = new AttributeSplitSuggestion[numAttributes];
+		for (int i = 0; i < numAttributes; i++) {
+			// few distinct merits, so that ties are frequent, and some attributes without a suggestion
+			suggestions[i] = random.nextInt(5) == 0 ? null
+					: new AttributeSplitSuggestion(null, new double[0][], random.nextInt(8));
+		}
+		return suggestions;
+	}
+
+	private static AttributeSplitSuggestion[] sortedTail(AttributeSplitSuggestion[] suggestions, int k) {
+		AttributeSplitSuggestion[] all = Arrays.stream(suggestions)
+				.filter(suggestion -> suggestion != null)
+				.toArray(AttributeSplitSuggestion[]::new);
+		Arrays.sort(all);
+		return Arrays.copyOfRange(all, Math.max(0, all.length - k), all.length);
+	}
+
+	@Test
+	public void testSameAsTailOfStableSort() {
+		Random random = new Random(1);
+		for (int trial = 0; trial < 200; trial++) {
+			AttributeSplitSuggestion[] suggestions = randomSuggestions(random, 1 + random.nextInt(40));
+			for (int k : new int[]{1, 2, 10, SplitSuggestionRanker.ALL}) {
+				AttributeSplitSuggestion[] expected = sortedTail(suggestions, k);
+				AttributeSplitSuggestion[] best = SplitSuggestionRanker.selectBest(suggestions, k);
+				assertEquals(expected.length, best.length);
+				for (int i = 0; i < best.length; i++) {
+					assertSame(expected[i], best[i]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFewerSuggestionsThanK() {
+		AttributeSplitSuggestion nullSplit = new AttributeSplitSuggestion(null, new double[0][], 0.5);
+		AttributeSplitSuggestion[] best = new SplitSuggestionRanker(1).getBestSplitSuggestions(
+				3, attIndex -> attIndex == 1 ? null : new AttributeSplitSuggestion(null, new double[0][], attIndex),
+				nullSplit, 10);
+		assertEquals(3, best.length);
+		assertEquals(0, best[0].merit, 0);
+		assertSame(nullSplit, best[1]);
+		assertEquals(2, best[2].merit, 0);
+	}
+
+	@Test
+	public void testParallelSameAsSequential() {
+		final AttributeSplitSuggestion[] suggestions = randomSuggestions(new Random(2), 500);
+		SplitSuggestionRanker.AttributeEvaluator evaluator = attIndex -> suggestions[attIndex];
+		AttributeSplitSuggestion[] sequential = new SplitSuggestionRanker(1).getBestSplitSuggestions(
+				suggestions.length, evaluator, null, 10);
+		AttributeSplitSuggestion[] parallel = new SplitSuggestionRanker(4).getBestSplitSuggestions(
+				suggestions.length, evaluator, null, 10);
+		assertArrayEquals(sequential, parallel);
+		assertArrayEquals(sortedTail(suggestions, 10), parallel);
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * ModelRepositoryTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the models of a repository are found again, in memory or in a directory, and that only models of
+ * streams with the same attributes are looked up.
+ */
+public class ModelRepositoryTest {
+
+	private File directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		this.directory = Files.createTempDirectory("ModelRepositoryTest").toFile();
+	}
+
+	@After
+	public void deleteDirectory() {
+		File[] files = this.directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		this.directory.delete();
+	}
+
+	private static RandomTreeGenerator newStream(int treeRandomSeed) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.treeRandomSeedOption.setValue(treeRandomSeed);
+		stream.numNominalsOption.setValue(3);
+		stream.numNumericsOption.setValue(2);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static Classifier trainedModel(RandomTreeGenerator stream) {
+		NaiveBayes model = new NaiveBayes();
+		model.prepareForUse();
+		model.setModelContext(stream.getHeader());
+		model.resetLearning();
+		for (int i = 0; i < 500; i++) {
+			model.trainOnInstance(stream.nextInstance().getData());
+		}
+		return model;
+	}
+
+	/**
+	 * Header of two numeric attributes and a class with the given labels.
+	 */
+	private static InstancesHeader header(String... classLabels) {
+		List<Attribute> attributes = new ArrayList<>();
+		attributes.add(new Attribute("x"));
+		attributes.add(new Attribute("y"));
+		attributes.add(new Attribute("class", Arrays.asList(classLabels)));
+		InstancesHeader header = new InstancesHeader(new Instances("header", attributes, 0));
+		header.setClassIndex(2);
+		return header;
+	}
+
+	private static void assertSameModels(Classifier expected, Classifier actual, RandomTreeGenerator stream) {
+		for (int i = 0; i < 100; i++) {
+			Instance inst = stream.nextInstance().getData();
+			assertArrayEquals(expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), 0.0);
+		}
+	}
+
+	@Test
+	public void testDirectoryRoundTrip() {
+		ModelRepository repository = new ModelRepository(this.directory, -1);
+		List<Classifier> models = new ArrayList<>();
+		for (int seed = 1; seed <= 3; seed++) {
+			RandomTreeGenerator stream = newStream(seed);
+			Classifier model = trainedModel(stream);
+			models.add(model);
+			repository.add(model, stream.getHeader(), new ModelFingerprint(new double[]{seed, 1}, seed));
+		}
+
+		// a later run finds the models stored by this one
+		ModelRepository reopened = new ModelRepository(this.directory, -1);
+		assertEquals(3, reopened.size());
+		for (int i = 0; i < 3; i++) {
+			assertArrayEquals(new double[]{i + 1, 1}, reopened.getFingerprint(i).getClassPriors(), 0.0);
+			assertEquals(i + 1, reopened.getFingerprint(i).getAvgDepth(), 0.0);
+			assertTrue(ModelRepository.isCompatible(newStream(1).getHeader(), reopened.getHeader(i)));
+			assertSameModels(models.get(i), reopened.get(i), newStream(i + 1));
+		}
+		RandomTreeGenerator stream = newStream(4);
+		reopened.add(trainedModel(stream), stream.getHeader(), new ModelFingerprint(new double[]{4, 1}, 4));
+		assertEquals(4, new ModelRepository(this.directory, -1).size());
+	}
+
+	@Test
+	public void testBoundedSize() {
+		ModelRepository inMemory = new ModelRepository(2);
+		ModelRepository inDirectory = new ModelRepository(this.directory, 2);
+		List<Classifier> models = new ArrayList<>();
+		for (int seed = 1; seed <= 3; seed++) {
+			RandomTreeGenerator stream = newStream(seed);
+			Classifier model = trainedModel(stream);
+			models.add(model);
+			ModelFingerprint fingerprint = new ModelFingerprint(new double[]{seed}, seed);
+			inMemory.add(model, stream.getHeader(), fingerprint);
+			inDirectory.add(model, stream.getHeader(), fingerprint);
+		}
+		for (ModelRepository repository : Arrays.asList(inMemory, inDirectory)) {
+			// the oldest model has been dropped
+			assertEquals(2, repository.size());
+			assertEquals(2, repository.getFingerprint(0).getAvgDepth(), 0.0);
+			assertSameModels(models.get(1), repository.get(0), newStream(2));
+			assertSameModels(models.get(2), repository.get(1), newStream(3));
+		}
+		// the index and the files of the models kept
+		assertEquals(3, this.directory.listFiles().length);
+
+		ModelRepository reopened = new ModelRepository(this.directory, 1);
+		assertEquals(1, reopened.size());
+		assertEquals(3, reopened.getFingerprint(0).getAvgDepth(), 0.0);
+		assertSameModels(models.get(2), reopened.get(0), newStream(3));
+		assertEquals(2, this.directory.listFiles().length);
+	}
+
+	@Test
+	public void testNearest() {
+		ModelRepository repository = new ModelRepository(-1);
+		ModelFingerprint fingerprint = new ModelFingerprint(new double[]{0.5, 0.5}, 3);
+		assertEquals(-1, repository.nearest(fingerprint, header("a", "b")));
+
+		Classifier model = new NaiveBayes();
+		repository.add(model, header("a", "b"), new ModelFingerprint(new double[]{0.9, 0.1}, 6));
+		repository.add(model, header("a", "b"), new ModelFingerprint(new double[]{0.6, 0.4}, 3));
+		repository.add(model, header("a", "b"), new ModelFingerprint(new double[]{0.1, 0.9}, 3));
+		// the fingerprint is matched exactly, but the models predict other labels
+		repository.add(model, header("b", "a"), fingerprint);
+		repository.add(model, header("a", "b", "c"), fingerprint);
+		repository.add(model, newStream(1).getHeader(), fingerprint);
+
+		assertEquals(1, repository.nearest(fingerprint, header("a", "b")));
+		assertEquals(3, repository.nearest(fingerprint, header("b", "a")));
+		assertEquals(4, repository.nearest(fingerprint, header("a", "b", "c")));
+		assertEquals(-1, repository.nearest(fingerprint, header("a", "c")));
+
+		// the latest among equally near models
+		repository.add(model, header("a", "b"), new ModelFingerprint(new double[]{0.6, 0.4}, 3));
+		assertEquals(6, repository.nearest(fingerprint, header("a", "b")));
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PhantomSplitCacheTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the bounds of the phantom split cache, and that phantom branches grown with it are those grown without.
+ */
+public class PhantomSplitCacheTest {
+
+	/**
+	 * A binary split of the rows into the even and the odd ones.
+	 */
+	private static PhantomSplitCache.Entry split(int[] rows) {
+		int[][] childRows = new int[2][rows.length / 2];
+		for (int i = 0; i < rows.length / 2 * 2; i++) {
+			childRows[i % 2][i / 2] = rows[i];
+		}
+		return new PhantomSplitCache.Entry(
+				new InstanceConditionalTest[]{new NominalAttributeBinaryTest(0, 0), new NominalAttributeBinaryTest(0, 1)},
+				new double[][]{{childRows[0].length, 0}, {0, childRows[1].length}},
+				childRows,
+				new double[]{1.0, 2.0});
+	}
+
+	private static int[] rows(int from, int to) {
+		int[] rows = new int[to - from];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = from + i;
+		}
+		return rows;
+	}
+
+	@Test
+	public void testHitsAndMisses() {
+		PhantomSplitCache cache = new PhantomSplitCache(1 << 20);
+		assertNull(cache.get(rows(0, 10)));
+		PhantomSplitCache.Entry entry = split(rows(0, 10));
+		cache.put(rows(0, 10), entry);
+		// the rows are looked up by value
+		assertSame(entry, cache.get(rows(0, 10)));
+		assertNull(cache.get(rows(0, 11)));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.size());
+		assertEquals(entry.calcByteSize(rows(0, 10)), cache.getByteSize());
+	}
+
+	@Test
+	public void testNoCaching() {
+		PhantomSplitCache cache = new PhantomSplitCache(0);
+		cache.put(rows(0, 10), split(rows(0, 10)));
+		assertNull(cache.get(rows(0, 10)));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getByteSize());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		long entryByteSize = split(rows(0, 10)).calcByteSize(rows(0, 10));
+		PhantomSplitCache cache = new PhantomSplitCache(2 * entryByteSize);
+		cache.put(rows(0, 10), split(rows(0, 10)));
+		cache.put(rows(10, 20), split(rows(10, 20)));
+		assertNotNull(cache.get(rows(0, 10)));
+		cache.put(rows(20, 30), split(rows(20, 30)));
+		assertEquals(2, cache.size());
+		assertEquals(2 * entryByteSize, cache.getByteSize());
+		assertNotNull(cache.get(rows(0, 10)));
+		assertNull(cache.get(rows(10, 20)));
+		assertNotNull(cache.get(rows(20, 30)));
+
+		// an entry larger than the cache is not kept, and does not evict the others
+		cache.put(rows(0, 100), split(rows(0, 100)));
+		assertEquals(2, cache.size());
+		assertNull(cache.get(rows(0, 100)));
+
+		// replacing an entry accounts for the size of the new entry only
+		PhantomSplitCache.Entry replacement = split(rows(20, 30));
+		cache.put(rows(20, 30), replacement);
+		assertEquals(2, cache.size());
+		assertEquals(2 * entryByteSize, cache.getByteSize());
+		assertSame(replacement, cache.get(rows(20, 30)));
+	}
+
+	@Test
+	public void testSameBranchesWithCache() throws Exception {
+		for (List<Instance> window : Arrays.asList(
+				PhantomTreeBitsetTest.mixedWindow(3000), PhantomTreeBitsetTest.binaryWindow(3000, 3))) {
+			ColumnarInstanceStore store = new ColumnarInstanceStore(window);
+			int[] rows = PhantomTreeBitsetTest.allRows(store);
+			PhantomTree expected = PhantomTreeBitsetTest.grow("-k 20", store, rows, new PhantomSplitCache(0));
+			PhantomSplitCache cache = new PhantomSplitCache(1 << 24);
+			PhantomTreeBitsetTest.assertSamePhantomBranches(expected,
+					PhantomTreeBitsetTest.grow("-k 20", store, rows, cache));
+			assertTrue(cache.size() > 0);
+
+			// the same rows again, every split found in the cache
+			long numMisses = cache.getMissCount();
+			PhantomTreeBitsetTest.assertSamePhantomBranches(expected,
+					PhantomTreeBitsetTest.grow("-k 20", store, rows, cache));
+			assertEquals(numMisses, cache.getMissCount());
+
+			// a cache too small for every split
+			PhantomTreeBitsetTest.assertSamePhantomBranches(expected,
+					PhantomTreeBitsetTest.grow("-k 20", store, rows, new PhantomSplitCache(1 << 14)));
+		}
+	}
+
+	@Test
+	public void testCacheSharedByRegions() throws Exception {
+		ColumnarInstanceStore store = new ColumnarInstanceStore(PhantomTreeBitsetTest.mixedWindow(3000));
+		int[] allRows = PhantomTreeBitsetTest.allRows(store);
+		PhantomSplitCache cache = new PhantomSplitCache(1 << 24);
+		// the Hoeffding tree does not split, so its leaf is the parent of the phantom roots on every row
+		PhantomTreeBitsetTest.grow("-k 20 -g 5000", store, allRows, cache);
+
+		// a region whose rows are those of a phantom node of the full store
+		int[] regionRows = cache.get(allRows).childRows[0];
+		long numHits = cache.getHitCount();
+		PhantomTree region = PhantomTreeBitsetTest.grow("-k 20 -g 5000", store, regionRows, cache);
+		assertTrue(cache.getHitCount() > numHits);
+		PhantomTreeBitsetTest.assertSamePhantomBranches(
+				PhantomTreeBitsetTest.grow("-k 20 -g 5000", store, regionRows, new PhantomSplitCache(0)), region);
+	}
+}
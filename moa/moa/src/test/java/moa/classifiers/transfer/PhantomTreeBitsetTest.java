@@ -0,0 +1,152 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PhantomTreeBitsetTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that the phantom branches grown on the bitset encoding of a binary nominal window are those grown on the
+ * generic columnar path.
+ */
+public class PhantomTreeBitsetTest {
+
+	static List<Instance> binaryWindow(int numInstances, int numClasses) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNominalsOption.setValue(12);
+		stream.numNumericsOption.setValue(0);
+		stream.numValsPerNominalOption.setValue(2);
+		stream.numClassesOption.setValue(numClasses);
+		return window(stream, numInstances);
+	}
+
+	/**
+	 * Window of ternary nominal and numeric attributes, which is never encoded in bitsets.
+	 */
+	static List<Instance> mixedWindow(int numInstances) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNominalsOption.setValue(6);
+		stream.numNumericsOption.setValue(6);
+		stream.numValsPerNominalOption.setValue(3);
+		stream.numClassesOption.setValue(3);
+		return window(stream, numInstances);
+	}
+
+	private static List<Instance> window(RandomTreeGenerator stream, int numInstances) {
+		stream.prepareForUse();
+		List<Instance> instances = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			instances.add(stream.nextInstance().getData());
+		}
+		return instances;
+	}
+
+	/**
+	 * Grows the phantom branches of a new phantom tree with the given options on rows of the store.
+	 */
+	static PhantomTree grow(String options, ColumnarInstanceStore store, int[] rows, PhantomSplitCache splitCache)
+			throws Exception {
+		PhantomTree tree = (PhantomTree) ClassOption.cliStringToObject(
+				"transfer.PhantomTree " + options, Classifier.class, null);
+		tree.prepareForUse();
+		tree.setModelContext(new InstancesHeader(store.instance(0).dataset()));
+		tree.resetLearning();
+		tree.getConstructionComplexity(store, rows, splitCache);
+		return tree;
+	}
+
+	static int[] allRows(ColumnarInstanceStore store) {
+		int[] rows = new int[store.numRows()];
+		for (int row = 0; row < rows.length; row++) {
+			rows[row] = row;
+		}
+		return rows;
+	}
+
+	private static void assertSameNodes(PhantomTree.PhantomNode expected, PhantomTree.PhantomNode actual) {
+		assertArrayEquals(expected.getRows(), actual.getRows());
+		assertArrayEquals(expected.getObservedClassDistribution(), actual.getObservedClassDistribution(), 0.0);
+		assertEquals(expected.foil_info_gain, actual.foil_info_gain, 0.0);
+		assertEquals(expected.isPhantomSplit, actual.isPhantomSplit);
+		assertEquals(expected.splitChildrenPairs.size(), actual.splitChildrenPairs.size());
+		for (int i = 0; i < expected.splitChildrenPairs.size(); i++) {
+			InstanceConditionalTest expectedTest = expected.splitTests.get(i);
+			InstanceConditionalTest actualTest = actual.splitTests.get(i);
+			assertEquals(expectedTest.getClass(), actualTest.getClass());
+			assertEquals(expectedTest.getAttributeIndex(), actualTest.getAttributeIndex());
+			assertEquals(expectedTest.getAttributeValue(), actualTest.getAttributeValue(), 0.0);
+			assertSameNodes(expected.splitChildrenPairs.get(i), actual.splitChildrenPairs.get(i));
+		}
+	}
+
+	private static void assertSameBranches(String options, int numClasses) throws Exception {
+		List<Instance> window = binaryWindow(3000, numClasses);
+		ColumnarInstanceStore bitsetStore = new ColumnarInstanceStore(window);
+		assertNotNull(bitsetStore.getBinaryAttributeBitsets());
+		ColumnarInstanceStore genericStore = new ColumnarInstanceStore(window) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public synchronized BinaryAttributeBitsets getBinaryAttributeBitsets() {
+				return null;
+			}
+		};
+
+		assertSamePhantomBranches(
+				grow(options, genericStore, allRows(genericStore), new PhantomSplitCache(0)),
+				grow(options, bitsetStore, allRows(bitsetStore), new PhantomSplitCache(0)));
+	}
+
+	/**
+	 * Checks that two phantom trees have grown the same branches, down to the rows and the FOIL gain of each node.
+	 */
+	static void assertSamePhantomBranches(PhantomTree expected, PhantomTree actual) {
+		assertTrue(expected.numGrownPhantomBranch > 0);
+		assertEquals(expected.phantomBranchPrefixes, actual.phantomBranchPrefixes);
+		assertEquals(expected.avgPhantomBranchDepth, actual.avgPhantomBranchDepth, 0.0);
+		assertEquals(expected.phantomRootParents.size(), actual.phantomRootParents.size());
+		for (int i = 0; i < expected.phantomRootParents.size(); i++) {
+			assertSameNodes(expected.phantomRootParents.get(i), actual.phantomRootParents.get(i));
+		}
+	}
+
+	@Test
+	public void testBinaryClass() throws Exception {
+		assertSameBranches("-k 20", 2);
+	}
+
+	@Test
+	public void testMultiClass() throws Exception {
+		assertSameBranches("-k 20", 4);
+		// the Hoeffding tree grows, so the branches start from several leaves
+		assertSameBranches("-k 20 -g 100", 4);
+	}
+}
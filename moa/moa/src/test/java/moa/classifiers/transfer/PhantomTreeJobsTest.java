@@ -0,0 +1,59 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PhantomTreeJobsTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that the phantom branches grown concurrently are those grown on a single thread, whatever the number of
+ * jobs.
+ */
+public class PhantomTreeJobsTest {
+
+	private static void assertSameBranchesForAllJobs(List<Instance> window, String options) throws Exception {
+		ColumnarInstanceStore store = new ColumnarInstanceStore(window);
+		int[] rows = PhantomTreeBitsetTest.allRows(store);
+		PhantomTree expected = PhantomTreeBitsetTest.grow(options + " -j 1", store, rows, new PhantomSplitCache(0));
+		for (int numberOfJobs : new int[]{0, 2, 3, 8, -1}) {
+			PhantomTreeBitsetTest.assertSamePhantomBranches(expected, PhantomTreeBitsetTest.grow(
+					options + " -j " + numberOfJobs, store, rows, new PhantomSplitCache(0)));
+			// the branches grown concurrently share the cache
+			PhantomTreeBitsetTest.assertSamePhantomBranches(expected, PhantomTreeBitsetTest.grow(
+					options + " -j " + numberOfJobs, store, rows, new PhantomSplitCache(1 << 24)));
+		}
+	}
+
+	@Test
+	public void testBinaryWindow() throws Exception {
+		assertSameBranchesForAllJobs(PhantomTreeBitsetTest.binaryWindow(3000, 3), "-k 20");
+	}
+
+	@Test
+	public void testMixedWindow() throws Exception {
+		List<Instance> window = PhantomTreeBitsetTest.mixedWindow(3000);
+		assertSameBranchesForAllJobs(window, "-k 20");
+		// the Hoeffding tree grows, so the branches start from several leaves
+		assertSameBranchesForAllJobs(window, "-k 20 -g 100");
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PhantomTreeSlidingWindowTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import moa.core.Measurement;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that the phantom structure maintained incrementally over a sliding window holds the counts it would
+ * have if every node were rebuilt from the rows of the window.
+ */
+public class PhantomTreeSlidingWindowTest {
+
+	private static final int WINDOW_SIZE = 300;
+
+	private static PhantomTree newPhantomTree(String options, InstancesHeader header) throws Exception {
+		// the tree does not grow, so the phantom structure is only ever maintained after the first growth
+		PhantomTree tree = (PhantomTree) ClassOption.cliStringToObject(
+				"transfer.PhantomTree -S -o " + WINDOW_SIZE + " -g 100000 " + options, Classifier.class, null);
+		tree.prepareForUse();
+		tree.setModelContext(header);
+		tree.resetLearning();
+		return tree;
+	}
+
+	/**
+	 * Checks the counts of the node against those of the given rows, then the children of its candidate splits
+	 * against the rows passing their tests.
+	 */
+	private static int assertRebuiltNode(PhantomTree tree, PhantomTree.PhantomNode node, int[] rows) {
+		ColumnarInstanceStore store = tree.columnarStore;
+		assertFalse(node.isDetached);
+		assertArrayEquals(rows, node.getRows());
+		assertEquals(rows.length, node.numRows);
+
+		double[] classDistribution = new double[0];
+		int[] classRowCounts = new int[0];
+		for (int row : rows) {
+			int classValue = store.classValue(row);
+			if (classValue >= classDistribution.length) {
+				classDistribution = Arrays.copyOf(classDistribution, classValue + 1);
+				classRowCounts = Arrays.copyOf(classRowCounts, classValue + 1);
+			}
+			classDistribution[classValue] += store.weight(row);
+			classRowCounts[classValue]++;
+		}
+		for (int classValue = 0; classValue < node.classRowCounts.length; classValue++) {
+			assertEquals(classValue < classRowCounts.length ? classRowCounts[classValue] : 0,
+					node.classRowCounts[classValue]);
+			assertEquals(classValue < classDistribution.length ? classDistribution[classValue] : 0,
+					node.observedClassDistribution.getValue(classValue), 0.0);
+		}
+
+		if (node.nominalCounts != null) {
+			for (int att = 0; att < store.numAttributes(); att++) {
+				if (!store.isNominal(att)) {
+					assertNull(node.nominalCounts[att]);
+					continue;
+				}
+				double[][] counts = new double[store.numValues(att)][classDistribution.length];
+				for (int row : rows) {
+					double value = store.value(att, row);
+					if (!Double.isNaN(value)) {
+						counts[(int) value][store.classValue(row)] += store.weight(row);
+					}
+				}
+				for (int attValue = 0; attValue < counts.length; attValue++) {
+					for (int classValue = 0; classValue < node.nominalCounts[att][attValue].length; classValue++) {
+						assertEquals(classValue < counts[attValue].length ? counts[attValue][classValue] : 0,
+								node.nominalCounts[att][attValue][classValue], 0.0);
+					}
+				}
+			}
+		}
+
+		int numNodes = 1;
+		if (!node.isPhantomSplit) {
+			return numNodes;
+		}
+		int branch = 0;
+		for (int i = 0; i < node.splitChildrenPairs.size(); i++) {
+			InstanceConditionalTest splitTest = node.splitTests.get(i);
+			branch = i > 0 && splitTest == node.splitTests.get(i - 1) ? branch + 1 : 0;
+			List<Integer> childRows = new ArrayList<>();
+			for (int row : rows) {
+				if (store.branchForRow(splitTest, row) == branch) {
+					childRows.add(row);
+				}
+			}
+			int[] expectedRows = new int[childRows.size()];
+			for (int j = 0; j < expectedRows.length; j++) {
+				expectedRows[j] = childRows.get(j);
+			}
+			numNodes += assertRebuiltNode(tree, node.splitChildrenPairs.get(i), expectedRows);
+		}
+		return numNodes;
+	}
+
+	private static void assertRebuiltStructure(PhantomTree tree) {
+		// the tree is a single leaf, so all the rows of the window are under the one phantom root parent
+		assertEquals(1, tree.phantomRootParents.size());
+		int[] windowRows = new int[tree.columnarStore.numRows()];
+		for (int row = 0; row < windowRows.length; row++) {
+			windowRows[row] = row;
+		}
+		assertRebuiltNode(tree, tree.phantomRootParents.get(0), windowRows);
+
+		// the branches go down the current phantom structure and are indexed by the nodes they go through
+		int numIndexedNodes = 0;
+		for (PhantomTree.PhantomBranchGrower branch : tree.phantomBranches) {
+			List<PhantomTree.PhantomNode> path = branch.path;
+			assertTrue(tree.phantomRoots.contains(path.get(0)));
+			for (int i = 0; i < path.size(); i++) {
+				assertTrue(tree.nodePhantomBranches.get(path.get(i)).contains(branch));
+				if (i > 0) {
+					assertTrue(path.get(i - 1).splitChildrenPairs.contains(path.get(i)));
+				}
+			}
+			numIndexedNodes += path.size();
+		}
+		for (List<PhantomTree.PhantomBranchGrower> branches : tree.nodePhantomBranches.values()) {
+			numIndexedNodes -= branches.size();
+		}
+		assertEquals(0, numIndexedNodes);
+	}
+
+	private static double measurement(PhantomTree tree, String name) {
+		for (Measurement measurement : tree.getModelMeasurements()) {
+			if (measurement.getName().equals(name)) {
+				return measurement.getValue();
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	private static void assertMaintainedLikeRebuilt(String streamOptions, String treeOptions) throws Exception {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.getOptions().setViaCLIString(streamOptions);
+		stream.prepareForUse();
+		PhantomTree tree = newPhantomTree(treeOptions, stream.getHeader());
+		for (int i = 0; i < 1500; i++) {
+			Instance inst = stream.nextInstance().getData();
+			tree.trainOnInstance(inst);
+			if (i > WINDOW_SIZE && i % 5 == 0) {
+				assertRebuiltStructure(tree);
+			}
+		}
+		assertEquals(1.0, measurement(tree, "phantom growths"), 0.0);
+		assertTrue(measurement(tree, "regrown phantom branches") > 0);
+	}
+
+	@Test
+	public void testNominalWindow() throws Exception {
+		assertMaintainedLikeRebuilt("-o 12 -u 0 -v 3 -c 3", "-k 10");
+	}
+
+	@Test
+	public void testMixedWindow() throws Exception {
+		assertMaintainedLikeRebuilt("-o 12 -u 6 -v 3 -c 3", "-k 10");
+	}
+
+	@Test
+	public void testOffHeapWindow() throws Exception {
+		// the window is read from and written to the buffers of the off-heap store
+		assertMaintainedLikeRebuilt("-o 3 -u 3 -v 3 -c 3", "-k 10 -Z 1");
+	}
+}
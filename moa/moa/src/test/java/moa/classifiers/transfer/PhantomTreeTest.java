@@ -0,0 +1,94 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * PhantomTreeTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import moa.classifiers.Classifier;
+
+/**
+ * Tests the PhantomTree classifier.
+ */
+public class PhantomTreeTest
+  extends AbstractTransferTestCase {
+
+  /**
+   * Constructs the test case. Called by subclasses.
+   *
+   * @param name 	the name of the test
+   */
+  public PhantomTreeTest(String name) {
+    super(name);
+    this.setNumberTests(6);
+  }
+
+  /**
+   * Returns the classifier setups to use in the regression test.
+   *
+   * @return		the setups
+   */
+  @Override
+  protected Classifier[] getRegressionClassifierSetups() {
+    PhantomTree[]	result;
+    result    = new PhantomTree[6];
+    result[0] = new PhantomTree();
+    // without the split cache
+    result[1] = new PhantomTree();
+    result[1].splitCacheSizeOption.setValue(0);
+    // regrown every growth period
+    result[2] = new PhantomTree();
+    result[2].growthPeriodOption.setValue(2000);
+    // maintained over a sliding window
+    result[3] = new PhantomTree();
+    result[3].obsPeriodOption.setValue(2000);
+    result[3].growthPeriodOption.setValue(1000);
+    result[3].slidingWindowOption.setValue(true);
+    // stopped once the mean depth has converged, on subsamples
+    result[4] = new PhantomTree();
+    result[4].numPhantomBranchOption.setValue(30);
+    result[4].depthIntervalWidthOption.setValue(0.5);
+    result[4].subsampleFractionOption.setValue(0.5);
+    result[4].minSubsampleSizeOption.setValue(200);
+    // grown on the instances stored off the heap
+    result[5] = new PhantomTree();
+    result[5].growthPeriodOption.setValue(2000);
+    result[5].offHeapStoreSizeOption.setValue(1);
+
+    return result;
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(PhantomTreeTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    runTest(suite());
+  }
+}
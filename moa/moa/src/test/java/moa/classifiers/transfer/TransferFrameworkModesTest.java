@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * TransferFrameworkModesTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import static org.junit.Assert.*;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import moa.classifiers.Classifier;
+import moa.core.OffHeapInstanceStore;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that the modes of TransferFramework that only change how the transfer is computed, or where its
+ * instances are stored, end up with the components of the transfer computed in place.
+ */
+public class TransferFrameworkModesTest {
+
+	private static final int DRIFT_LOCATION = 3000;
+
+	// instances arriving before an asynchronous measurement is waited for
+	private static final int NUM_PENDING = 500;
+
+	private static final String TRANSFER = "transfer.TransferFramework -f " + DRIFT_LOCATION
+			+ " -l (trees.HoeffdingTree -g 50) -t (PhantomTree -k 20)";
+
+	// slow enough to replay that instances arrive while the observation window is replayed in the background
+	private static final String ENSEMBLE_TRANSFER = "transfer.TransferFramework -f " + DRIFT_LOCATION
+			+ " -l (meta.OzaBag -l (trees.HoeffdingTree -g 50)) -t (PhantomTree -k 20)";
+
+	private static RandomTreeGenerator newConcept(int treeRandomSeed) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.treeRandomSeedOption.setValue(treeRandomSeed);
+		stream.numNumericsOption.setValue(5);
+		stream.numNominalsOption.setValue(10);
+		stream.numValsPerNominalOption.setValue(2);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	/**
+	 * A stream drifting from one concept to another at DRIFT_LOCATION.
+	 */
+	static List<Instance> driftingStream(int numInstances) {
+		RandomTreeGenerator source = newConcept(1);
+		RandomTreeGenerator target = newConcept(2);
+		List<Instance> instances = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			RandomTreeGenerator concept = i < DRIFT_LOCATION ? source : target;
+			instances.add(concept.nextInstance().getData());
+		}
+		return instances;
+	}
+
+	static TransferFramework newTransferFramework(String cliString, Instance inst) throws Exception {
+		TransferFramework learner = (TransferFramework) ClassOption.cliStringToObject(
+				cliString, Classifier.class, null);
+		learner.prepareForUse();
+		learner.setModelContext(new InstancesHeader(inst.dataset()));
+		learner.resetLearning();
+		return learner;
+	}
+
+	/**
+	 * Trains the learner of each mode on the stream until its transfer has been published, brings the reference
+	 * learner to the same position, then tests then trains both, and checks that they vote alike.
+	 */
+	private static void assertModeLearntLikeReference(String modeOptions) throws Exception {
+		assertModeLearntLikeReference(TRANSFER, modeOptions);
+	}
+
+	private static void assertModeLearntLikeReference(String transfer, String modeOptions) throws Exception {
+		List<Instance> stream = driftingStream(12000);
+		TransferFramework reference = newTransferFramework(transfer, stream.get(0));
+		TransferFramework mode = newTransferFramework(transfer + " " + modeOptions, stream.get(0));
+
+		int idx = 0;
+		List<Instance> obsInstanceStore = null;
+		while (mode.patchClassifier == null) {
+			assertTrue(modeOptions + " did not publish a transfer", idx < 9000);
+			if (mode.pendingComplexityMeasurement != null && mode.pendingTransferInstances.size() == NUM_PENDING) {
+				// the instances have arrived while the complexities were measured, whatever the speed of the
+				// measurement
+				while (!mode.pendingComplexityMeasurement.isDone()) {
+					Thread.sleep(10);
+				}
+			}
+			reference.trainOnInstance(stream.get(idx));
+			mode.trainOnInstance(stream.get(idx));
+			if (mode.obsInstanceStore != null) {
+				obsInstanceStore = mode.obsInstanceStore;
+			}
+			idx++;
+		}
+		assertNotNull(reference.patchClassifier);
+		if (obsInstanceStore instanceof OffHeapInstanceStore) {
+			// closed once the transfer has been published
+			assertEquals(0, ((OffHeapInstanceStore) obsInstanceStore).getDirectBytes());
+			assertEquals(0, ((OffHeapInstanceStore) obsInstanceStore).getSpilledBytes());
+		}
+
+		for (; idx < stream.size(); idx++) {
+			Instance inst = stream.get(idx);
+			assertArrayEquals(modeOptions + " instance " + idx,
+					reference.getVotesForInstance(inst), mode.getVotesForInstance(inst), 0.0);
+			reference.trainOnInstance(inst);
+			mode.trainOnInstance(inst);
+		}
+		assertArrayEquals(reference.newClassifier.getVotesForInstance(stream.get(0)),
+				mode.newClassifier.getVotesForInstance(stream.get(0)), 0.0);
+		assertEquals(reference.patchErrorWindow.sum(), mode.patchErrorWindow.sum());
+		assertEquals(reference.transErrorWindow.sum(), mode.transErrorWindow.sum());
+		assertEquals(reference.newErrorWindow.sum(), mode.newErrorWindow.sum());
+	}
+
+	@Test
+	public void testAsyncComplexity() throws Exception {
+		assertModeLearntLikeReference("-y");
+		assertModeLearntLikeReference("-y -j 1");
+	}
+
+	@Test
+	public void testBackgroundReplay() throws Exception {
+		assertModeLearntLikeReference("-r");
+		assertModeLearntLikeReference("-r -y");
+		assertModeLearntLikeReference(ENSEMBLE_TRANSFER, "-r");
+		assertModeLearntLikeReference(ENSEMBLE_TRANSFER, "-r -y");
+	}
+
+	@Test
+	public void testOffHeapStore() throws Exception {
+		// a store of 0 MB spills every buffer to the temporary file
+		assertModeLearntLikeReference("-z 1");
+		assertModeLearntLikeReference("-z 0 -y");
+		assertModeLearntLikeReference("-z 1 -r");
+	}
+
+	@Test
+	public void testParallelComponentTraining() throws Exception {
+		assertModeLearntLikeReference("-p");
+		assertModeLearntLikeReference("-p -u 7");
+	}
+}
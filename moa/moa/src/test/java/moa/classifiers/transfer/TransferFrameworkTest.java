@@ -0,0 +1,86 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * TransferFrameworkTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.classifiers.transfer;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import moa.classifiers.Classifier;
+
+/**
+ * Tests the TransferFramework classifier.
+ */
+public class TransferFrameworkTest
+  extends AbstractTransferTestCase {
+
+  /**
+   * Constructs the test case. Called by subclasses.
+   *
+   * @param name 	the name of the test
+   */
+  public TransferFrameworkTest(String name) {
+    super(name);
+    this.setNumberTests(4);
+  }
+
+  /**
+   * Returns the classifier setups to use in the regression test.
+   *
+   * @return		the setups
+   */
+  @Override
+  protected Classifier[] getRegressionClassifierSetups() {
+    TransferFramework[]	result;
+    result    = new TransferFramework[4];
+    // drift detected by the change detector
+    result[0] = new TransferFramework();
+    // drift at a known location, the region complexities measured one after the other
+    result[1] = new TransferFramework();
+    result[1].driftLocationOption.setValue(5000);
+    result[1].numberOfJobsOption.setValue(0);
+    // drift at a known location, the region complexities measured concurrently
+    result[2] = new TransferFramework();
+    result[2].driftLocationOption.setValue(5000);
+    result[2].phantomTreeOption.setValueViaCLIString("PhantomTree -k 20");
+    // the phantom branches stopped once their mean depth has converged
+    result[3] = new TransferFramework();
+    result[3].driftLocationOption.setValue(5000);
+    result[3].phantomTreeOption.setValueViaCLIString("PhantomTree -k 30 -w 0.5");
+
+    return result;
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(TransferFrameworkTest.class);
+  }
+
+  /**
+   * Runs the test from commandline.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    runTest(suite());
+  }
+}
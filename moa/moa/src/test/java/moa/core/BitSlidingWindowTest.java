@@ -0,0 +1,92 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that a window of bits holds the last bits added, in order, as a bounded deque would.
+ */
+public class BitSlidingWindowTest {
+
+	private static void assertSameBits(ArrayDeque<Integer> expected, BitSlidingWindow actual) {
+		assertEquals(expected.size(), actual.size());
+		int sum = 0;
+		int i = 0;
+		for (int bit : expected) {
+			assertEquals("bit " + i, bit, actual.getBit(i));
+			sum += bit;
+			i++;
+		}
+		assertEquals(sum, actual.sum());
+		assertEquals(expected.isEmpty() ? 0.0 : (double) sum / expected.size(), actual.mean(), 0.0);
+	}
+
+	@Test
+	public void testWraparound() {
+		Random random = new Random(1);
+		// capacities within a word, at a word boundary and across words
+		for (int capacity : new int[]{1, 3, 63, 64, 65, 100, 128, 129, 1000}) {
+			BitSlidingWindow actual = new BitSlidingWindow(capacity);
+			ArrayDeque<Integer> expected = new ArrayDeque<Integer>();
+			for (int i = 0; i < capacity * 5 + 7; i++) {
+				int bit = random.nextInt(2);
+				if (expected.size() == capacity) {
+					expected.pollFirst();
+				}
+				expected.offerLast(bit);
+				actual.add(bit);
+				assertEquals(expected.size() == capacity, actual.isFull());
+				if (i % 13 == 0 || i >= capacity * 5) {
+					assertSameBits(expected, actual);
+				}
+			}
+			assertSameBits(expected, actual);
+		}
+	}
+
+	@Test
+	public void testSumAfterEviction() {
+		BitSlidingWindow window = new BitSlidingWindow(70);
+		for (int i = 0; i < 70; i++) {
+			window.add(1);
+		}
+		assertEquals(70, window.sum());
+		for (int i = 0; i < 30; i++) {
+			window.add(0);
+		}
+		assertEquals(40, window.sum());
+		assertEquals(40.0 / 70, window.mean(), 0.0);
+		// the evicted ones are cleared rather than kept in the words
+		for (int i = 0; i < 70; i++) {
+			window.add(0);
+		}
+		assertEquals(0, window.sum());
+		assertEquals(0, window.getBit(69));
+	}
+
+	@Test
+	public void testClear() {
+		BitSlidingWindow window = new BitSlidingWindow(65);
+		for (int i = 0; i < 100; i++) {
+			window.add(1);
+		}
+		window.clear();
+		assertEquals(0, window.size());
+		assertEquals(0, window.sum());
+		assertEquals(0.0, window.mean(), 0.0);
+		window.add(0);
+		assertEquals(0, window.getBit(0));
+		assertEquals(0, window.sum());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetBeyondSize() {
+		BitSlidingWindow window = new BitSlidingWindow(10);
+		window.add(1);
+		window.getBit(1);
+	}
+}
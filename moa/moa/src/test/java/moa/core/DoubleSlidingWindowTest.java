@@ -0,0 +1,96 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that a window of values holds the last values added, in order, as the bounded deques it replaced did.
+ */
+public class DoubleSlidingWindowTest {
+
+	private static double sum(ArrayDeque<Double> window) {
+		double sum = 0;
+		for (double value : window) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	/**
+	 * The deviations as TransferFramework computed them from its deque of errors and their running sum.
+	 */
+	private static double sumOfSqrtAbsDeviations(ArrayDeque<Double> window, double windowSum) {
+		double mean = windowSum / window.size();
+		double numerator = 0;
+		for (double err : window) {
+			numerator += Math.sqrt(Math.abs(err - mean));
+		}
+		return numerator;
+	}
+
+	private static void assertSameValues(ArrayDeque<Double> expected, double expectedSum,
+			DoubleSlidingWindow actual) {
+		assertEquals(expected.size(), actual.size());
+		int i = 0;
+		for (double value : expected) {
+			assertEquals("value " + i, value, actual.get(i), 0.0);
+			i++;
+		}
+		assertEquals(sum(expected), actual.sum(), 1e-9);
+		assertEquals(expectedSum, actual.sum(), 0.0);
+		if (!expected.isEmpty()) {
+			assertEquals(expectedSum / expected.size(), actual.mean(), 0.0);
+			assertEquals(sumOfSqrtAbsDeviations(expected, expectedSum), actual.sumOfSqrtAbsDeviations(), 0.0);
+		}
+	}
+
+	@Test
+	public void testWraparound() {
+		Random random = new Random(1);
+		for (int capacity : new int[]{1, 2, 7, 64, 65, 100}) {
+			DoubleSlidingWindow actual = new DoubleSlidingWindow(capacity);
+			ArrayDeque<Double> expected = new ArrayDeque<Double>();
+			double expectedSum = 0;
+			for (int i = 0; i < capacity * 4 + 3; i++) {
+				double value = random.nextInt(3) == 0 ? random.nextInt(2) : random.nextGaussian();
+				expectedSum += value;
+				expected.offerLast(value);
+				if (expected.size() > capacity) {
+					expectedSum -= expected.pollFirst();
+				}
+				actual.add(value);
+				assertEquals(expected.size() == capacity, actual.isFull());
+				assertSameValues(expected, expectedSum, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testSumAfterEviction() {
+		DoubleSlidingWindow window = new DoubleSlidingWindow(3);
+		window.add(1.0);
+		window.add(2.0);
+		window.add(4.0);
+		assertEquals(7.0, window.sum(), 0.0);
+		window.add(8.0);
+		assertEquals(14.0, window.sum(), 0.0);
+		assertEquals(14.0 / 3, window.mean(), 0.0);
+		assertEquals(2.0, window.get(0), 0.0);
+		assertEquals(8.0, window.get(2), 0.0);
+		window.clear();
+		assertEquals(0, window.size());
+		assertEquals(0.0, window.mean(), 0.0);
+		assertEquals(0.0, window.sumOfSqrtAbsDeviations(), 0.0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetBeyondSize() {
+		DoubleSlidingWindow window = new DoubleSlidingWindow(10);
+		window.add(1.0);
+		window.get(1);
+	}
+}
@@ -0,0 +1,132 @@
+package moa.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import moa.classifiers.transfer.ColumnarInstanceStore;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests that instances stored off the heap are read back unchanged, whether in direct or spilled buffers.
+ */
+public class OffHeapInstanceStoreTest {
+
+	private static List<Instance> generate(int numInstances) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNumericsOption.setValue(5);
+		stream.numNominalsOption.setValue(5);
+		stream.prepareForUse();
+		List<Instance> instances = new ArrayList<Instance>();
+		Random random = new Random(1);
+		for (int i = 0; i < numInstances; i++) {
+			Instance instance = stream.nextInstance().getData();
+			if (i % 7 == 0) {
+				instance.setMissing(random.nextInt(instance.numAttributes()));
+			}
+			if (i % 5 == 0) {
+				instance.setWeight(random.nextDouble());
+			}
+			instances.add(instance);
+		}
+		return instances;
+	}
+
+	private static void assertSameInstances(List<Instance> expected, List<Instance> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Instance expectedInstance = expected.get(i);
+			Instance actualInstance = actual.get(i);
+			assertEquals(expectedInstance.weight(), actualInstance.weight(), 0.0);
+			assertArrayEquals(expectedInstance.toDoubleArray(), actualInstance.toDoubleArray(), 0.0);
+			for (int j = 0; j < expectedInstance.numAttributes(); j++) {
+				assertEquals(expectedInstance.isMissing(j), actualInstance.isMissing(j));
+			}
+			assertEquals(expectedInstance.classValue(), actualInstance.classValue(), 0.0);
+			assertEquals(expectedInstance.numClasses(), actualInstance.numClasses());
+		}
+	}
+
+	@Test
+	public void testDirect() {
+		List<Instance> expected = generate(1000);
+		OffHeapInstanceStore actual = new OffHeapInstanceStore(-1, 4096);
+		actual.addAll(expected);
+		assertSameInstances(expected, actual);
+		assertEquals(0, actual.getSpilledBytes());
+		actual.close();
+		assertEquals(0, actual.size());
+	}
+
+	@Test
+	public void testSpilled() {
+		List<Instance> expected = generate(1000);
+		OffHeapInstanceStore actual = new OffHeapInstanceStore(8192, 4096);
+		actual.addAll(expected);
+		assertSameInstances(expected, actual);
+		assertTrue(actual.getDirectBytes() <= 8192);
+		assertTrue(actual.getSpilledBytes() > 0);
+		actual.close();
+	}
+
+	@Test
+	public void testSet() {
+		List<Instance> expected = generate(100);
+		OffHeapInstanceStore actual = new OffHeapInstanceStore(0, 1024);
+		actual.addAll(expected.subList(0, 50));
+		for (int i = 50; i < 100; i++) {
+			Instance replaced = actual.set(i - 50, expected.get(i));
+			assertArrayEquals(expected.get(i - 50).toDoubleArray(), replaced.toDoubleArray(), 0.0);
+		}
+		assertSameInstances(expected.subList(50, 100), actual);
+		actual.close();
+	}
+
+	@Test
+	public void testViews() throws Exception {
+		List<Instance> expected = generate(100);
+		OffHeapInstanceStore actual = new OffHeapInstanceStore();
+		actual.addAll(expected);
+		try {
+			actual.get(0).setValue(0, 1.0);
+			fail("stored instances are read only");
+		} catch (UnsupportedOperationException e) {
+		}
+		Instance copy = actual.get(0).copy();
+		copy.setValue(0, 1.0);
+		assertEquals(1.0, copy.value(0), 0.0);
+		assertEquals(expected.get(0).value(1), copy.value(1), 0.0);
+		assertEquals(expected.get(0).value(0), actual.get(0).value(0), 0.0);
+
+		@SuppressWarnings("unchecked")
+		List<Instance> deserialized = (List<Instance>) SerializeUtils.copyObject(actual);
+		assertSameInstances(expected, deserialized);
+	}
+
+	@Test
+	public void testColumnarView() {
+		List<Instance> expected = generate(1000);
+		OffHeapInstanceStore instances = new OffHeapInstanceStore(8192, 4096);
+		instances.addAll(expected);
+		ColumnarInstanceStore expectedColumns = new ColumnarInstanceStore(expected);
+		// the view reads the values from the buffers of the store
+		ColumnarInstanceStore actualColumns = new ColumnarInstanceStore(instances);
+		assertEquals(expectedColumns.numAttributes(), actualColumns.numAttributes());
+		for (int row = 0; row < expected.size(); row++) {
+			for (int att = 0; att < expectedColumns.numAttributes(); att++) {
+				assertEquals(expectedColumns.value(att, row), actualColumns.value(att, row), 0.0);
+				assertEquals(expected.get(row).valueInputAttribute(att), instances.value(row,
+						expected.get(row).classIndex() > att ? att : att + 1), 0.0);
+			}
+			assertEquals(expectedColumns.classValue(row), actualColumns.classValue(row));
+			assertEquals(expectedColumns.weight(row), actualColumns.weight(row), 0.0);
+		}
+		instances.close();
+	}
+}
@@ -0,0 +1,122 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import moa.streams.generators.RandomTreeGenerator;
+import moa.tasks.WriteStreamToBinaryFile;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests that a stream written to a binary stream file is read back unchanged.
+ */
+public class BinaryFileStreamTest {
+
+	private static File tmpFile(String suffix) throws IOException {
+		File file = File.createTempFile("BinaryFileStreamTest", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static File writeBinaryFile(String streamCliString, int maxInstances) throws IOException {
+		File file = tmpFile(".moab");
+		WriteStreamToBinaryFile task = new WriteStreamToBinaryFile();
+		task.streamOption.setValueViaCLIString(streamCliString);
+		task.binaryFileOption.setValue(file.getPath());
+		task.maxInstancesOption.setValue(maxInstances);
+		task.prepareForUse();
+		task.doTask();
+		return file;
+	}
+
+	/**
+	 * Checks that the binary stream holds the next instances of the expected stream.
+	 *
+	 * @return the number of instances read
+	 */
+	private static int assertSameInstances(InstanceStream expected, BinaryFileStream actual) {
+		assertEquals(expected.getHeader().numAttributes(), actual.getHeader().numAttributes());
+		assertEquals(expected.getHeader().classIndex(), actual.getHeader().classIndex());
+		int numInstances = 0;
+		while (actual.hasMoreInstances()) {
+			assertTrue(expected.hasMoreInstances());
+			Instance expectedInstance = expected.nextInstance().getData();
+			Instance actualInstance = actual.nextInstance().getData();
+			assertEquals(expectedInstance.weight(), actualInstance.weight(), 0.0);
+			assertArrayEquals(expectedInstance.toDoubleArray(), actualInstance.toDoubleArray(), 0.0);
+			for (int i = 0; i < expectedInstance.numAttributes(); i++) {
+				assertEquals(expectedInstance.isMissing(i), actualInstance.isMissing(i));
+			}
+			assertEquals(expectedInstance.classValue(), actualInstance.classValue(), 0.0);
+			numInstances++;
+		}
+		return numInstances;
+	}
+
+	@Test
+	public void testGeneratedStream() throws IOException {
+		File file = writeBinaryFile("generators.RandomTreeGenerator -o 5 -u 5", 1000);
+		BinaryFileStream actual = new BinaryFileStream(file.getPath());
+		for (int pass = 0; pass < 2; pass++) {
+			RandomTreeGenerator expected = new RandomTreeGenerator();
+			expected.numNumericsOption.setValue(5);
+			expected.numNominalsOption.setValue(5);
+			expected.prepareForUse();
+			assertEquals(1000, actual.estimatedRemainingInstances());
+			assertEquals(1000, assertSameInstances(expected, actual));
+			actual.restart();
+		}
+	}
+
+	@Test
+	public void testSerializedStream() throws IOException {
+		File file = writeBinaryFile("generators.RandomTreeGenerator -o 5 -u 5", 1000);
+		BinaryFileStream stream = new BinaryFileStream(file.getPath());
+		RandomTreeGenerator expected = new RandomTreeGenerator();
+		expected.numNumericsOption.setValue(5);
+		expected.numNominalsOption.setValue(5);
+		expected.prepareForUse();
+		for (int i = 0; i < 300; i++) {
+			stream.nextInstance();
+			expected.nextInstance();
+		}
+		// the copy goes on where the stream was, without being restarted
+		BinaryFileStream copy = (BinaryFileStream) stream.copy();
+		assertEquals(700, copy.estimatedRemainingInstances());
+		assertEquals(700, assertSameInstances(expected, copy));
+		assertEquals(700, stream.estimatedRemainingInstances());
+	}
+
+	@Test
+	public void testMissingValuesAndNewLabels() throws IOException {
+		File arffFile = tmpFile(".arff");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(arffFile), StandardCharsets.UTF_8)) {
+			writer.write("@relation missing\n"
+					+ "@attribute x numeric\n"
+					+ "@attribute c {a, b}\n"
+					+ "@attribute y numeric\n"
+					+ "@attribute class {yes, no}\n"
+					+ "@data\n"
+					+ "1.5, a, ?, yes\n"
+					+ "?, ?, -2, no\n"
+					+ "3, unseen, 4e10, ?\n"
+					+ "4, b, 5, yes\n");
+		}
+		File file = writeBinaryFile("ArffFileStream -f " + arffFile.getPath(), 100);
+		BinaryFileStream actual = new BinaryFileStream(file.getPath());
+		assertEquals(3, actual.getHeader().attribute(1).numValues());
+		assertEquals("unseen", actual.getHeader().attribute(1).value(2));
+		ArffFileStream expected = new ArffFileStream(arffFile.getPath(), -1);
+		assertEquals(4, assertSameInstances(expected, actual));
+		assertFalse(expected.hasMoreInstances());
+	}
+}
@@ -0,0 +1,139 @@
+package moa.streams;
+
+import static org.junit.Assert.*;
+
+import moa.core.Example;
+import moa.core.InstanceExample;
+import moa.streams.generators.RandomTreeGenerator;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Tests that a prefetched stream returns the examples of the wrapped stream, in order.
+ */
+public class PrefetchingStreamTest {
+
+	private static PrefetchingStream prefetching(String streamCliString, int depth) {
+		PrefetchingStream stream = new PrefetchingStream();
+		stream.streamOption.setValueViaCLIString(streamCliString);
+		stream.depthOption.setValue(depth);
+		stream.prepareForUse();
+		return stream;
+	}
+
+	private static void assertSameExamples(ExampleStream expected, ExampleStream actual, int numExamples) {
+		for (int i = 0; i < numExamples; i++) {
+			assertTrue(actual.hasMoreInstances());
+			Instance expectedInstance = (Instance) expected.nextInstance().getData();
+			Instance actualInstance = (Instance) actual.nextInstance().getData();
+			assertArrayEquals(expectedInstance.toDoubleArray(), actualInstance.toDoubleArray(), 0.0);
+		}
+	}
+
+	@Test
+	public void testGeneratedStream() {
+		for (int depth : new int[]{1, 3, 1024}) {
+			PrefetchingStream actual = prefetching("generators.RandomTreeGenerator", depth);
+			for (int pass = 0; pass < 2; pass++) {
+				RandomTreeGenerator expected = new RandomTreeGenerator();
+				expected.prepareForUse();
+				assertEquals(expected.getHeader().numAttributes(), actual.getHeader().numAttributes());
+				assertSameExamples(expected, actual, 20000);
+				actual.restart();
+			}
+		}
+	}
+
+	/**
+	 * Generator of a given number of examples that records the threads it is used from.
+	 */
+	public static class CountedStream extends RandomTreeGenerator {
+
+		private static final long serialVersionUID = 1L;
+
+		static final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+		static final int NUM_EXAMPLES = 1000;
+
+		int numExamples;
+
+		@Override
+		public boolean hasMoreInstances() {
+			threads.add(Thread.currentThread());
+			return this.numExamples < NUM_EXAMPLES;
+		}
+
+		@Override
+		public InstanceExample nextInstance() {
+			threads.add(Thread.currentThread());
+			this.numExamples++;
+			return super.nextInstance();
+		}
+
+		@Override
+		public long estimatedRemainingInstances() {
+			threads.add(Thread.currentThread());
+			return NUM_EXAMPLES - this.numExamples;
+		}
+	}
+
+	@Test
+	public void testWrappedStreamOnlyReadByProducer() {
+		PrefetchingStream actual = new PrefetchingStream();
+		actual.streamOption.setCurrentObject(new CountedStream());
+		actual.depthOption.setValue(16);
+		actual.prepareForUse();
+		CountedStream.threads.clear();
+		for (int i = 0; i < 10; i++) {
+			actual.nextInstance();
+		}
+		assertEquals(CountedStream.NUM_EXAMPLES - 10, actual.estimatedRemainingInstances(), 1);
+		assertFalse(CountedStream.threads.contains(Thread.currentThread()));
+		actual.restart();
+	}
+
+	@Test
+	public void testAbandonedStreamStopsProducer() throws InterruptedException {
+		PrefetchingStream actual = prefetching("generators.RandomTreeGenerator", 4);
+		actual.nextInstance();
+		Thread producer = actual.prefetcher.producer;
+		actual.restart();
+		assertFalse(producer.isAlive());
+
+		actual.nextInstance();
+		producer = actual.prefetcher.producer;
+		// the buffer fills up and nothing reads it any more
+		actual = null;
+		for (int i = 0; i < 100 && producer.isAlive(); i++) {
+			System.gc();
+			producer.join(100);
+		}
+		assertFalse(producer.isAlive());
+	}
+
+	@Test
+	public void testEndOfStream() {
+		String fileName = ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+		PrefetchingStream actual = prefetching("ArffFileStream -f " + fileName, 2);
+		ArffFileStream expected = new ArffFileStream(fileName, -1);
+		int numExamples = 0;
+		while (expected.hasMoreInstances()) {
+			assertSameExamples(expected, actual, 1);
+			numExamples++;
+		}
+		assertFalse(actual.hasMoreInstances());
+		assertNull(actual.nextInstance());
+		actual.restart();
+		for (int i = 0; i < numExamples; i++) {
+			Example example = actual.nextInstance();
+			assertNotNull(example);
+		}
+		assertFalse(actual.hasMoreInstances());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * MeasureConstructionComplexityTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.tasks;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.transfer.PhantomGrowthEvent;
+import moa.classifiers.transfer.PhantomTree;
+import moa.streams.generators.RandomTreeGenerator;
+
+import org.junit.Test;
+
+/**
+ * Tests that the csv file of the task has one row per complete window, in stream order, with the phantom branches
+ * grown on the window by itself.
+ */
+public class MeasureConstructionComplexityTest {
+
+	private static final String HEADER = "window start,window end,depth avg,depth min,depth max,depth interval,"
+			+ "phantom branches,growth time (seconds)";
+
+	private static List<String> measure(String options) throws IOException {
+		File dumpFile = File.createTempFile("MeasureConstructionComplexityTest", ".csv");
+		dumpFile.deleteOnExit();
+		MeasureConstructionComplexity task = new MeasureConstructionComplexity();
+		task.getOptions().setViaCLIString("-s (generators.RandomTreeGenerator -o 4 -u 4) -t (PhantomTree -k 5)"
+				+ " -d " + dumpFile.getPath() + " " + options);
+		task.prepareForUse();
+		task.doTask();
+		return Files.readAllLines(dumpFile.toPath(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The row of a window, but for the growth time, from a phantom tree grown on the window.
+	 */
+	private static String expectedRow(List<Instance> stream, int windowStart, int windowEnd) {
+		PhantomTree phantomTree = new PhantomTree();
+		phantomTree.numPhantomBranchOption.setValue(5);
+		phantomTree.prepareForUse();
+		final PhantomGrowthEvent[] growth = new PhantomGrowthEvent[1];
+		phantomTree.addPhantomTreeListener(e -> growth[0] = e);
+		phantomTree.getConstructionComplexity(new ArrayList<>(stream.subList(windowStart, windowEnd)));
+		return windowStart + "," + windowEnd + "," + growth[0].getAvgDepth() + "," + growth[0].getMinDepth() + ","
+				+ growth[0].getMaxDepth() + ","
+				+ (growth[0].getDepthInterval() < 0 ? "?" : Double.toString(growth[0].getDepthInterval())) + ","
+				+ growth[0].getNumBranches();
+	}
+
+	private static List<Instance> stream(int numInstances) {
+		RandomTreeGenerator stream = new RandomTreeGenerator();
+		stream.numNominalsOption.setValue(4);
+		stream.numNumericsOption.setValue(4);
+		stream.prepareForUse();
+		List<Instance> instances = new ArrayList<>();
+		for (int i = 0; i < numInstances; i++) {
+			instances.add(stream.nextInstance().getData());
+		}
+		return instances;
+	}
+
+	private static String withoutTime(String row) {
+		return row.substring(0, row.lastIndexOf(','));
+	}
+
+	private static void assertWindows(List<String> lines, int windowSize, int windowStep, int numWindows) {
+		assertEquals(HEADER, lines.get(0));
+		assertEquals(1 + numWindows, lines.size());
+		List<Instance> stream = stream(windowStep * (numWindows - 1) + windowSize);
+		for (int i = 0; i < numWindows; i++) {
+			String row = lines.get(1 + i);
+			assertEquals(HEADER.split(",").length, row.split(",").length);
+			assertEquals(expectedRow(stream, i * windowStep, i * windowStep + windowSize), withoutTime(row));
+		}
+	}
+
+	@Test
+	public void testTumblingWindows() throws IOException {
+		// the last 500 instances do not fill a window
+		assertWindows(measure("-w 1000 -i 3500 -j 2"), 1000, 1000, 3);
+	}
+
+	@Test
+	public void testSlidingWindows() throws IOException {
+		assertWindows(measure("-w 1000 -p 400 -i 3000 -j 2"), 1000, 400, 6);
+	}
+
+	@Test
+	public void testJobCountInvariance() throws IOException {
+		List<String> expected = measure("-w 500 -p 250 -i 4000 -j 1");
+		for (String numberOfJobs : new String[]{"3", "-1"}) {
+			List<String> actual = measure("-w 500 -p 250 -i 4000 -j " + numberOfJobs);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 1; i < expected.size(); i++) {
+				assertEquals(withoutTime(expected.get(i)), withoutTime(actual.get(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * RunExperimentGridTest.java
+ * Copyright (C) 2020 University of Waikato, Hamilton, New Zealand
+ */
+package moa.tasks;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.javacliparser.Option;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.transfer.PhantomTree;
+import moa.classifiers.transfer.TransferFramework;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.options.OptionHandler;
+
+import org.junit.Test;
+
+/**
+ * Tests the cells of an experiment grid and the csv file they are written to.
+ */
+public class RunExperimentGridTest {
+
+	private static List<String> runGrid(String learners, String parameterGrid, String options) throws IOException {
+		File dumpFile = File.createTempFile("RunExperimentGridTest", ".csv");
+		dumpFile.deleteOnExit();
+		RunExperimentGrid task = new RunExperimentGrid();
+		task.getOptions().setViaCLIString("-s (generators.RandomTreeGenerator -o 2 -u 2) -l (" + learners + ")"
+				+ " -p \"" + parameterGrid + "\" -i 2000 -f 1000 -d " + dumpFile.getPath() + " " + options);
+		task.prepareForUse();
+		task.doTask();
+		return Files.readAllLines(dumpFile.toPath(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The measurements of each row of the learner by name, but for the timings.
+	 */
+	private static List<Map<String, String>> rowsOf(List<String> lines, String learner) {
+		String[] names = lines.get(0).split(",");
+		List<Map<String, String>> rows = new ArrayList<>();
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split(",");
+			if (!fields[1].equals(learner)) {
+				continue;
+			}
+			Map<String, String> row = new TreeMap<>();
+			for (int i = 2; i < names.length; i++) {
+				if (!names[i].contains("time") && !names[i].contains("RAM-Hours")) {
+					row.put(names[i], fields[i]);
+				}
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Learner that relabels the instances it is given.
+	 */
+	public static class RelabellingLearner extends NaiveBayes {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void trainOnInstanceImpl(Instance inst) {
+			super.trainOnInstanceImpl(inst);
+			inst.setClassValue(0);
+		}
+	}
+
+	private static void assertCellsLearnFromTheirOwnInstances(String options) throws IOException {
+		List<String> alone = runGrid("trees.HoeffdingTree", "", options);
+		List<String> shared = runGrid(RelabellingLearner.class.getName() + ",trees.HoeffdingTree", "", options);
+		List<Map<String, String>> expected = rowsOf(alone, "trees.HoeffdingTree");
+		assertEquals(2, expected.size());
+		List<Map<String, String>> actual = rowsOf(shared, "trees.HoeffdingTree");
+		for (Map<String, String> row : actual) {
+			// columns of the measurements only LearnNSE reports
+			row.keySet().retainAll(expected.get(0).keySet());
+		}
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testCellsLearnFromTheirOwnInstances() throws IOException {
+		assertCellsLearnFromTheirOwnInstances("-j 1");
+		// the cells read row views of the columnar cache
+		assertCellsLearnFromTheirOwnInstances("-j 1 -c");
+	}
+
+	@Test
+	public void testParseGrid() {
+		String grid = " t.k = 5, 10 ;; o=500 ; ";
+		assertArrayEquals(new String[]{"t.k", "o"}, RunExperimentGrid.parseParameterPaths(grid));
+		String[][] values = RunExperimentGrid.parseParameterValues(grid);
+		assertEquals(2, values.length);
+		assertArrayEquals(new String[]{"5", "10"}, values[0]);
+		assertArrayEquals(new String[]{"500"}, values[1]);
+		assertEquals(0, RunExperimentGrid.parseParameterPaths("").length);
+		try {
+			RunExperimentGrid.parseParameterPaths("t.k=5;o");
+			fail("parameter without values");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testOptionPaths() {
+		OptionHandler learner = RunExperimentGrid.createLearner("transfer.TransferFramework");
+		TransferFramework transfer = (TransferFramework) learner;
+		assertSame(transfer.perfWindowSizeOption, RunExperimentGrid.getOption(learner, "o"));
+		assertSame(transfer.perfWindowSizeOption, RunExperimentGrid.getOption(learner, "perfWindowSize"));
+
+		// through the class options, by character or by name
+		Option numPhantomBranch = RunExperimentGrid.getOption(learner, "t.k");
+		assertNotNull(numPhantomBranch);
+		assertSame(numPhantomBranch, RunExperimentGrid.getOption(learner, "phantomTree.numPhantomBranch"));
+		assertSame(numPhantomBranch, RunExperimentGrid.getOption(learner, "t.numPhantomBranch"));
+		assertSame(((PhantomTree) transfer.phantomTreeOption.getPreMaterializedObject()).numPhantomBranchOption,
+				numPhantomBranch);
+		assertSame(((HoeffdingTree) transfer.baseClassifierOption.getPreMaterializedObject()).gracePeriodOption,
+				RunExperimentGrid.getOption(learner, "l.g"));
+
+		// no such option, or a path through an option that is not a class option
+		assertNull(RunExperimentGrid.getOption(learner, "noSuchOption"));
+		assertNull(RunExperimentGrid.getOption(learner, "t.noSuchOption"));
+		assertNull(RunExperimentGrid.getOption(learner, "o.k"));
+		assertNull(RunExperimentGrid.getOption(learner, "noSuchOption.k"));
+	}
+
+	@Test
+	public void testExpandGrid() {
+		String[] paths = {"t.k", "o", "noSuchOption"};
+		String[][] values = {{"5", "10"}, {"500", "1000", "2000"}, {"100", "200"}};
+		List<RunExperimentGrid.Cell> cells = new RunExperimentGrid().expandGrid(1, "transfer.TransferFramework",
+				paths, values);
+		// TransferFramework has no option noSuchOption
+		assertEquals(6, cells.size());
+		int i = 0;
+		for (String numPhantomBranch : values[0]) {
+			for (String perfWindowSize : values[1]) {
+				RunExperimentGrid.Cell cell = cells.get(i++);
+				assertEquals(1, cell.streamIndex);
+				assertArrayEquals(new String[]{numPhantomBranch, perfWindowSize, null}, cell.parameterValues);
+				OptionHandler learner = RunExperimentGrid.createLearner(cell.learnerCLIString);
+				assertEquals(numPhantomBranch, RunExperimentGrid.getOption(learner, "t.k").getValueAsCLIString());
+				assertEquals(perfWindowSize, RunExperimentGrid.getOption(learner, "o").getValueAsCLIString());
+			}
+		}
+
+		// a learner with none of the options is evaluated once, as it is given
+		cells = new RunExperimentGrid().expandGrid(0, "bayes.NaiveBayes", paths, values);
+		assertEquals(1, cells.size());
+		assertArrayEquals(new String[3], cells.get(0).parameterValues);
+		assertTrue(cells.get(0).learnerCLIString.endsWith("NaiveBayes"));
+	}
+
+	@Test
+	public void testCsvOutput() throws IOException {
+		List<String> lines = runGrid("trees.HoeffdingTree -b,bayes.NaiveBayes", "g=100,300;t.k=5", "-j 2");
+		String[] names = lines.get(0).split(",");
+		assertEquals("stream", names[0]);
+		assertEquals("learner", names[1]);
+		assertEquals("g", names[2]);
+		assertEquals("t.k", names[3]);
+		assertEquals("learning evaluation instances", names[4]);
+		// two samples of each of the two cells of the tree and of the one cell of NaiveBayes, in grid order
+		assertEquals(1 + 3 * 2, lines.size());
+		String[] learners = new String[]{"trees.HoeffdingTree -g 100 -b", "trees.HoeffdingTree -g 300 -b",
+				"bayes.NaiveBayes"};
+		for (int i = 1; i < lines.size(); i++) {
+			String[] fields = lines.get(i).split(",", -1);
+			assertEquals(names.length, fields.length);
+			assertEquals("generators.RandomTreeGenerator -o 2 -u 2", fields[0]);
+			assertEquals(learners[(i - 1) / 2], fields[1]);
+			assertEquals(i <= 4 ? (i <= 2 ? "100" : "300") : "", fields[2]);
+			assertEquals("", fields[3]);
+			assertEquals(i % 2 == 1 ? "1000.0" : "2000.0", fields[4]);
+		}
+
+		assertEquals("a", RunExperimentGrid.csvField("a"));
+		assertEquals("\"(a -b 1,2)\"", RunExperimentGrid.csvField("(a -b 1,2)"));
+		assertEquals("\"a \"\"b\"\"\"", RunExperimentGrid.csvField("a \"b\""));
+	}
+}